@@ -0,0 +1,21 @@
+#!/bin/bash
+
+# Build the backend and the benchmarks, then run JMH with allocation profiling.
+# Results are written to results/<git revision>.json so runs can be compared
+# across versions. Extra arguments are passed to JMH, e.g.
+#   ./run.sh ConverterRegistryBenchmark -f 1 -wi 2 -i 3
+set -e
+
+cd "$(dirname "$0")"
+
+mvn -q -f ../pom.xml install -DskipTests
+mvn -q package
+
+REVISION=$(git describe --always --dirty 2>/dev/null || echo local)
+mkdir -p results
+
+java -jar target/benchmarks.jar \
+    -prof gc \
+    -jvmArgsAppend "-Dcorpus.dir=${CORPUS_DIR:-../test-results}" \
+    -rf json -rff "results/$REVISION.json" \
+    "$@"
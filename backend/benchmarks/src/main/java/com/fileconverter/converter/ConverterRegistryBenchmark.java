@@ -0,0 +1,68 @@
+package com.fileconverter.converter;
+
+import com.fileconverter.config.AppConfig;
+import com.fileconverter.converter.impl.FFmpegConverter;
+import com.fileconverter.converter.impl.ImageMagickConverter;
+import com.fileconverter.converter.impl.LibreOfficeConverter;
+import com.fileconverter.converter.impl.LibreOfficePool;
+import com.fileconverter.converter.impl.PandocConverter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Converter lookup as done for every upload, for a direct conversion, a
+ * chained one and an unsupported pair.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ConverterRegistryBenchmark {
+
+    @Param({"image/png>webp", "text/markdown>xlsx", "application/zip>pdf"})
+    public String conversion;
+
+    private ConverterRegistry registry;
+    private String inputMimeType;
+    private String outputFormat;
+
+    @Setup
+    public void setup() {
+        AppConfig config = new AppConfig();
+        ProcessExecutor executor = new ProcessExecutor(config, new SimpleMeterRegistry());
+        registry = new ConverterRegistry(List.of(
+                new FFmpegConverter(executor),
+                new ImageMagickConverter(executor),
+                new LibreOfficeConverter(executor, new LibreOfficePool(config, executor)),
+                new PandocConverter(executor)), config);
+
+        String[] parts = conversion.split(">");
+        inputMimeType = parts[0];
+        outputFormat = parts[1];
+    }
+
+    @Benchmark
+    public Converter getConverter() {
+        return registry.getConverter(inputMimeType, outputFormat);
+    }
+
+    @Benchmark
+    public List<String> getSupportedOutputFormats() {
+        return registry.getSupportedOutputFormats(inputMimeType);
+    }
+}
@@ -0,0 +1,103 @@
+package com.fileconverter.job;
+
+import com.fileconverter.config.AppConfig;
+import com.fileconverter.converter.ConverterRegistry;
+import com.fileconverter.converter.ProcessExecutor;
+import com.fileconverter.converter.impl.ImageMagickConverter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Four submitters and four workers contending on one lane, under each
+ * ordering policy. Submitting includes creating the job.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Group)
+public class JobQueueBenchmark {
+
+    private static final String LANE = "imagemagick";
+    private static final Path INPUT = Path.of("/tmp/input.png");
+    private static final Path OUTPUT = Path.of("/tmp/output.webp");
+
+    @Param({"fifo", "sjf"})
+    public String policy;
+
+    private JobQueue queue;
+    private AtomicLong ids;
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        AppConfig config = new AppConfig();
+        config.getWorker().setQueueCapacity(100_000);
+        // Only the count limit, so no submission is turned away
+        config.getWorker().getAdmission().setMaxPendingCostSeconds(0);
+        config.getWorker().getAdmission().setMaxPendingMb(0);
+        config.getWorker().getAdmission().setMinFreeMemoryRatio(0);
+        ConverterRegistry registry = new ConverterRegistry(
+                List.of(new ImageMagickConverter(new ProcessExecutor(config, new SimpleMeterRegistry()))), config);
+        JobCostEstimator costEstimator = new JobCostEstimator(config);
+        JobOrderingPolicy ordering = "fifo".equals(policy)
+                ? new FifoOrderingPolicy()
+                : new ShortestJobFirstPolicy(costEstimator, config);
+        queue = new JobQueue(config, registry, ordering, costEstimator, new SystemResources(),
+                new LocalJobStore(config), new SimpleMeterRegistry());
+        ids = new AtomicLong();
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() {
+        queue.drain(LANE, job -> true, Integer.MAX_VALUE).forEach(job -> queue.removeJob(job.getId()));
+    }
+
+    @Benchmark
+    @Group("contended")
+    @GroupThreads(4)
+    public Job submit() {
+        Instant now = Instant.now();
+        Job job = new Job(Long.toString(ids.incrementAndGet()), "input.png", "image/png", "webp", LANE,
+                INPUT, ThreadLocalRandom.current().nextLong(1, 64 * 1024 * 1024), null, OUTPUT,
+                now, now.plusSeconds(3600));
+        try {
+            queue.submit(job);
+            return job;
+        } catch (JobRejectedException e) {
+            return null;
+        }
+    }
+
+    @Benchmark
+    @Group("contended")
+    @GroupThreads(4)
+    public Job take() throws InterruptedException {
+        Job job = queue.poll(LANE, 1, TimeUnit.MILLISECONDS);
+        if (job != null) {
+            queue.removeJob(job.getId());
+        }
+        return job;
+    }
+}
@@ -0,0 +1,193 @@
+package com.fileconverter.job;
+
+import com.fileconverter.config.AppConfig;
+import com.fileconverter.converter.Converter;
+import com.fileconverter.converter.ConverterRegistry;
+import com.fileconverter.converter.ProcessExecutor;
+import com.fileconverter.converter.ProgressListener;
+import com.fileconverter.storage.ConversionCache;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs a batch of "sleep 0.5" conversions through the real {@link WorkerPool},
+ * with a stub converter that spawns the process through {@link ProcessExecutor},
+ * on platform worker threads or on virtual threads with pool-size permits.
+ * The score is the time for the whole batch; jobs/s is jobs divided by it.
+ * Peak platform threads and peak RSS of the benchmark JVM are printed when
+ * each trial ends.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = "-Xmx256m")
+@State(Scope.Benchmark)
+public class WorkerThreadsBenchmark {
+
+    private static final String CONVERTER = "sleep";
+    private static final long SAMPLE_MILLIS = 10;
+
+    @Param({"platform", "virtual"})
+    public String mode;
+
+    @Param({"4", "200", "1000"})
+    public int concurrency;
+
+    private JobQueue queue;
+    private WorkerPool pool;
+    private Path workDir;
+    private int jobs;
+    private AtomicLong ids;
+    private volatile CountDownLatch finished;
+    private volatile boolean sampling;
+    private volatile int peakThreads;
+    private volatile long peakRssKb;
+    private Thread sampler;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        AppConfig config = new AppConfig();
+        config.getWorker().setVirtualThreads("virtual".equals(mode));
+        config.getWorker().setPoolSize(concurrency);
+        config.getWorker().setQueueCapacity(100_000);
+        config.getWorker().getAdmission().setMaxPendingCostSeconds(0);
+        config.getWorker().getAdmission().setMaxPendingMb(0);
+        config.getWorker().getAdmission().setMinFreeMemoryRatio(0);
+        config.getCache().setEnabled(false);
+        config.getCache().setDir(System.getProperty("java.io.tmpdir"));
+        workDir = Files.createTempDirectory("worker-threads");
+        jobs = Math.max(200, concurrency);
+        ids = new AtomicLong();
+
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        ProcessExecutor processExecutor = new ProcessExecutor(config, registry);
+        ConverterRegistry converters = new ConverterRegistry(List.of(new SleepConverter(processExecutor)), config);
+        JobCostEstimator costEstimator = new JobCostEstimator(config);
+        SystemResources systemResources = new SystemResources();
+        queue = new JobQueue(config, converters, new FifoOrderingPolicy(), costEstimator, systemResources,
+                new LocalJobStore(config), registry);
+        queue.addListener(new JobListener() {
+            @Override
+            public void onStatusChanged(Job job, JobStatus status) {
+                if (status == JobStatus.COMPLETED || status == JobStatus.FAILED) {
+                    finished.countDown();
+                }
+            }
+        });
+        AdaptiveConcurrencyController controller =
+                new AdaptiveConcurrencyController(config, converters, queue, systemResources);
+        pool = new WorkerPool(queue, new LocalJobStore(config), converters, controller, costEstimator,
+                new ConversionCache(config), new JobCoalescer(queue, config), processExecutor, config, registry);
+        pool.start();
+
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        sampling = true;
+        sampler = Thread.ofPlatform().daemon().name("peak-sampler").start(() -> {
+            while (sampling) {
+                peakThreads = Math.max(peakThreads, threads.getThreadCount());
+                peakRssKb = Math.max(peakRssKb, rssKb());
+                try {
+                    Thread.sleep(SAMPLE_MILLIS);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        });
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        pool.stop();
+        sampling = false;
+        sampler.join();
+        Files.deleteIfExists(workDir);
+        System.out.printf("%n%s x %d: %d jobs, peak %d platform threads, peak RSS %d MB%n",
+                mode, concurrency, jobs, peakThreads, peakRssKb / 1024);
+    }
+
+    @Benchmark
+    public void runJobs() throws InterruptedException {
+        finished = new CountDownLatch(jobs);
+        Instant now = Instant.now();
+        for (int i = 0; i < jobs; i++) {
+            String id = Long.toString(ids.incrementAndGet());
+            queue.submit(new Job(id, "input.txt", "text/plain", "txt", CONVERTER,
+                    workDir.resolve("input.txt"), 1, null, workDir.resolve(id + ".txt"),
+                    now, now.plusSeconds(3600)));
+        }
+        finished.await();
+        for (long id = ids.get() - jobs + 1; id <= ids.get(); id++) {
+            queue.removeJob(Long.toString(id));
+        }
+    }
+
+    private static long rssKb() {
+        try {
+            for (String line : Files.readAllLines(Path.of("/proc/self/status"))) {
+                if (line.startsWith("VmRSS:")) {
+                    return Long.parseLong(line.replaceAll("\\D", ""));
+                }
+            }
+        } catch (IOException | NumberFormatException ignored) {
+        }
+        return 0;
+    }
+
+    /**
+     * Stands in for an I/O-bound tool: each conversion is one external process.
+     */
+    private static final class SleepConverter implements Converter {
+
+        private final ProcessExecutor processExecutor;
+
+        SleepConverter(ProcessExecutor processExecutor) {
+            this.processExecutor = processExecutor;
+        }
+
+        @Override
+        public void convert(Path input, Path output, String targetFormat, ProgressListener progressCallback)
+                throws Exception {
+            processExecutor.execute(List.of("sleep", "0.5"), output.getParent(), null);
+        }
+
+        @Override
+        public String getName() {
+            return CONVERTER;
+        }
+
+        @Override
+        public Set<String> getSupportedInputTypes() {
+            return Set.of("text/plain");
+        }
+
+        @Override
+        public Set<String> getSupportedOutputFormats() {
+            return Set.of("txt");
+        }
+    }
+}
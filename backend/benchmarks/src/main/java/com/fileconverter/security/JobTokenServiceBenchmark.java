@@ -0,0 +1,62 @@
+package com.fileconverter.security;
+
+import com.fileconverter.config.AppConfig;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Job token signing, done once per upload, and verification, done for
+ * every status, stream and download request, for both token formats with
+ * and without the verified-token cache.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JobTokenServiceBenchmark {
+
+    @Param({"jwt", "compact"})
+    public String format;
+
+    @Param({"0", "10000"})
+    public int cacheSize;
+
+    private JobTokenService tokenService;
+    private String jobId;
+    private String token;
+
+    @Setup
+    public void setup() {
+        AppConfig config = new AppConfig();
+        config.getSecurity().setTokenSecret("benchmark-secret-benchmark-secret");
+        config.getSecurity().setTokenFormat(format);
+        config.getSecurity().setTokenCacheSize(cacheSize);
+        tokenService = new JobTokenService(config);
+        jobId = UUID.randomUUID().toString();
+        token = tokenService.generateToken(jobId);
+    }
+
+    @Benchmark
+    public String generateToken() {
+        return tokenService.generateToken(jobId);
+    }
+
+    @Benchmark
+    public JobTokenService.TokenValidation validateToken() {
+        return tokenService.validateToken(token);
+    }
+}
@@ -0,0 +1,159 @@
+package com.fileconverter.security;
+
+import com.fileconverter.config.AppConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.tika.Tika;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import reactor.core.publisher.Flux;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Upload type detection over a corpus of sample files: the signature
+ * detector, plain Tika for comparison, and the full streaming inspection
+ * (size cap, SHA-256 and detection) for one upload. Each invocation handles
+ * the next file of the corpus.
+ * <p>
+ * The corpus is read from {@code -Dcorpus.dir}, by default the converted
+ * samples in {@code test-results}, plus a few text files. Setup fails if the
+ * detector and Tika disagree on any of them.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MimeDetectionBenchmark {
+
+    private static final int SNIFF_LENGTH = 8 * 1024;
+
+    // Tika's names for types the allow-list spells differently; Tika core
+    // names WebM by its Matroska container, see webmOrMatroska
+    private static final Map<String, String> TIKA_ALIASES = Map.of(
+            "audio/vnd.wave", "audio/wav",
+            "audio/x-wav", "audio/wav",
+            "audio/x-flac", "audio/flac",
+            "audio/vorbis", "audio/ogg",
+            "audio/opus", "audio/ogg",
+            "image/x-ms-bmp", "image/bmp");
+
+    // DocType element of an EBML header holding the 4 byte string "webm"
+    private static final byte[] WEBM_DOC_TYPE = {0x42, (byte) 0x82, (byte) 0x84, 'w', 'e', 'b', 'm'};
+
+    private static final List<String> TEXT_SAMPLES = List.of(
+            "Plain text for conversion testing.\n",
+            "# Title\n\nSome *markdown* with a [link](https://example.com).\n",
+            "<!DOCTYPE html><html><head><title>t</title></head><body><p>x</p></body></html>\n",
+            "name,size\nsample.png,1024\n");
+
+    private MimeDetector detector;
+    private Tika tika;
+    private FileValidator validator;
+    private List<byte[]> samples;
+    private int next;
+
+    @Setup
+    public void setup() throws IOException {
+        detector = new MimeDetector();
+        tika = new Tika();
+        validator = new FileValidator(new AppConfig(), detector, new SimpleMeterRegistry());
+        samples = loadCorpus(Paths.get(System.getProperty("corpus.dir", "../test-results")));
+        verifyAgainstTika();
+    }
+
+    @Benchmark
+    public String detector() {
+        byte[] sample = nextSample();
+        return detector.detect(sample, Math.min(sample.length, SNIFF_LENGTH));
+    }
+
+    @Benchmark
+    public String tika() {
+        byte[] sample = nextSample();
+        return tika.detect(Arrays.copyOf(sample, Math.min(sample.length, SNIFF_LENGTH)));
+    }
+
+    @Benchmark
+    public FileValidator.ValidationResult inspect() {
+        FileValidator.Inspection inspection = validator.inspect();
+        inspection.check(Flux.just(DefaultDataBufferFactory.sharedInstance.wrap(nextSample()))).blockLast();
+        return inspection.result();
+    }
+
+    private byte[] nextSample() {
+        byte[] sample = samples.get(next);
+        next = (next + 1) % samples.size();
+        return sample;
+    }
+
+    private void verifyAgainstTika() {
+        List<String> mismatches = new ArrayList<>();
+        for (byte[] sample : samples) {
+            int length = Math.min(sample.length, SNIFF_LENGTH);
+            String ours = detector.detect(sample, length);
+            String theirs = tika.detect(Arrays.copyOf(sample, length));
+            if ("application/x-matroska".equals(theirs)) {
+                theirs = webmOrMatroska(sample, length);
+            }
+            if (!agree(ours, theirs)) {
+                mismatches.add(ours + " vs Tika " + theirs);
+            }
+        }
+        if (!mismatches.isEmpty()) {
+            throw new IllegalStateException("Detector disagrees with Tika: " + mismatches);
+        }
+    }
+
+    private static boolean agree(String ours, String theirs) {
+        String normalized = TIKA_ALIASES.getOrDefault(theirs, theirs);
+        if (ours.equals(normalized)) {
+            return true;
+        }
+        // Tika core stops at the generic OOXML type; the detector reads the part names
+        return "application/x-tika-ooxml".equals(normalized)
+                && ours.startsWith("application/vnd.openxmlformats-officedocument.");
+    }
+
+    private static String webmOrMatroska(byte[] sample, int length) {
+        for (int i = 0; i + WEBM_DOC_TYPE.length <= length; i++) {
+            if (Arrays.equals(sample, i, i + WEBM_DOC_TYPE.length, WEBM_DOC_TYPE, 0, WEBM_DOC_TYPE.length)) {
+                return "video/webm";
+            }
+        }
+        return "video/x-matroska";
+    }
+
+    private static List<byte[]> loadCorpus(Path dir) throws IOException {
+        List<byte[]> samples = new ArrayList<>();
+        if (Files.isDirectory(dir)) {
+            try (Stream<Path> files = Files.list(dir)) {
+                for (Path file : files.filter(Files::isRegularFile).sorted().toList()) {
+                    samples.add(Files.readAllBytes(file));
+                }
+            }
+        }
+        TEXT_SAMPLES.forEach(text -> samples.add(text.getBytes(StandardCharsets.UTF_8)));
+        return samples;
+    }
+}
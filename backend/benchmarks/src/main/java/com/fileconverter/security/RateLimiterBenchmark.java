@@ -0,0 +1,54 @@
+package com.fileconverter.security;
+
+import com.fileconverter.config.AppConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rate limit checks from four threads, either all for one client, spread
+ * over many clients, or over more clients than max-clients so that the
+ * limiter keeps evicting.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class RateLimiterBenchmark {
+
+    @Param({"1", "10000", "1000000"})
+    public int clients;
+
+    private RateLimiter rateLimiter;
+    private String[] clientIds;
+
+    @Setup
+    public void setup() {
+        rateLimiter = new RateLimiter(new AppConfig(), new SimpleMeterRegistry());
+        clientIds = new String[clients];
+        for (int i = 0; i < clients; i++) {
+            clientIds[i] = "10." + (i / 65536) + "." + (i / 256 % 256) + "." + (i % 256);
+        }
+    }
+
+    @Benchmark
+    public boolean tryConsume() {
+        return rateLimiter.tryConsume(clientIds[ThreadLocalRandom.current().nextInt(clients)]);
+    }
+}
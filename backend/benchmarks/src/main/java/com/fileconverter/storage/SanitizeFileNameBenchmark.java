@@ -0,0 +1,38 @@
+package com.fileconverter.storage;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * File name sanitizing, run for every stored upload.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SanitizeFileNameBenchmark {
+
+    @Param({
+            "holiday-photo.jpg",
+            "Quarterly Report (final) v2.docx",
+            "../../etc/passwd",
+            "C:\\Users\\me\\Desktop\\scan:01?.pdf"})
+    public String fileName;
+
+    @Benchmark
+    public String sanitize() {
+        return TempStorageService.sanitizeFileName(fileName);
+    }
+}
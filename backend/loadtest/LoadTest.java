@@ -0,0 +1,291 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Drives the upload, status and download path of a running backend with
+ * concurrent users and reports throughput, latency percentiles per phase
+ * and how many uploads were turned away. Run with {@code java LoadTest.java};
+ * see run.sh for the arguments. Given several comma-separated URLs, requests
+ * go to each in turn, so a job's status and download are usually fetched
+ * from a node other than the one it was uploaded to.
+ */
+public class LoadTest {
+
+    private static final Pattern JOB_ID = Pattern.compile("\"jobId\"\\s*:\\s*\"([^\"]+)\"");
+    private static final Pattern TOKEN = Pattern.compile("\"token\"\\s*:\\s*\"([^\"]+)\"");
+    private static final Pattern STATUS = Pattern.compile("\"status\"\\s*:\\s*\"([A-Z]+)\"");
+
+    private final List<String> baseUrls;
+    private final int users;
+    private final int uploads;
+    private final long pollMillis;
+    private final long timeoutMillis;
+    private final List<Sample> samples;
+    private final HttpClient client;
+
+    // The upload endpoint rejects a part whose declared type is not allowed
+    private static final Map<String, String> CONTENT_TYPES = Map.ofEntries(
+            Map.entry("jpg", "image/jpeg"), Map.entry("jpeg", "image/jpeg"), Map.entry("png", "image/png"),
+            Map.entry("gif", "image/gif"), Map.entry("webp", "image/webp"), Map.entry("bmp", "image/bmp"),
+            Map.entry("tif", "image/tiff"), Map.entry("tiff", "image/tiff"), Map.entry("svg", "image/svg+xml"),
+            Map.entry("pdf", "application/pdf"), Map.entry("doc", "application/msword"),
+            Map.entry("docx", "application/vnd.openxmlformats-officedocument.wordprocessingml.document"),
+            Map.entry("xls", "application/vnd.ms-excel"),
+            Map.entry("xlsx", "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet"),
+            Map.entry("ppt", "application/vnd.ms-powerpoint"),
+            Map.entry("pptx", "application/vnd.openxmlformats-officedocument.presentationml.presentation"),
+            Map.entry("odt", "application/vnd.oasis.opendocument.text"),
+            Map.entry("ods", "application/vnd.oasis.opendocument.spreadsheet"),
+            Map.entry("odp", "application/vnd.oasis.opendocument.presentation"),
+            Map.entry("txt", "text/plain"), Map.entry("html", "text/html"), Map.entry("htm", "text/html"),
+            Map.entry("md", "text/markdown"), Map.entry("csv", "text/csv"),
+            Map.entry("mp4", "video/mp4"), Map.entry("webm", "video/webm"), Map.entry("avi", "video/x-msvideo"),
+            Map.entry("mov", "video/quicktime"), Map.entry("mkv", "video/x-matroska"),
+            Map.entry("mp3", "audio/mpeg"), Map.entry("wav", "audio/wav"), Map.entry("ogg", "audio/ogg"),
+            Map.entry("flac", "audio/flac"), Map.entry("aac", "audio/aac"), Map.entry("m4a", "audio/mp4"));
+
+    private final Map<String, List<Long>> latencies = new HashMap<>();
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicInteger started = new AtomicInteger();
+    private final AtomicInteger accepted = new AtomicInteger();
+    private final AtomicInteger queueFull = new AtomicInteger();
+    private final AtomicInteger rateLimited = new AtomicInteger();
+    private final AtomicInteger uploadErrors = new AtomicInteger();
+    private final AtomicInteger completed = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+    private final AtomicInteger timedOut = new AtomicInteger();
+    private final AtomicLong downloadedBytes = new AtomicLong();
+
+    LoadTest(Map<String, String> options) throws IOException {
+        this.baseUrls = List.of(options.getOrDefault("url", "http://localhost:8080").split(","));
+        this.users = Integer.parseInt(options.getOrDefault("users", "16"));
+        this.uploads = Integer.parseInt(options.getOrDefault("uploads", "500"));
+        this.pollMillis = Long.parseLong(options.getOrDefault("poll-ms", "200"));
+        this.timeoutMillis = Long.parseLong(options.getOrDefault("job-timeout-s", "300")) * 1000;
+        this.samples = new ArrayList<>();
+        for (String spec : options.getOrDefault("samples", "").split(",")) {
+            if (spec.isBlank()) {
+                continue;
+            }
+            // path=targetFormat
+            String[] parts = spec.split("=", 2);
+            Path path = Path.of(parts[0]);
+            String fileName = path.getFileName().toString();
+            String extension = fileName.substring(fileName.lastIndexOf('.') + 1).toLowerCase();
+            String contentType = CONTENT_TYPES.get(extension);
+            if (contentType == null) {
+                throw new IllegalArgumentException("Unknown sample type: " + fileName);
+            }
+            samples.add(new Sample(fileName, Files.readAllBytes(path), contentType, parts[1]));
+        }
+        if (samples.isEmpty()) {
+            throw new IllegalArgumentException("No samples given; use --samples=file=format,...");
+        }
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (arg.startsWith("--") && arg.contains("=")) {
+                options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+            }
+        }
+        new LoadTest(options).run();
+    }
+
+    void run() throws InterruptedException {
+        System.out.printf("Running %d uploads from %d users against %s%n", uploads, users,
+                String.join(", ", baseUrls));
+        long begin = System.nanoTime();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < users; i++) {
+                executor.submit(this::user);
+            }
+        }
+        double seconds = (System.nanoTime() - begin) / 1e9;
+        report(seconds);
+    }
+
+    private void user() {
+        int n;
+        while ((n = started.getAndIncrement()) < uploads) {
+            Sample sample = samples.get(n % samples.size());
+            try {
+                convert(sample);
+            } catch (Exception e) {
+                uploadErrors.incrementAndGet();
+            }
+        }
+    }
+
+    private void convert(Sample sample) throws IOException, InterruptedException {
+        long begin = System.nanoTime();
+
+        String boundary = "----loadtest" + UUID.randomUUID();
+        HttpRequest upload = HttpRequest.newBuilder(
+                        URI.create(baseUrl() + "/api/upload?targetFormat=" + sample.targetFormat()))
+                .header("Content-Type", "multipart/form-data; boundary=" + boundary)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(multipart(boundary, sample)))
+                .build();
+        HttpResponse<String> uploaded = client.send(upload, HttpResponse.BodyHandlers.ofString());
+        long uploadedAt = System.nanoTime();
+        record("upload", begin, uploadedAt);
+
+        if (uploaded.statusCode() == 429) {
+            rateLimited.incrementAndGet();
+            return;
+        }
+        if (uploaded.statusCode() == 503) {
+            queueFull.incrementAndGet();
+            return;
+        }
+        if (uploaded.statusCode() != 200) {
+            uploadErrors.incrementAndGet();
+            return;
+        }
+        accepted.incrementAndGet();
+        String jobId = match(JOB_ID, uploaded.body());
+        String token = match(TOKEN, uploaded.body());
+
+        String status = "QUEUED";
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (!status.equals("COMPLETED") && !status.equals("FAILED")) {
+            if (System.currentTimeMillis() > deadline) {
+                timedOut.incrementAndGet();
+                return;
+            }
+            Thread.sleep(pollMillis);
+            long pollBegin = System.nanoTime();
+            HttpResponse<String> polled = client.send(authorized("/api/jobs/" + jobId, token).build(),
+                    HttpResponse.BodyHandlers.ofString());
+            record("status", pollBegin, System.nanoTime());
+            String current = polled.statusCode() == 200 ? match(STATUS, polled.body()) : null;
+            status = current != null ? current : "FAILED";
+        }
+        long finishedAt = System.nanoTime();
+        record("queue+convert", uploadedAt, finishedAt);
+        if (status.equals("FAILED")) {
+            failed.incrementAndGet();
+            return;
+        }
+
+        HttpResponse<InputStream> download = client.send(
+                authorized("/api/jobs/" + jobId + "/download", token).build(),
+                HttpResponse.BodyHandlers.ofInputStream());
+        try (InputStream body = download.body()) {
+            downloadedBytes.addAndGet(body.transferTo(OutputStream.nullOutputStream()));
+        }
+        long downloadedAt = System.nanoTime();
+        record("download", finishedAt, downloadedAt);
+        record("end-to-end", begin, downloadedAt);
+        if (download.statusCode() == 200) {
+            completed.incrementAndGet();
+        } else {
+            failed.incrementAndGet();
+        }
+    }
+
+    private HttpRequest.Builder authorized(String path, String token) {
+        return HttpRequest.newBuilder(URI.create(baseUrl() + path))
+                .header("Authorization", "Bearer " + token)
+                .GET();
+    }
+
+    private String baseUrl() {
+        return baseUrls.get(Math.floorMod(requests.getAndIncrement(), baseUrls.size()));
+    }
+
+    private static byte[] multipart(String boundary, Sample sample) {
+        String head = "--" + boundary + "\r\n"
+                + "Content-Disposition: form-data; name=\"file\"; filename=\"" + sample.fileName() + "\"\r\n"
+                + "Content-Type: " + sample.contentType() + "\r\n\r\n";
+        String tail = "\r\n--" + boundary + "--\r\n";
+        byte[] headBytes = head.getBytes(StandardCharsets.UTF_8);
+        byte[] tailBytes = tail.getBytes(StandardCharsets.UTF_8);
+        byte[] body = new byte[headBytes.length + sample.content().length + tailBytes.length];
+        System.arraycopy(headBytes, 0, body, 0, headBytes.length);
+        System.arraycopy(sample.content(), 0, body, headBytes.length, sample.content().length);
+        System.arraycopy(tailBytes, 0, body, headBytes.length + sample.content().length, tailBytes.length);
+        return body;
+    }
+
+    private static String match(Pattern pattern, String body) {
+        Matcher matcher = pattern.matcher(body);
+        return matcher.find() ? matcher.group(1) : null;
+    }
+
+    private void record(String phase, long fromNanos, long toNanos) {
+        List<Long> values;
+        synchronized (latencies) {
+            values = latencies.computeIfAbsent(phase, p -> Collections.synchronizedList(new ArrayList<>()));
+        }
+        values.add((toNanos - fromNanos) / 1_000_000);
+    }
+
+    private void report(double seconds) {
+        int submitted = Math.min(started.get(), uploads);
+        System.out.println();
+        System.out.printf("Duration:            %.1f s%n", seconds);
+        System.out.printf("Uploads:             %d submitted, %d accepted%n", submitted, accepted.get());
+        System.out.printf("Rejected, not admitted: %d (%.1f%%)%n", queueFull.get(), percent(queueFull.get(), submitted));
+        System.out.printf("Rejected, rate limit: %d (%.1f%%)%n", rateLimited.get(), percent(rateLimited.get(), submitted));
+        System.out.printf("Upload errors:       %d%n", uploadErrors.get());
+        System.out.printf("Jobs:                %d completed, %d failed, %d timed out%n",
+                completed.get(), failed.get(), timedOut.get());
+        System.out.printf("Throughput:          %.1f completed jobs/s, %.1f MB/s downloaded%n",
+                completed.get() / seconds, downloadedBytes.get() / seconds / (1024 * 1024));
+        System.out.println();
+        System.out.printf("%-14s %8s %8s %8s %8s %8s%n", "Phase (ms)", "count", "p50", "p90", "p99", "max");
+        for (String phase : List.of("upload", "status", "queue+convert", "download", "end-to-end")) {
+            List<Long> values = latencies.get(phase);
+            if (values == null || values.isEmpty()) {
+                continue;
+            }
+            List<Long> sorted;
+            synchronized (values) {
+                sorted = new ArrayList<>(values);
+            }
+            Collections.sort(sorted);
+            System.out.printf("%-14s %8d %8d %8d %8d %8d%n", phase, sorted.size(),
+                    percentile(sorted, 50), percentile(sorted, 90), percentile(sorted, 99),
+                    sorted.get(sorted.size() - 1));
+        }
+    }
+
+    private static double percent(int count, int total) {
+        return total > 0 ? 100.0 * count / total : 0;
+    }
+
+    private static long percentile(List<Long> sorted, int p) {
+        int index = (int) Math.ceil(p / 100.0 * sorted.size()) - 1;
+        return sorted.get(Math.max(0, Math.min(index, sorted.size() - 1)));
+    }
+
+    private record Sample(String fileName, byte[] content, String contentType, String targetFormat) {
+    }
+}
@@ -0,0 +1,117 @@
+#!/bin/bash
+
+# End-to-end load test with stub converters: starts the backend with
+# stub-tool.sh linked in as ffmpeg, ffprobe, convert, mogrify, soffice and
+# pandoc, drives it with LoadTest.java and reports heap and GC figures.
+#
+# Environment:
+#   USERS, UPLOADS, POLL_MS     load shape (default 16 users, 500 uploads, 200 ms)
+#   STUB_SLEEP_MS, STUB_CPU_MS, STUB_OUTPUT_KB and per-pool overrides such as
+#   STUB_LIBREOFFICE_SLEEP_MS   stub behaviour, see stub-tool.sh
+#   SAMPLES                     file=targetFormat,... (default: one per type in ../test-results)
+#   PORT                        backend port (default 18080); metrics are on PORT + 1
+#   NODES                       backends to start (default 1); node i listens on
+#                               PORT + 2i and all share a cluster directory, with
+#                               the load spread across them
+#   JAVA_OPTS                   backend JVM options (default -Xmx512m)
+# Extra arguments are passed to the backend, e.g. --app.worker.virtual-threads=true
+set -e
+
+cd "$(dirname "$0")"
+HERE=$(pwd)
+PORT=${PORT:-18080}
+NODES=${NODES:-1}
+WORK=$(mktemp -d -t file-converter-loadtest-XXXX)
+BIN="$WORK/bin"
+
+mvn -q -f ../pom.xml package -DskipTests
+JAR=$(ls ../target/*-exec.jar | head -n 1)
+
+# Stub tools, configured through stub.conf because their environment is cleared
+mkdir -p "$BIN"
+for tool in ffmpeg ffprobe convert mogrify soffice pandoc; do
+    ln -s "$HERE/stub-tool.sh" "$BIN/$tool"
+done
+env | grep '^STUB_' > "$BIN/stub.conf" || true
+
+if [ -z "$SAMPLES" ]; then
+    printf '# Load test\n\nSome *markdown* to convert.\n' > "$WORK/sample.md"
+    SAMPLES="$WORK/sample.md=html"
+    for pair in png=webp webp=png pdf=docx docx=pdf mp3=wav wav=mp3 webm=mp4; do
+        file=$(ls ../test-results/*."${pair%%=*}" 2>/dev/null | head -n 1)
+        [ -n "$file" ] && SAMPLES="$SAMPLES,$(realpath "$file")=${pair#*=}"
+    done
+fi
+
+PIDS=()
+URLS=()
+trap 'kill "${PIDS[@]}" 2>/dev/null; kill $JSTAT 2>/dev/null' EXIT
+for ((i = 0; i < NODES; i++)); do
+    NODE_PORT=$((PORT + 2 * i))
+    NODE_DIR="$WORK/node$i"
+    CLUSTER=()
+    if [ "$NODES" -gt 1 ]; then
+        CLUSTER=(--app.cluster.store=shared-fs --app.cluster.dir="$WORK/cluster"
+            --app.cluster.node-id="node$i" --app.cluster.advertise-url="http://localhost:$NODE_PORT")
+    fi
+    echo "Starting backend on port $NODE_PORT (work dir $NODE_DIR)"
+    mkdir -p "$NODE_DIR"
+    java ${JAVA_OPTS:--Xmx512m} -Xlog:gc:file="$NODE_DIR/gc.log" -jar "$JAR" \
+        --server.port="$NODE_PORT" \
+        --management.server.port=$((NODE_PORT + 1)) \
+        --app.worker.tool-path="$BIN:/usr/bin:/bin" \
+        --app.office.enabled=false \
+        --app.cache.enabled=false \
+        --app.worker.coalesce=false \
+        --app.security.rate-limit.requests-per-minute=1000000 \
+        --app.security.rate-limit.burst-capacity=1000000 \
+        --app.security.rate-limit.cost-seconds-per-minute=1000000000 \
+        --app.security.rate-limit.cost-burst-seconds=1000000000 \
+        --app.storage.temp-dir="$NODE_DIR/storage" \
+        --app.journal.dir="$NODE_DIR/journal" \
+        "${CLUSTER[@]}" \
+        "$@" > "$NODE_DIR/backend.log" 2>&1 &
+    PIDS+=($!)
+    URLS+=("http://localhost:$NODE_PORT")
+done
+
+for ((i = 0; i < NODES; i++)); do
+    until curl -sf "${URLS[$i]}/api/upload/formats" > /dev/null; do
+        if ! kill -0 "${PIDS[$i]}" 2>/dev/null; then
+            echo "Backend failed to start, see $WORK/node$i/backend.log"
+            exit 1
+        fi
+        sleep 1
+    done
+done
+
+# Heap and GC figures are for the first node
+PID=${PIDS[0]}
+jstat -gc $PID 1000 > "$WORK/jstat.log" &
+JSTAT=$!
+
+java LoadTest.java \
+    --url="$(IFS=,; echo "${URLS[*]}")" \
+    --users="${USERS:-16}" \
+    --uploads="${UPLOADS:-500}" \
+    --poll-ms="${POLL_MS:-200}" \
+    --samples="$SAMPLES"
+
+kill $JSTAT 2>/dev/null || true
+
+# Heap is the sum of the used survivor, eden and old spaces
+echo
+awk '
+    NR == 1 { for (i = 1; i <= NF; i++) col[$i] = i; next }
+    $1 ~ /^[0-9.]+$/ {
+        used = $col["S0U"] + $col["S1U"] + $col["EU"] + $col["OU"]
+        if (used > peak) peak = used
+        last = $0
+    }
+    END {
+        split(last, f)
+        printf "Heap:                %.1f MB peak used\n", peak / 1024
+        printf "GC:                  %d young (%.2f s), %d full (%.2f s), %.2f s total\n",
+            f[col["YGC"]], f[col["YGCT"]], f[col["FGC"]], f[col["FGCT"]], f[col["GCT"]]
+    }' "$WORK/jstat.log"
+echo "Backend logs, GC logs and jstat samples are in $WORK"
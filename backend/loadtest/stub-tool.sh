@@ -0,0 +1,135 @@
+#!/bin/bash
+
+# Stand-in for ffmpeg, ffprobe, convert, mogrify, soffice and pandoc, chosen
+# by the name it is invoked under. It accepts the arguments the converters
+# pass, spends the configured time, and writes random bytes where the real
+# tool would write its output.
+#
+# Settings are read from stub.conf next to the invoked link, because
+# ProcessExecutor clears the environment:
+#   STUB_SLEEP_MS   wall-clock time per file (default 200)
+#   STUB_CPU_MS     busy-loop CPU time per file (default 0)
+#   STUB_OUTPUT_KB  size of each output (default 64)
+# Each can be overridden per pool, e.g. STUB_LIBREOFFICE_SLEEP_MS=2000.
+
+dir=$(dirname "$0")
+tool=$(basename "$0")
+[ -f "$dir/stub.conf" ] && . "$dir/stub.conf"
+
+case "$tool" in
+    ffmpeg | ffprobe) pool=FFMPEG ;;
+    convert | mogrify) pool=IMAGEMAGICK ;;
+    soffice) pool=LIBREOFFICE ;;
+    pandoc) pool=PANDOC ;;
+    *) echo "stub-tool: unknown tool $tool" >&2; exit 2 ;;
+esac
+
+setting() {
+    local specific="STUB_${pool}_$1"
+    local general="STUB_$1"
+    echo "${!specific:-${!general:-$2}}"
+}
+
+SLEEP_MS=$(setting SLEEP_MS 200)
+CPU_MS=$(setting CPU_MS 0)
+OUTPUT_KB=$(setting OUTPUT_KB 64)
+
+work() {
+    if [ "$CPU_MS" -gt 0 ]; then
+        local end=$(($(date +%s%N) + CPU_MS * 1000000))
+        while (($(date +%s%N) < end)); do :; done
+    fi
+    if [ "$SLEEP_MS" -gt 0 ]; then
+        sleep "$(awk "BEGIN { print $SLEEP_MS / 1000 }")"
+    fi
+}
+
+produce() {
+    head -c $((OUTPUT_KB * 1024)) /dev/urandom
+}
+
+base_name() {
+    local name
+    name=$(basename "$1")
+    echo "${name%.*}"
+}
+
+last_arg() {
+    echo "${@: -1}"
+}
+
+case "$tool" in
+    ffprobe)
+        echo "10.000000"
+        ;;
+
+    ffmpeg)
+        out=$(last_arg "$@")
+        if [ "$out" = "pipe:1" ]; then
+            # Piped conversion: read the upload as it arrives, then answer on stdout
+            cat > /dev/null
+            work
+            produce
+        else
+            work
+            produce > "$out"
+            echo "progress=end"
+        fi
+        ;;
+
+    convert)
+        work
+        produce > "$(last_arg "$@")"
+        ;;
+
+    mogrify)
+        # mogrify -path <dir> -format <fmt> [options] <inputs...>
+        while [ $# -gt 0 ]; do
+            case "$1" in
+                -path) outdir=$2; shift 2 ;;
+                -format) format=$2; shift 2 ;;
+                -*) shift 2 ;;
+                *) inputs+=("$1"); shift ;;
+            esac
+        done
+        for input in "${inputs[@]}"; do
+            work
+            produce > "$outdir/$(base_name "$input").$format"
+        done
+        ;;
+
+    soffice)
+        # soffice --headless [-env:...] [--infilter=...] --convert-to <fmt> --outdir <dir> <inputs...>
+        while [ $# -gt 0 ]; do
+            case "$1" in
+                --convert-to) format=${2%%:*}; shift 2 ;;
+                --outdir) outdir=$2; shift 2 ;;
+                -*) shift ;;
+                *) inputs+=("$1"); shift ;;
+            esac
+        done
+        for input in "${inputs[@]}"; do
+            work
+            produce > "$outdir/$(base_name "$input").$format"
+        done
+        ;;
+
+    pandoc)
+        # pandoc <input> -o <output> [options], or pandoc -f <from> -t <to> on a pipe
+        out=""
+        while [ $# -gt 0 ]; do
+            case "$1" in
+                -o) out=$2; shift 2 ;;
+                *) shift ;;
+            esac
+        done
+        if [ -z "$out" ]; then
+            cat > /dev/null
+            work
+            produce
+        else
+            work
+            produce > "$out"
+        fi
+        ;;
+esac
@@ -3,6 +3,9 @@ package com.fileconverter.config;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.HashMap;
+import java.util.Map;
+
 @Configuration
 @ConfigurationProperties(prefix = "app")
 public class AppConfig {
@@ -10,6 +13,13 @@ public class AppConfig {
     private Storage storage = new Storage();
     private Security security = new Security();
     private Worker worker = new Worker();
+    private Journal journal = new Journal();
+    private Cache cache = new Cache();
+    private Office office = new Office();
+    private Events events = new Events();
+    private Upload upload = new Upload();
+    private Diagnostics diagnostics = new Diagnostics();
+    private Cluster cluster = new Cluster();
 
     public Storage getStorage() {
         return storage;
@@ -35,6 +45,62 @@ public class AppConfig {
         this.worker = worker;
     }
 
+    public Journal getJournal() {
+        return journal;
+    }
+
+    public void setJournal(Journal journal) {
+        this.journal = journal;
+    }
+
+    public Cache getCache() {
+        return cache;
+    }
+
+    public void setCache(Cache cache) {
+        this.cache = cache;
+    }
+
+    public Office getOffice() {
+        return office;
+    }
+
+    public void setOffice(Office office) {
+        this.office = office;
+    }
+
+    public Events getEvents() {
+        return events;
+    }
+
+    public void setEvents(Events events) {
+        this.events = events;
+    }
+
+    public Upload getUpload() {
+        return upload;
+    }
+
+    public void setUpload(Upload upload) {
+        this.upload = upload;
+    }
+
+    public Diagnostics getDiagnostics() {
+        return diagnostics;
+    }
+
+    public void setDiagnostics(Diagnostics diagnostics) {
+        this.diagnostics = diagnostics;
+    }
+
+    public Cluster getCluster() {
+        return cluster;
+    }
+
+    public void setCluster(Cluster cluster) {
+        this.cluster = cluster;
+    }
+
     public static class Storage {
         private String tempDir;
         private long maxFileSize = 524288000L;
@@ -68,6 +134,9 @@ public class AppConfig {
     public static class Security {
         private String tokenSecret;
         private int tokenTtlMinutes = 30;
+        private String tokenFormat = "jwt";
+        private int tokenCacheSize = 10000;
+        private String adminToken;
         private RateLimit rateLimit = new RateLimit();
 
         public String getTokenSecret() {
@@ -86,6 +155,30 @@ public class AppConfig {
             this.tokenTtlMinutes = tokenTtlMinutes;
         }
 
+        public String getTokenFormat() {
+            return tokenFormat;
+        }
+
+        public void setTokenFormat(String tokenFormat) {
+            this.tokenFormat = tokenFormat;
+        }
+
+        public int getTokenCacheSize() {
+            return tokenCacheSize;
+        }
+
+        public void setTokenCacheSize(int tokenCacheSize) {
+            this.tokenCacheSize = tokenCacheSize;
+        }
+
+        public String getAdminToken() {
+            return adminToken;
+        }
+
+        public void setAdminToken(String adminToken) {
+            this.adminToken = adminToken;
+        }
+
         public RateLimit getRateLimit() {
             return rateLimit;
         }
@@ -97,6 +190,10 @@ public class AppConfig {
         public static class RateLimit {
             private int requestsPerMinute = 30;
             private int burstCapacity = 10;
+            private double costSecondsPerMinute = 120;
+            private double costBurstSeconds = 600;
+            private int maxClients = 50000;
+            private int stripes = 64;
 
             public int getRequestsPerMinute() {
                 return requestsPerMinute;
@@ -113,6 +210,38 @@ public class AppConfig {
             public void setBurstCapacity(int burstCapacity) {
                 this.burstCapacity = burstCapacity;
             }
+
+            public double getCostSecondsPerMinute() {
+                return costSecondsPerMinute;
+            }
+
+            public void setCostSecondsPerMinute(double costSecondsPerMinute) {
+                this.costSecondsPerMinute = costSecondsPerMinute;
+            }
+
+            public double getCostBurstSeconds() {
+                return costBurstSeconds;
+            }
+
+            public void setCostBurstSeconds(double costBurstSeconds) {
+                this.costBurstSeconds = costBurstSeconds;
+            }
+
+            public int getMaxClients() {
+                return maxClients;
+            }
+
+            public void setMaxClients(int maxClients) {
+                this.maxClients = maxClients;
+            }
+
+            public int getStripes() {
+                return stripes;
+            }
+
+            public void setStripes(int stripes) {
+                this.stripes = stripes;
+            }
         }
     }
 
@@ -120,6 +249,16 @@ public class AppConfig {
         private int poolSize = 4;
         private int queueCapacity = 100;
         private int processTimeoutSeconds = 300;
+        private boolean workStealing = true;
+        private boolean virtualThreads = false;
+        private boolean coalesce = true;
+        private boolean pipe = true;
+        private String toolPath = "/usr/bin:/bin:/usr/local/bin";
+        private Scheduling scheduling = new Scheduling();
+        private Adaptive adaptive = new Adaptive();
+        private Batch batch = new Batch();
+        private Admission admission = new Admission();
+        private Map<String, Pool> pools = new HashMap<>();
 
         public int getPoolSize() {
             return poolSize;
@@ -144,5 +283,567 @@ public class AppConfig {
         public void setProcessTimeoutSeconds(int processTimeoutSeconds) {
             this.processTimeoutSeconds = processTimeoutSeconds;
         }
+
+        public boolean isWorkStealing() {
+            return workStealing;
+        }
+
+        public void setWorkStealing(boolean workStealing) {
+            this.workStealing = workStealing;
+        }
+
+        public boolean isVirtualThreads() {
+            return virtualThreads;
+        }
+
+        public void setVirtualThreads(boolean virtualThreads) {
+            this.virtualThreads = virtualThreads;
+        }
+
+        public boolean isCoalesce() {
+            return coalesce;
+        }
+
+        public void setCoalesce(boolean coalesce) {
+            this.coalesce = coalesce;
+        }
+
+        public boolean isPipe() {
+            return pipe;
+        }
+
+        public void setPipe(boolean pipe) {
+            this.pipe = pipe;
+        }
+
+        public String getToolPath() {
+            return toolPath;
+        }
+
+        public void setToolPath(String toolPath) {
+            this.toolPath = toolPath;
+        }
+
+        public Scheduling getScheduling() {
+            return scheduling;
+        }
+
+        public void setScheduling(Scheduling scheduling) {
+            this.scheduling = scheduling;
+        }
+
+        public Adaptive getAdaptive() {
+            return adaptive;
+        }
+
+        public void setAdaptive(Adaptive adaptive) {
+            this.adaptive = adaptive;
+        }
+
+        public Batch getBatch() {
+            return batch;
+        }
+
+        public void setBatch(Batch batch) {
+            this.batch = batch;
+        }
+
+        public Admission getAdmission() {
+            return admission;
+        }
+
+        public void setAdmission(Admission admission) {
+            this.admission = admission;
+        }
+
+        public Map<String, Pool> getPools() {
+            return pools;
+        }
+
+        public void setPools(Map<String, Pool> pools) {
+            this.pools = pools;
+        }
+
+        /**
+         * Pool settings for one converter, falling back to the top-level
+         * pool-size, queue-capacity and admission.max-pending-cost-seconds for
+         * anything not configured. Adaptive bounds default to 1 and the
+         * resolved pool size.
+         */
+        public Pool getPool(String converterName) {
+            Pool configured = pools.getOrDefault(converterName, new Pool());
+            Pool resolved = new Pool();
+            resolved.setPoolSize(configured.getPoolSize() > 0 ? configured.getPoolSize() : poolSize);
+            resolved.setQueueCapacity(configured.getQueueCapacity() > 0
+                    ? configured.getQueueCapacity()
+                    : queueCapacity);
+            resolved.setMinSize(configured.getMinSize() > 0 ? configured.getMinSize() : 1);
+            resolved.setMaxSize(configured.getMaxSize() > 0 ? configured.getMaxSize() : resolved.getPoolSize());
+            resolved.setBaseCostSeconds(configured.getBaseCostSeconds());
+            resolved.setCostSecondsPerMb(configured.getCostSecondsPerMb());
+            resolved.setMaxPendingCostSeconds(configured.getMaxPendingCostSeconds() > 0
+                    ? configured.getMaxPendingCostSeconds()
+                    : admission.getMaxPendingCostSeconds());
+            return resolved;
+        }
+
+        public static class Scheduling {
+            private String policy = "sjf";
+            private double agingWeight = 2.0;
+
+            public String getPolicy() {
+                return policy;
+            }
+
+            public void setPolicy(String policy) {
+                this.policy = policy;
+            }
+
+            public double getAgingWeight() {
+                return agingWeight;
+            }
+
+            public void setAgingWeight(double agingWeight) {
+                this.agingWeight = agingWeight;
+            }
+        }
+
+        public static class Adaptive {
+            private boolean enabled = false;
+            private long intervalMs = 5000;
+            private double maxLoadPerCore = 1.5;
+            private double minFreeMemoryRatio = 0.1;
+            private double latencyTolerance = 2.0;
+
+            public boolean isEnabled() {
+                return enabled;
+            }
+
+            public void setEnabled(boolean enabled) {
+                this.enabled = enabled;
+            }
+
+            public long getIntervalMs() {
+                return intervalMs;
+            }
+
+            public void setIntervalMs(long intervalMs) {
+                this.intervalMs = intervalMs;
+            }
+
+            public double getMaxLoadPerCore() {
+                return maxLoadPerCore;
+            }
+
+            public void setMaxLoadPerCore(double maxLoadPerCore) {
+                this.maxLoadPerCore = maxLoadPerCore;
+            }
+
+            public double getMinFreeMemoryRatio() {
+                return minFreeMemoryRatio;
+            }
+
+            public void setMinFreeMemoryRatio(double minFreeMemoryRatio) {
+                this.minFreeMemoryRatio = minFreeMemoryRatio;
+            }
+
+            public double getLatencyTolerance() {
+                return latencyTolerance;
+            }
+
+            public void setLatencyTolerance(double latencyTolerance) {
+                this.latencyTolerance = latencyTolerance;
+            }
+        }
+
+        public static class Batch {
+            private boolean enabled = true;
+            private int maxSize = 20;
+            private long lingerMs = 20;
+            private long maxInputSizeKb = 1024;
+
+            public boolean isEnabled() {
+                return enabled;
+            }
+
+            public void setEnabled(boolean enabled) {
+                this.enabled = enabled;
+            }
+
+            public int getMaxSize() {
+                return maxSize;
+            }
+
+            public void setMaxSize(int maxSize) {
+                this.maxSize = maxSize;
+            }
+
+            public long getLingerMs() {
+                return lingerMs;
+            }
+
+            public void setLingerMs(long lingerMs) {
+                this.lingerMs = lingerMs;
+            }
+
+            public long getMaxInputSizeKb() {
+                return maxInputSizeKb;
+            }
+
+            public void setMaxInputSizeKb(long maxInputSizeKb) {
+                this.maxInputSizeKb = maxInputSizeKb;
+            }
+        }
+
+        public static class Admission {
+            private double maxPendingCostSeconds = 1800;
+            private long maxPendingMb = 4096;
+            private double minFreeMemoryRatio = 0.05;
+            private int maxRetryAfterSeconds = 300;
+
+            public double getMaxPendingCostSeconds() {
+                return maxPendingCostSeconds;
+            }
+
+            public void setMaxPendingCostSeconds(double maxPendingCostSeconds) {
+                this.maxPendingCostSeconds = maxPendingCostSeconds;
+            }
+
+            public long getMaxPendingMb() {
+                return maxPendingMb;
+            }
+
+            public void setMaxPendingMb(long maxPendingMb) {
+                this.maxPendingMb = maxPendingMb;
+            }
+
+            public double getMinFreeMemoryRatio() {
+                return minFreeMemoryRatio;
+            }
+
+            public void setMinFreeMemoryRatio(double minFreeMemoryRatio) {
+                this.minFreeMemoryRatio = minFreeMemoryRatio;
+            }
+
+            public int getMaxRetryAfterSeconds() {
+                return maxRetryAfterSeconds;
+            }
+
+            public void setMaxRetryAfterSeconds(int maxRetryAfterSeconds) {
+                this.maxRetryAfterSeconds = maxRetryAfterSeconds;
+            }
+        }
+
+        public static class Pool {
+            private int poolSize;
+            private int queueCapacity;
+            private int minSize;
+            private int maxSize;
+            private double baseCostSeconds = 1.0;
+            private double costSecondsPerMb = 1.0;
+            private double maxPendingCostSeconds;
+
+            public int getPoolSize() {
+                return poolSize;
+            }
+
+            public void setPoolSize(int poolSize) {
+                this.poolSize = poolSize;
+            }
+
+            public int getQueueCapacity() {
+                return queueCapacity;
+            }
+
+            public void setQueueCapacity(int queueCapacity) {
+                this.queueCapacity = queueCapacity;
+            }
+
+            public int getMinSize() {
+                return minSize;
+            }
+
+            public void setMinSize(int minSize) {
+                this.minSize = minSize;
+            }
+
+            public int getMaxSize() {
+                return maxSize;
+            }
+
+            public void setMaxSize(int maxSize) {
+                this.maxSize = maxSize;
+            }
+
+            public double getBaseCostSeconds() {
+                return baseCostSeconds;
+            }
+
+            public void setBaseCostSeconds(double baseCostSeconds) {
+                this.baseCostSeconds = baseCostSeconds;
+            }
+
+            public double getCostSecondsPerMb() {
+                return costSecondsPerMb;
+            }
+
+            public void setCostSecondsPerMb(double costSecondsPerMb) {
+                this.costSecondsPerMb = costSecondsPerMb;
+            }
+
+            public double getMaxPendingCostSeconds() {
+                return maxPendingCostSeconds;
+            }
+
+            public void setMaxPendingCostSeconds(double maxPendingCostSeconds) {
+                this.maxPendingCostSeconds = maxPendingCostSeconds;
+            }
+        }
+    }
+
+    public static class Journal {
+        private boolean enabled = true;
+        private String dir;
+        private int sizeMb = 16;
+        private long compactIntervalMs = 600000;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public String getDir() {
+            return dir;
+        }
+
+        public void setDir(String dir) {
+            this.dir = dir;
+        }
+
+        public int getSizeMb() {
+            return sizeMb;
+        }
+
+        public void setSizeMb(int sizeMb) {
+            this.sizeMb = sizeMb;
+        }
+
+        public long getCompactIntervalMs() {
+            return compactIntervalMs;
+        }
+
+        public void setCompactIntervalMs(long compactIntervalMs) {
+            this.compactIntervalMs = compactIntervalMs;
+        }
+    }
+
+    public static class Cache {
+        private boolean enabled = true;
+        private String dir;
+        private long maxSizeMb = 1024;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public String getDir() {
+            return dir;
+        }
+
+        public void setDir(String dir) {
+            this.dir = dir;
+        }
+
+        public long getMaxSizeMb() {
+            return maxSizeMb;
+        }
+
+        public void setMaxSizeMb(long maxSizeMb) {
+            this.maxSizeMb = maxSizeMb;
+        }
+    }
+
+    public static class Office {
+        private boolean enabled = true;
+        private int instances = 2;
+        private int basePort = 2002;
+        private int maxConversionsPerInstance = 200;
+        private String profileDir;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getInstances() {
+            return instances;
+        }
+
+        public void setInstances(int instances) {
+            this.instances = instances;
+        }
+
+        public int getBasePort() {
+            return basePort;
+        }
+
+        public void setBasePort(int basePort) {
+            this.basePort = basePort;
+        }
+
+        public int getMaxConversionsPerInstance() {
+            return maxConversionsPerInstance;
+        }
+
+        public void setMaxConversionsPerInstance(int maxConversionsPerInstance) {
+            this.maxConversionsPerInstance = maxConversionsPerInstance;
+        }
+
+        public String getProfileDir() {
+            return profileDir;
+        }
+
+        public void setProfileDir(String profileDir) {
+            this.profileDir = profileDir;
+        }
+    }
+
+    public static class Events {
+        private long minIntervalMs = 250;
+        private long heartbeatSeconds = 15;
+
+        public long getMinIntervalMs() {
+            return minIntervalMs;
+        }
+
+        public void setMinIntervalMs(long minIntervalMs) {
+            this.minIntervalMs = minIntervalMs;
+        }
+
+        public long getHeartbeatSeconds() {
+            return heartbeatSeconds;
+        }
+
+        public void setHeartbeatSeconds(long heartbeatSeconds) {
+            this.heartbeatSeconds = heartbeatSeconds;
+        }
+    }
+
+    public static class Upload {
+        private int sessionTtlMinutes = 60;
+
+        public int getSessionTtlMinutes() {
+            return sessionTtlMinutes;
+        }
+
+        public void setSessionTtlMinutes(int sessionTtlMinutes) {
+            this.sessionTtlMinutes = sessionTtlMinutes;
+        }
+    }
+
+    public static class Diagnostics {
+        private String recordingDir;
+        private int maxRecordingMinutes = 10;
+        private long maxRecordingSizeMb = 100;
+        private String recordingSettings = "profile";
+
+        public String getRecordingDir() {
+            return recordingDir;
+        }
+
+        public void setRecordingDir(String recordingDir) {
+            this.recordingDir = recordingDir;
+        }
+
+        public int getMaxRecordingMinutes() {
+            return maxRecordingMinutes;
+        }
+
+        public void setMaxRecordingMinutes(int maxRecordingMinutes) {
+            this.maxRecordingMinutes = maxRecordingMinutes;
+        }
+
+        public long getMaxRecordingSizeMb() {
+            return maxRecordingSizeMb;
+        }
+
+        public void setMaxRecordingSizeMb(long maxRecordingSizeMb) {
+            this.maxRecordingSizeMb = maxRecordingSizeMb;
+        }
+
+        public String getRecordingSettings() {
+            return recordingSettings;
+        }
+
+        public void setRecordingSettings(String recordingSettings) {
+            this.recordingSettings = recordingSettings;
+        }
+    }
+
+    public static class Cluster {
+        private String store = "local";
+        private String dir;
+        private String nodeId = "local";
+        private String advertiseUrl = "http://localhost:8080";
+        private long heartbeatIntervalMs = 2000;
+        private long leaseTtlMs = 10000;
+
+        public String getStore() {
+            return store;
+        }
+
+        public void setStore(String store) {
+            this.store = store;
+        }
+
+        public String getDir() {
+            return dir;
+        }
+
+        public void setDir(String dir) {
+            this.dir = dir;
+        }
+
+        public String getNodeId() {
+            return nodeId;
+        }
+
+        public void setNodeId(String nodeId) {
+            this.nodeId = nodeId;
+        }
+
+        public String getAdvertiseUrl() {
+            return advertiseUrl;
+        }
+
+        public void setAdvertiseUrl(String advertiseUrl) {
+            this.advertiseUrl = advertiseUrl;
+        }
+
+        public long getHeartbeatIntervalMs() {
+            return heartbeatIntervalMs;
+        }
+
+        public void setHeartbeatIntervalMs(long heartbeatIntervalMs) {
+            this.heartbeatIntervalMs = heartbeatIntervalMs;
+        }
+
+        public long getLeaseTtlMs() {
+            return leaseTtlMs;
+        }
+
+        public void setLeaseTtlMs(long leaseTtlMs) {
+            this.leaseTtlMs = leaseTtlMs;
+        }
     }
 }
@@ -0,0 +1,146 @@
+package com.fileconverter.controller;
+
+import com.fileconverter.config.AppConfig;
+import com.fileconverter.diagnostics.FlightRecorderService;
+import com.fileconverter.dto.ErrorResponse;
+import com.fileconverter.job.AdaptiveConcurrencyController;
+import com.fileconverter.storage.ConversionCache;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Operational endpoints. Disabled unless app.security.admin-token is set, in
+ * which case callers must send it in the X-Admin-Token header.
+ */
+@RestController
+@RequestMapping("/api/admin")
+public class AdminController {
+
+    private final AdaptiveConcurrencyController concurrencyController;
+    private final ConversionCache conversionCache;
+    private final FlightRecorderService flightRecorder;
+    private final String adminToken;
+
+    public AdminController(AdaptiveConcurrencyController concurrencyController,
+            ConversionCache conversionCache, FlightRecorderService flightRecorder, AppConfig config) {
+        this.concurrencyController = concurrencyController;
+        this.conversionCache = conversionCache;
+        this.flightRecorder = flightRecorder;
+        this.adminToken = config.getSecurity().getAdminToken();
+    }
+
+    @GetMapping("/concurrency")
+    public Mono<ResponseEntity<?>> getConcurrency(
+            @RequestHeader(value = "X-Admin-Token", required = false) String token,
+            ServerWebExchange exchange) {
+
+        ResponseEntity<?> denied = checkAccess(token, exchange);
+        if (denied != null) {
+            return Mono.just(denied);
+        }
+
+        return Mono.just(ResponseEntity.ok(Map.of(
+                "adaptive", concurrencyController.isEnabled(),
+                "limits", concurrencyController.getLimits(),
+                "decisions", concurrencyController.getRecentDecisions())));
+    }
+
+    @GetMapping("/cache")
+    public Mono<ResponseEntity<?>> getCache(
+            @RequestHeader(value = "X-Admin-Token", required = false) String token,
+            ServerWebExchange exchange) {
+
+        ResponseEntity<?> denied = checkAccess(token, exchange);
+        if (denied != null) {
+            return Mono.just(denied);
+        }
+
+        return Mono.just(ResponseEntity.ok(conversionCache.getStats()));
+    }
+
+    @GetMapping("/recording")
+    public Mono<ResponseEntity<?>> getRecording(
+            @RequestHeader(value = "X-Admin-Token", required = false) String token,
+            ServerWebExchange exchange) {
+
+        ResponseEntity<?> denied = checkAccess(token, exchange);
+        if (denied != null) {
+            return Mono.just(denied);
+        }
+
+        return Mono.just(ResponseEntity.ok(flightRecorder.getStatus()));
+    }
+
+    /**
+     * Start a Flight Recorder recording on this node. It stops by itself
+     * after the given number of seconds, capped by
+     * app.diagnostics.max-recording-minutes.
+     */
+    @PostMapping("/recording")
+    public Mono<ResponseEntity<?>> startRecording(
+            @RequestHeader(value = "X-Admin-Token", required = false) String token,
+            @RequestParam(value = "durationSeconds", required = false) Long durationSeconds,
+            ServerWebExchange exchange) {
+
+        ResponseEntity<?> denied = checkAccess(token, exchange);
+        if (denied != null) {
+            return Mono.just(denied);
+        }
+        if (durationSeconds != null && durationSeconds <= 0) {
+            return Mono.error(new IllegalArgumentException("durationSeconds must be positive"));
+        }
+
+        return Mono.fromCallable(() -> ResponseEntity.ok(flightRecorder.start(
+                durationSeconds != null ? Duration.ofSeconds(durationSeconds) : null)));
+    }
+
+    /**
+     * Stop the recording, if it is still running, and download it as a
+     * .jfr file.
+     */
+    @PostMapping("/recording/stop")
+    public Mono<ResponseEntity<?>> stopRecording(
+            @RequestHeader(value = "X-Admin-Token", required = false) String token,
+            ServerWebExchange exchange) {
+
+        ResponseEntity<?> denied = checkAccess(token, exchange);
+        if (denied != null) {
+            return Mono.just(denied);
+        }
+
+        String path = exchange.getRequest().getPath().value();
+        return Mono.fromCallable(() -> flightRecorder.stop()
+                .<ResponseEntity<?>>map(file -> ResponseEntity.ok()
+                        .header(HttpHeaders.CONTENT_DISPOSITION,
+                                "attachment; filename=\"" + file.getFileName() + "\"")
+                        .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                        .body(new FileSystemResource(file)))
+                .orElseGet(() -> ResponseEntity.status(HttpStatus.NOT_FOUND)
+                        .body(ErrorResponse.of(404, "Not Found", "No recording", path))));
+    }
+
+    private ResponseEntity<?> checkAccess(String token, ServerWebExchange exchange) {
+        String path = exchange.getRequest().getPath().value();
+        if (adminToken == null || adminToken.isBlank()) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(ErrorResponse.of(404, "Not Found", "Admin API is disabled", path));
+        }
+        if (token == null || !MessageDigest.isEqual(
+                token.getBytes(StandardCharsets.UTF_8), adminToken.getBytes(StandardCharsets.UTF_8))) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                    .body(ErrorResponse.of(401, "Unauthorized", "Missing or invalid admin token", path));
+        }
+        return null;
+    }
+}
@@ -5,21 +5,36 @@ import com.fileconverter.converter.ConverterRegistry;
 import com.fileconverter.dto.ErrorResponse;
 import com.fileconverter.dto.UploadResponse;
 import com.fileconverter.job.Job;
+import com.fileconverter.job.JobCostEstimator;
+import com.fileconverter.job.JobRejectedException;
 import com.fileconverter.job.JobService;
+import com.fileconverter.job.PipedConversion;
 import com.fileconverter.security.FileValidator;
 import com.fileconverter.security.JobTokenService;
 import com.fileconverter.security.RateLimiter;
 import com.fileconverter.storage.TempStorageService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
-import org.springframework.http.codec.multipart.FilePart;
+import org.springframework.http.codec.multipart.FilePartEvent;
+import org.springframework.http.codec.multipart.PartEvent;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.List;
 import java.util.Map;
 
@@ -29,12 +44,15 @@ public class FileUploadController {
 
         private static final Logger log = LoggerFactory.getLogger(FileUploadController.class);
 
+        private static final CacheControl FORMATS_CACHE = CacheControl.maxAge(Duration.ofHours(1)).cachePublic();
+
         private final TempStorageService storageService;
         private final FileValidator fileValidator;
         private final JobService jobService;
         private final JobTokenService tokenService;
         private final RateLimiter rateLimiter;
         private final ConverterRegistry converterRegistry;
+        private final JobCostEstimator costEstimator;
 
         public FileUploadController(
                         TempStorageService storageService,
@@ -42,18 +60,20 @@ public class FileUploadController {
                         JobService jobService,
                         JobTokenService tokenService,
                         RateLimiter rateLimiter,
-                        ConverterRegistry converterRegistry) {
+                        ConverterRegistry converterRegistry,
+                        JobCostEstimator costEstimator) {
                 this.storageService = storageService;
                 this.fileValidator = fileValidator;
                 this.jobService = jobService;
                 this.tokenService = tokenService;
                 this.rateLimiter = rateLimiter;
                 this.converterRegistry = converterRegistry;
+                this.costEstimator = costEstimator;
         }
 
         @PostMapping(consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
         public Mono<ResponseEntity<?>> uploadFile(
-                        @RequestPart("file") Mono<FilePart> fileMono,
+                        @RequestBody Flux<PartEvent> parts,
                         @RequestParam("targetFormat") String targetFormat,
                         ServerWebExchange exchange) {
 
@@ -67,7 +87,17 @@ public class FileUploadController {
                                                         exchange.getRequest().getPath().value())));
                 }
 
-                return fileMono.flatMap(filePart -> {
+                // Parts are read as events rather than spooled to disk first, so the
+                // file is validated as it arrives. It must be the first part.
+                return parts.<ResponseEntity<?>>switchOnFirst((signal, events) -> {
+                        if (!(signal.get() instanceof FilePartEvent filePart) || !"file".equals(filePart.name())) {
+                                return Mono.just(ResponseEntity.badRequest()
+                                                .body(ErrorResponse.of(400, "Bad Request",
+                                                                "Missing file part",
+                                                                exchange.getRequest().getPath().value())));
+                        }
+                        Flux<DataBuffer> content = events.takeUntil(PartEvent::isLast).map(PartEvent::content);
+
                         String fileName = filePart.filename();
                         String contentType = filePart.headers().getContentType() != null
                                         ? filePart.headers().getContentType().toString()
@@ -86,11 +116,18 @@ public class FileUploadController {
                         // Create temp job ID for file storage
                         String tempJobId = java.util.UUID.randomUUID().toString();
 
-                        return storageService.saveUpload(filePart, tempJobId)
-                                        .flatMap(savedPath -> fileValidator.validate(savedPath)
+                        // Validated inline while writing; a bad file is cut off early
+                        FileValidator.Inspection inspection = fileValidator.inspect();
+                        PipeTee tee = new PipeTee(inspection, fileName, targetFormat, tempJobId);
+
+                        return storageService.saveStream(tee.attach(inspection.check(content)), tempJobId, fileName)
+                                        .doOnError(e -> tee.abort().subscribe())
+                                        .doOnCancel(() -> tee.abort().subscribe())
+                                        .flatMap(savedPath -> Mono.fromSupplier(inspection::result)
                                                         .<ResponseEntity<?>>flatMap(validation -> {
                                                                 if (!validation.valid()) {
-                                                                        return storageService.deleteJob(tempJobId)
+                                                                        return tee.abort()
+                                                                                        .then(storageService.deleteJob(tempJobId))
                                                                                         .then(Mono.just(ResponseEntity
                                                                                                         .badRequest()
                                                                                                         .body((Object) ErrorResponse
@@ -104,7 +141,8 @@ public class FileUploadController {
                                                                 // Check if conversion is supported
                                                                 if (!converterRegistry.isConversionSupported(
                                                                                 validation.mimeType(), targetFormat)) {
-                                                                        return storageService.deleteJob(tempJobId)
+                                                                        return tee.abort()
+                                                                                        .then(storageService.deleteJob(tempJobId))
                                                                                         .then(Mono.just(ResponseEntity
                                                                                                         .badRequest()
                                                                                                         .body((Object) ErrorResponse
@@ -120,10 +158,23 @@ public class FileUploadController {
                                                                                                                                                         .value()))));
                                                                 }
 
-                                                                return jobService.createJob(
-                                                                                fileName, validation.mimeType(),
-                                                                                targetFormat, savedPath)
-                                                                                .map(job -> {
+                                                                // A piped job has been running since the type was known
+                                                                Mono<Job> created = tee.isPiped()
+                                                                                ? tee.finish()
+                                                                                : jobService.createJob(
+                                                                                                fileName, validation.mimeType(),
+                                                                                                targetFormat, savedPath,
+                                                                                                validation.fileSize(),
+                                                                                                validation.sha256());
+                                                                return created
+                                                                                .doOnNext(job -> validation.phases()
+                                                                                                .forEach(job::recordPhase))
+                                                                                // Bigger uploads use up more of the client's budget
+                                                                                .doOnNext(job -> rateLimiter.charge(clientIp,
+                                                                                                costEstimator.estimateSeconds(
+                                                                                                                job.getConverterName(),
+                                                                                                                validation.fileSize())))
+                                                                                .<ResponseEntity<?>>map(job -> {
                                                                                         String token = tokenService
                                                                                                         .generateToken(job
                                                                                                                         .getId());
@@ -138,14 +189,39 @@ public class FileUploadController {
                                                                                                         job.getCreatedAt(),
                                                                                                         job.getExpiresAt());
 
-                                                                                        return (ResponseEntity<?>) ResponseEntity
+                                                                                        return ResponseEntity
                                                                                                         .ok()
                                                                                                         .header("X-Job-Id",
                                                                                                                         job.getId())
                                                                                                         .body(response);
-                                                                                });
-                                                        }));
-                }).onErrorResume(e -> {
+                                                                                })
+                                                                                // Not admitted: tell the client when there should be room
+                                                                                .onErrorResume(JobRejectedException.class,
+                                                                                                e -> storageService.deleteJob(tempJobId)
+                                                                                                                .then(Mono.just(ResponseEntity
+                                                                                                                                .status(HttpStatus.SERVICE_UNAVAILABLE)
+                                                                                                                                .header(HttpHeaders.RETRY_AFTER,
+                                                                                                                                                Long.toString(e.getRetryAfter()
+                                                                                                                                                                .toSeconds()))
+                                                                                                                                .body(ErrorResponse.of(503,
+                                                                                                                                                "Service Unavailable",
+                                                                                                                                                e.getMessage(),
+                                                                                                                                                exchange.getRequest()
+                                                                                                                                                                .getPath()
+                                                                                                                                                                .value())))));
+                                                        }))
+                                        .onErrorResume(FileValidator.UploadRejectedException.class,
+                                                        e -> storageService.deleteJob(tempJobId)
+                                                                        .then(Mono.just(ResponseEntity
+                                                                                        .status(e.getStatus())
+                                                                                        .body(ErrorResponse.of(
+                                                                                                        e.getStatus().value(),
+                                                                                                        e.getStatus().getReasonPhrase(),
+                                                                                                        e.getMessage(),
+                                                                                                        exchange.getRequest()
+                                                                                                                        .getPath()
+                                                                                                                        .value())))));
+                }).next().onErrorResume(e -> {
                         log.error("Upload error", e);
                         return Mono.just(ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                                         .body(ErrorResponse.of(500, "Internal Server Error",
@@ -154,23 +230,114 @@ public class FileUploadController {
                 });
         }
 
+        /**
+         * The conversion matrix is computed when the application starts, so
+         * responses are cacheable and revalidated by ETag.
+         */
         @GetMapping("/formats")
         public Mono<ResponseEntity<Map<String, Object>>> getSupportedFormats(
-                        @RequestParam(required = false) String mimeType) {
+                        @RequestParam(required = false) String mimeType,
+                        ServerWebExchange exchange) {
 
+                String etag = "\"" + converterRegistry.getFormatsVersion() + "\"";
+                if (exchange.checkNotModified(etag)) {
+                        return Mono.just(ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                                        .eTag(etag)
+                                        .cacheControl(FORMATS_CACHE)
+                                        .build());
+                }
+
+                Map<String, Object> body;
                 if (mimeType != null) {
-                        List<String> formats = converterRegistry.getSupportedOutputFormats(mimeType);
-                        return Mono.just(ResponseEntity.ok(Map.of(
+                        body = Map.of(
                                         "inputType", mimeType,
-                                        "outputFormats", formats)));
+                                        "outputFormats", converterRegistry.getSupportedOutputFormats(mimeType));
+                } else {
+                        body = Map.of(
+                                        "supportedInputTypes", AllowedFileTypes.ALL_ALLOWED,
+                                        "categories", Map.of(
+                                                        "image", AllowedFileTypes.IMAGE_TYPES,
+                                                        "document", AllowedFileTypes.DOCUMENT_TYPES,
+                                                        "media", AllowedFileTypes.MEDIA_TYPES),
+                                        "conversions", converterRegistry.getFormatMatrix());
+                }
+                return Mono.just(ResponseEntity.ok()
+                                .eTag(etag)
+                                .cacheControl(FORMATS_CACHE)
+                                .body(body));
+        }
+
+        /**
+         * Hands an upload to a piped conversion once the inspection has
+         * identified it, replaying the bytes that arrived before that. Until
+         * then, and for conversions that cannot be piped, the upload is only
+         * written to disk.
+         */
+        private final class PipeTee {
+
+                private final FileValidator.Inspection inspection;
+                private final String fileName;
+                private final String targetFormat;
+                private final String tempJobId;
+                private ByteArrayOutputStream head;
+                private volatile PipedConversion conversion;
+                private volatile boolean finished;
+
+                PipeTee(FileValidator.Inspection inspection, String fileName, String targetFormat,
+                                String tempJobId) {
+                        this.inspection = inspection;
+                        this.fileName = fileName;
+                        this.targetFormat = targetFormat;
+                        this.tempJobId = tempJobId;
+                        this.head = new ByteArrayOutputStream();
                 }
 
-                return Mono.just(ResponseEntity.ok(Map.of(
-                                "supportedInputTypes", AllowedFileTypes.ALL_ALLOWED,
-                                "categories", Map.of(
-                                                "image", AllowedFileTypes.IMAGE_TYPES,
-                                                "document", AllowedFileTypes.DOCUMENT_TYPES,
-                                                "media", AllowedFileTypes.MEDIA_TYPES))));
+                Flux<DataBuffer> attach(Flux<DataBuffer> content) {
+                        // Writing to the process blocks while it catches up
+                        return content.publishOn(Schedulers.boundedElastic()).doOnNext(this::accept);
+                }
+
+                boolean isPiped() {
+                        return conversion != null;
+                }
+
+                Mono<Job> finish() {
+                        finished = true;
+                        conversion.finish();
+                        return Mono.just(conversion.getJob());
+                }
+
+                Mono<Void> abort() {
+                        PipedConversion current = conversion;
+                        return current != null && !finished ? jobService.abortPiped(current) : Mono.empty();
+                }
+
+                private void accept(DataBuffer buffer) {
+                        if (head != null && inspection.getMimeType() != null) {
+                                start();
+                        }
+                        if (conversion != null) {
+                                conversion.write(buffer);
+                        } else if (head != null) {
+                                byte[] bytes = new byte[buffer.readableByteCount()];
+                                buffer.toByteBuffer(buffer.readPosition(), ByteBuffer.wrap(bytes), 0, bytes.length);
+                                head.writeBytes(bytes);
+                        }
+                }
+
+                private void start() {
+                        try {
+                                Path inputPath = storageService.createOutputPath(tempJobId, fileName);
+                                conversion = jobService.startPiped(fileName, inspection.getMimeType(),
+                                                targetFormat, inputPath).orElse(null);
+                        } catch (IOException e) {
+                                log.warn("Could not prepare piped conversion: {}", e.getMessage());
+                        }
+                        if (conversion != null) {
+                                conversion.write(DefaultDataBufferFactory.sharedInstance.wrap(head.toByteArray()));
+                        }
+                        head = null;
+                }
         }
 
         private String getClientIp(ServerWebExchange exchange) {
@@ -1,8 +1,10 @@
 package com.fileconverter.controller;
 
 import com.fileconverter.dto.ErrorResponse;
+import com.fileconverter.job.JobRejectedException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ExceptionHandler;
@@ -33,6 +35,16 @@ public class GlobalExceptionHandler {
                                                 exchange.getRequest().getPath().value())));
         }
 
+        @ExceptionHandler(JobRejectedException.class)
+        public Mono<ResponseEntity<ErrorResponse>> handleJobRejected(
+                        JobRejectedException ex, ServerWebExchange exchange) {
+                log.warn("Service unavailable: {}", ex.getMessage());
+                return Mono.just(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                                .header(HttpHeaders.RETRY_AFTER, Long.toString(ex.getRetryAfter().toSeconds()))
+                                .body(ErrorResponse.of(503, "Service Unavailable", ex.getMessage(),
+                                                exchange.getRequest().getPath().value())));
+        }
+
         @ExceptionHandler(Exception.class)
         public Mono<ResponseEntity<ErrorResponse>> handleGeneric(
                         Exception ex, ServerWebExchange exchange) {
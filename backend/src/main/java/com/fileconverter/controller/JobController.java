@@ -2,22 +2,39 @@ package com.fileconverter.controller;
 
 import com.fileconverter.dto.ErrorResponse;
 import com.fileconverter.dto.JobStatusResponse;
+import com.fileconverter.config.AppConfig;
+import com.fileconverter.job.Job;
+import com.fileconverter.job.JobEventStream;
+import com.fileconverter.job.JobLocation;
 import com.fileconverter.job.JobService;
+import com.fileconverter.job.JobStatus;
 import com.fileconverter.security.JobTokenService;
 import com.fileconverter.storage.TempStorageService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.core.io.FileSystemResource;
 import org.springframework.core.io.buffer.DataBuffer;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ServerWebExchange;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Function;
 
 @RestController
 @RequestMapping("/api/jobs")
@@ -28,20 +45,47 @@ public class JobController {
     private final JobService jobService;
     private final JobTokenService tokenService;
     private final TempStorageService storageService;
+    private final JobEventStream eventStream;
+    private final NodeForwarder forwarder;
+    private final Flux<ServerSentEvent<Object>> heartbeat;
+    private final Counter fullDownloadBytes;
+    private final Counter rangeDownloadBytes;
+    private final Counter streamedDownloadBytes;
 
     public JobController(
             JobService jobService,
             JobTokenService tokenService,
-            TempStorageService storageService) {
+            TempStorageService storageService,
+            JobEventStream eventStream,
+            NodeForwarder forwarder,
+            AppConfig config,
+            MeterRegistry meterRegistry) {
         this.jobService = jobService;
         this.tokenService = tokenService;
         this.storageService = storageService;
+        this.eventStream = eventStream;
+        this.forwarder = forwarder;
+        this.fullDownloadBytes = downloadCounter(meterRegistry, "full");
+        this.rangeDownloadBytes = downloadCounter(meterRegistry, "range");
+        this.streamedDownloadBytes = downloadCounter(meterRegistry, "streamed");
+        // One timer for every open stream
+        Duration heartbeatInterval = Duration.ofSeconds(config.getEvents().getHeartbeatSeconds());
+        this.heartbeat = Flux.interval(heartbeatInterval, heartbeatInterval)
+                .onBackpressureDrop()
+                .map(tick -> ServerSentEvent.<Object>builder().comment("keep-alive").build())
+                .share();
     }
 
+    /**
+     * With verbose=true the response includes the job's phase timeline:
+     * upload, validation, queue wait, process spawn, conversion and output
+     * collection, each with its start and duration.
+     */
     @GetMapping("/{jobId}")
     public Mono<ResponseEntity<?>> getJobStatus(
             @PathVariable String jobId,
             @RequestHeader(value = "Authorization", required = false) String authHeader,
+            @RequestParam(value = "verbose", defaultValue = "false") boolean verbose,
             ServerWebExchange exchange) {
 
         // Validate token
@@ -64,7 +108,12 @@ public class JobController {
                             exchange.getRequest().getPath().value())));
         }
 
-        return jobService.getJobStatus(jobId)
+        Optional<JobLocation> location = locate(jobId, exchange);
+        if (location.isPresent()) {
+            return routeElsewhere(location.get(), exchange, job -> ResponseEntity.ok(jobService.toResponse(job)));
+        }
+
+        return jobService.getJobStatus(jobId, verbose)
                 .<ResponseEntity<?>>map(status -> ResponseEntity.ok(status))
                 .onErrorResume(IllegalArgumentException.class,
                         e -> Mono.just(ResponseEntity.status(HttpStatus.NOT_FOUND)
@@ -72,8 +121,62 @@ public class JobController {
                                         exchange.getRequest().getPath().value()))));
     }
 
+    /**
+     * Server-Sent Events stream of status snapshots, ending when the job
+     * finishes. EventSource cannot send headers, so the token may also be
+     * passed as a query parameter.
+     */
+    @GetMapping(value = "/{jobId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Mono<ResponseEntity<?>> streamJobEvents(
+            @PathVariable String jobId,
+            @RequestHeader(value = "Authorization", required = false) String authHeader,
+            @RequestParam(value = "token", required = false) String queryToken,
+            ServerWebExchange exchange) {
+
+        String token = authHeader != null ? extractToken(authHeader) : queryToken;
+        if (token == null) {
+            return Mono.just(ResponseEntity.status(HttpStatus.UNAUTHORIZED).build());
+        }
+
+        var validation = tokenService.validateToken(token);
+        if (!validation.valid() || !validation.jobId().equals(jobId)) {
+            return Mono.just(ResponseEntity.status(HttpStatus.UNAUTHORIZED).build());
+        }
+
+        Optional<JobLocation> location = locate(jobId, exchange);
+        if (location.isPresent()) {
+            // A job nobody holds yet gets one snapshot; the client reconnects
+            return routeElsewhere(location.get(), exchange, job -> ResponseEntity.ok()
+                    .header(HttpHeaders.CACHE_CONTROL, "no-cache")
+                    .body(Flux.just(ServerSentEvent.<Object>builder()
+                            .event("status")
+                            .data(jobService.toResponse(job))
+                            .build())));
+        }
+
+        return Mono.just(eventStream.watch(jobId)
+                .<ResponseEntity<?>>map(updates -> {
+                    Flux<ServerSentEvent<Object>> events = updates
+                            .map(status -> ServerSentEvent.<Object>builder()
+                                    .event("status")
+                                    .data(status)
+                                    .build());
+                    return ResponseEntity.ok()
+                            .header(HttpHeaders.CACHE_CONTROL, "no-cache")
+                            .header("X-Accel-Buffering", "no")
+                            .body(events.publish(shared -> Flux.merge(
+                                    shared, heartbeat.takeUntilOther(shared.then()))));
+                })
+                .orElseGet(() -> ResponseEntity.status(HttpStatus.NOT_FOUND).build()));
+    }
+
+    /**
+     * Serves the output as a file resource, so the body is written with
+     * zero-copy file transfer and Range requests get 206 responses. The ETag
+     * (size and modification time) answers If-None-Match and If-Range.
+     */
     @GetMapping(value = "/{jobId}/download", produces = MediaType.APPLICATION_OCTET_STREAM_VALUE)
-    public Mono<ResponseEntity<Flux<DataBuffer>>> downloadFile(
+    public Mono<ResponseEntity<?>> downloadFile(
             @PathVariable String jobId,
             @RequestHeader(value = "Authorization", required = false) String authHeader,
             ServerWebExchange exchange) {
@@ -89,22 +192,62 @@ public class JobController {
             return Mono.just(ResponseEntity.status(HttpStatus.UNAUTHORIZED).build());
         }
 
+        Optional<JobLocation> location = locate(jobId, exchange);
+        if (location.isPresent()) {
+            return routeElsewhere(location.get(), exchange,
+                    job -> ResponseEntity.status(HttpStatus.CONFLICT).build());
+        }
+
+        Optional<Job> streaming = jobService.getStreamingJob(jobId);
+        if (streaming.isPresent()) {
+            return streamGrowingOutput(streaming.get());
+        }
+
         return jobService.getOutputPath(jobId)
                 .flatMap(outputPath -> jobService.getOutputFileName(jobId)
                         .map(fileName -> {
                             if (!Files.exists(outputPath)) {
-                                return ResponseEntity.status(HttpStatus.NOT_FOUND)
-                                        .<Flux<DataBuffer>>build();
+                                return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+                            }
+
+                            FileSystemResource resource = new FileSystemResource(outputPath);
+                            Instant lastModified;
+                            String etag;
+                            try {
+                                lastModified = Instant.ofEpochMilli(resource.lastModified());
+                                etag = "\"" + Long.toHexString(resource.contentLength()) + "-"
+                                        + Long.toHexString(lastModified.toEpochMilli()) + "\"";
+                            } catch (IOException e) {
+                                throw new UncheckedIOException(e);
                             }
 
-                            Flux<DataBuffer> fileStream = storageService.readFile(outputPath);
+                            if (exchange.checkNotModified(etag, lastModified)) {
+                                return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                                        .eTag(etag)
+                                        .build();
+                            }
 
-                            return ResponseEntity.ok()
+                            ResponseEntity.BodyBuilder response = ResponseEntity.ok()
                                     .header(HttpHeaders.CONTENT_DISPOSITION,
                                             "attachment; filename=\"" + fileName + "\"")
                                     .header("X-Job-Id", jobId)
-                                    .contentType(MediaType.APPLICATION_OCTET_STREAM)
-                                    .body(fileStream);
+                                    .header(HttpHeaders.ACCEPT_RANGES, "bytes")
+                                    .eTag(etag)
+                                    .lastModified(lastModified)
+                                    .contentType(MediaType.APPLICATION_OCTET_STREAM);
+
+                            // A stale If-Range means the client's partial copy is of
+                            // another version: send the whole file, ignoring Range
+                            String ifRange = exchange.getRequest().getHeaders().getFirst(HttpHeaders.IF_RANGE);
+                            List<HttpRange> ranges = exchange.getRequest().getHeaders().getRange();
+                            if (ifRange != null && !ifRange.equals(etag) && !ranges.isEmpty()) {
+                                fullDownloadBytes.increment(outputPath.toFile().length());
+                                return response.contentLength(outputPath.toFile().length())
+                                        .body(storageService.readFile(outputPath));
+                            }
+
+                            countDownload(resource, ranges);
+                            return response.body(resource);
                         }))
                 .onErrorResume(e -> {
                     log.error("Download error for job {}: {}", jobId, e.getMessage());
@@ -112,6 +255,55 @@ public class JobController {
                 });
     }
 
+    /**
+     * Sends a piped job's output while the conversion is still writing it.
+     * Its length is not known yet, so there is no Range or ETag support; if
+     * the conversion fails, the response is cut off.
+     */
+    private Mono<ResponseEntity<?>> streamGrowingOutput(Job job) {
+        Flux<DataBuffer> body = storageService
+                .tailFile(job.getOutputPath(), () -> job.getStatus() != JobStatus.PROCESSING)
+                .concatWith(Mono.defer(() -> job.getStatus() == JobStatus.COMPLETED
+                        ? Mono.<DataBuffer>empty()
+                        : Mono.error(new IllegalStateException("Conversion did not complete: " + job.getErrorMessage()))))
+                .doOnNext(buffer -> streamedDownloadBytes.increment(buffer.readableByteCount()));
+
+        return jobService.getOutputFileName(job.getId())
+                .<ResponseEntity<?>>map(fileName -> ResponseEntity.ok()
+                        .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + fileName + "\"")
+                        .header("X-Job-Id", job.getId())
+                        .header(HttpHeaders.CACHE_CONTROL, "no-store")
+                        .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                        .body(body));
+    }
+
+    /**
+     * Count the bytes a file download will send: the whole file, or the
+     * requested ranges. Unsatisfiable ranges are answered with 416 and no body.
+     */
+    private void countDownload(FileSystemResource resource, List<HttpRange> ranges) {
+        try {
+            if (ranges.isEmpty()) {
+                fullDownloadBytes.increment(resource.contentLength());
+                return;
+            }
+            long length = resource.contentLength();
+            for (HttpRange range : ranges) {
+                rangeDownloadBytes.increment(range.getRangeEnd(length) - range.getRangeStart(length) + 1);
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            log.debug("Could not count download bytes: {}", e.getMessage());
+        }
+    }
+
+    private static Counter downloadCounter(MeterRegistry meterRegistry, String kind) {
+        return Counter.builder("fileconverter.download.bytes")
+                .description("Bytes of converted output sent to clients")
+                .baseUnit("bytes")
+                .tag("kind", kind)
+                .register(meterRegistry);
+    }
+
     @DeleteMapping("/{jobId}")
     public Mono<ResponseEntity<?>> deleteJob(
             @PathVariable String jobId,
@@ -128,10 +320,41 @@ public class JobController {
             return Mono.just(unauthorized(exchange));
         }
 
+        tokenService.invalidate(jobId);
+        Optional<JobLocation> location = locate(jobId, exchange);
+        if (location.isPresent() && location.get() instanceof JobLocation.Waiting) {
+            // Nobody holds it yet, so no node will clean it up
+            jobService.removeWaiting(jobId);
+        } else if (location.isPresent()) {
+            return routeElsewhere(location.get(), exchange, null);
+        }
+
         return storageService.deleteJob(jobId)
                 .then(Mono.just(ResponseEntity.noContent().build()));
     }
 
+    /**
+     * @return Where the job is if another node holds it or it is waiting for
+     *         one, unless this request was already forwarded here
+     */
+    private Optional<JobLocation> locate(String jobId, ServerWebExchange exchange) {
+        return forwarder.isForwarded(exchange) ? Optional.empty() : jobService.locate(jobId);
+    }
+
+    /**
+     * Answer a request for a job this node does not hold.
+     *
+     * @param waiting The response for a job no node has claimed yet
+     */
+    private Mono<ResponseEntity<?>> routeElsewhere(JobLocation location, ServerWebExchange exchange,
+            Function<Job, ResponseEntity<?>> waiting) {
+        return switch (location) {
+            case JobLocation.OnNode node -> forwarder.forward(node, exchange);
+            case JobLocation.Unavailable unavailable -> Mono.just(forwarder.unavailable());
+            case JobLocation.Waiting queued -> Mono.just(waiting.apply(queued.job()));
+        };
+    }
+
     private String extractToken(String authHeader) {
         if (authHeader == null || !authHeader.startsWith("Bearer ")) {
             return null;
@@ -0,0 +1,150 @@
+package com.fileconverter.controller;
+
+import com.fileconverter.config.AppConfig;
+import com.fileconverter.job.JobLocation;
+import com.fileconverter.job.JobStore;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.net.URI;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Passes a request for a job held by another node on to that node and relays
+ * its response as it arrives, so downloads and event streams work from any
+ * node. Forwarded requests are marked with the sending node, and a node
+ * never forwards a request it received that way. The mark is trusted only if
+ * it names a node that is up, so a client cannot use it to keep a request
+ * from being forwarded.
+ */
+@Component
+public class NodeForwarder {
+
+    private static final Logger log = LoggerFactory.getLogger(NodeForwarder.class);
+
+    static final String FORWARDED_NODE = "X-Forwarded-Node";
+
+    private static final List<String> REQUEST_HEADERS = List.of(
+            HttpHeaders.AUTHORIZATION, HttpHeaders.ACCEPT, HttpHeaders.RANGE, HttpHeaders.IF_RANGE,
+            HttpHeaders.IF_NONE_MATCH, HttpHeaders.IF_MODIFIED_SINCE, "Last-Event-ID");
+    private static final Set<String> HOP_BY_HOP_HEADERS = Set.of(
+            "connection", "keep-alive", "proxy-authenticate", "proxy-authorization",
+            "te", "trailer", "transfer-encoding", "upgrade");
+
+    private final WebClient webClient;
+    private final JobStore jobStore;
+    private final String nodeId;
+    private final long retryAfterSeconds;
+    private final Counter relayed;
+    private final Counter unreachable;
+
+    public NodeForwarder(WebClient.Builder webClientBuilder, JobStore jobStore, AppConfig config,
+            MeterRegistry meterRegistry) {
+        this.webClient = webClientBuilder.build();
+        this.jobStore = jobStore;
+        this.nodeId = jobStore.getNodeId();
+        this.retryAfterSeconds = Math.max(1, config.getCluster().getLeaseTtlMs() / 1000);
+        this.relayed = forwardCounter(meterRegistry, "relayed");
+        this.unreachable = forwardCounter(meterRegistry, "unreachable");
+    }
+
+    /**
+     * @return Whether the request came from another node of the cluster
+     */
+    public boolean isForwarded(ServerWebExchange exchange) {
+        String node = exchange.getRequest().getHeaders().getFirst(FORWARDED_NODE);
+        if (node == null) {
+            return false;
+        }
+        if (jobStore.isLiveNode(node)) {
+            return true;
+        }
+        log.debug("Ignoring {} naming unknown node {}", FORWARDED_NODE, node);
+        return false;
+    }
+
+    /**
+     * Send the request to the node holding the job and write its response
+     * to this exchange.
+     *
+     * @return empty once the response has been relayed, or a 503 if the node
+     *         could not be reached
+     */
+    public Mono<ResponseEntity<?>> forward(JobLocation.OnNode node, ServerWebExchange exchange) {
+        ServerHttpRequest request = exchange.getRequest();
+        URI target = UriComponentsBuilder.fromUri(node.url())
+                .path(request.getPath().pathWithinApplication().value())
+                .query(request.getURI().getRawQuery())
+                .build(true)
+                .toUri();
+        ServerHttpResponse response = exchange.getResponse();
+
+        return webClient.method(request.getMethod())
+                .uri(target)
+                .headers(headers -> {
+                    for (String name : REQUEST_HEADERS) {
+                        List<String> values = request.getHeaders().get(name);
+                        if (values != null) {
+                            headers.put(name, values);
+                        }
+                    }
+                    headers.set(FORWARDED_NODE, nodeId);
+                })
+                .exchangeToMono(upstream -> {
+                    relayed.increment();
+                    response.setStatusCode(upstream.statusCode());
+                    upstream.headers().asHttpHeaders().forEach((name, values) -> {
+                        if (!HOP_BY_HOP_HEADERS.contains(name.toLowerCase(Locale.ROOT))) {
+                            response.getHeaders().put(name, values);
+                        }
+                    });
+                    Flux<DataBuffer> body = upstream.bodyToFlux(DataBuffer.class);
+                    // Events are sent on as each arrives rather than when a buffer fills
+                    MediaType contentType = upstream.headers().contentType().orElse(null);
+                    Mono<Void> written = MediaType.TEXT_EVENT_STREAM.isCompatibleWith(contentType)
+                            ? response.writeAndFlushWith(body.map(Mono::just))
+                            : response.writeWith(body);
+                    return written.then(Mono.<ResponseEntity<?>>empty());
+                })
+                .onErrorResume(WebClientRequestException.class, e -> {
+                    unreachable.increment();
+                    log.warn("Could not reach node {} at {}: {}", node.nodeId(), node.url(), e.getMessage());
+                    return Mono.just(unavailable());
+                });
+    }
+
+    /**
+     * The node holding a job cannot be reached; it either comes back or
+     * loses the job to another node within the lease TTL.
+     */
+    public ResponseEntity<?> unavailable() {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, Long.toString(retryAfterSeconds))
+                .build();
+    }
+
+    private static Counter forwardCounter(MeterRegistry meterRegistry, String outcome) {
+        return Counter.builder("fileconverter.cluster.forwarded")
+                .description("Requests passed on to the node holding the job")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,258 @@
+package com.fileconverter.controller;
+
+import com.fileconverter.converter.ConverterRegistry;
+import com.fileconverter.dto.ErrorResponse;
+import com.fileconverter.dto.UploadResponse;
+import com.fileconverter.dto.UploadSessionResponse;
+import com.fileconverter.job.JobCostEstimator;
+import com.fileconverter.job.JobRejectedException;
+import com.fileconverter.job.JobService;
+import com.fileconverter.security.FileValidator;
+import com.fileconverter.security.JobTokenService;
+import com.fileconverter.security.RateLimiter;
+import com.fileconverter.storage.ResumableUploadService;
+import com.fileconverter.storage.UploadSession;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Resumable uploads in the style of the tus protocol: create an upload with
+ * its length, send it in one or more PATCH requests at the current offset,
+ * ask for the offset with HEAD after a dropped connection, then finalize it
+ * into a job. The upload id is the capability for these requests; the job
+ * token is issued on finalize.
+ */
+@RestController
+@RequestMapping("/api/uploads")
+public class ResumableUploadController {
+
+    private static final Logger log = LoggerFactory.getLogger(ResumableUploadController.class);
+
+    private static final String TUS_RESUMABLE = "Tus-Resumable";
+    private static final String TUS_VERSION = "1.0.0";
+    private static final String UPLOAD_OFFSET = "Upload-Offset";
+    private static final String UPLOAD_LENGTH = "Upload-Length";
+
+    private final ResumableUploadService uploads;
+    private final FileValidator fileValidator;
+    private final JobService jobService;
+    private final JobTokenService tokenService;
+    private final RateLimiter rateLimiter;
+    private final ConverterRegistry converterRegistry;
+    private final JobCostEstimator costEstimator;
+
+    public ResumableUploadController(
+            ResumableUploadService uploads,
+            FileValidator fileValidator,
+            JobService jobService,
+            JobTokenService tokenService,
+            RateLimiter rateLimiter,
+            ConverterRegistry converterRegistry,
+            JobCostEstimator costEstimator) {
+        this.uploads = uploads;
+        this.fileValidator = fileValidator;
+        this.jobService = jobService;
+        this.tokenService = tokenService;
+        this.rateLimiter = rateLimiter;
+        this.converterRegistry = converterRegistry;
+        this.costEstimator = costEstimator;
+    }
+
+    /**
+     * Start an upload. Upload-Metadata carries the base64 encoded
+     * {@code filename} and, optionally, {@code filetype}.
+     */
+    @PostMapping
+    public Mono<ResponseEntity<?>> create(
+            @RequestParam("targetFormat") String targetFormat,
+            @RequestHeader(UPLOAD_LENGTH) long length,
+            @RequestHeader(value = "Upload-Metadata", required = false) String metadataHeader,
+            ServerWebExchange exchange) {
+
+        if (!rateLimiter.tryConsume(getClientIp(exchange))) {
+            return Mono.just(error(HttpStatus.TOO_MANY_REQUESTS,
+                    "Rate limit exceeded. Please try again later.", exchange));
+        }
+
+        Map<String, String> metadata = parseMetadata(metadataHeader);
+        String fileName = metadata.getOrDefault("filename", "upload");
+        String contentType = metadata.get("filetype");
+
+        // Quick content type check
+        if (contentType != null && !fileValidator.isContentTypeAllowed(contentType)) {
+            return Mono.just(error(HttpStatus.BAD_REQUEST, "File type not allowed: " + contentType, exchange));
+        }
+
+        // The pair with the detected type is checked on finalize; this spares
+        // clients an upload to a format nothing can produce
+        if (!converterRegistry.isOutputFormatSupported(targetFormat)) {
+            return Mono.just(error(HttpStatus.BAD_REQUEST,
+                    "Conversion to " + targetFormat + " not supported", exchange));
+        }
+
+        log.info("Resumable upload request: {} ({} bytes) -> {}", fileName, length, targetFormat);
+
+        return uploads.create(fileName, targetFormat, length)
+                .<ResponseEntity<?>>map(session -> ResponseEntity
+                        .created(URI.create("/api/uploads/" + session.getId()))
+                        .header(TUS_RESUMABLE, TUS_VERSION)
+                        .header(UPLOAD_OFFSET, "0")
+                        .body(toResponse(session)))
+                .onErrorResume(FileValidator.UploadRejectedException.class,
+                        e -> Mono.just(error(e.getStatus(), e.getMessage(), exchange)));
+    }
+
+    @RequestMapping(value = "/{uploadId}", method = RequestMethod.HEAD)
+    public ResponseEntity<Void> getOffset(@PathVariable String uploadId) {
+        return uploads.get(uploadId)
+                .map(session -> ResponseEntity.ok()
+                        .header(TUS_RESUMABLE, TUS_VERSION)
+                        .header(UPLOAD_OFFSET, Long.toString(session.getOffset()))
+                        .header(UPLOAD_LENGTH, Long.toString(session.getLength()))
+                        .header(HttpHeaders.CACHE_CONTROL, "no-store")
+                        .<Void>build())
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    @PatchMapping(value = "/{uploadId}", consumes = "application/offset+octet-stream")
+    public Mono<ResponseEntity<?>> append(
+            @PathVariable String uploadId,
+            @RequestHeader(UPLOAD_OFFSET) long offset,
+            @RequestBody Flux<DataBuffer> content,
+            ServerWebExchange exchange) {
+
+        return uploads.get(uploadId)
+                .map(session -> uploads.append(session, offset, content)
+                        .<ResponseEntity<?>>map(newOffset -> ResponseEntity.noContent()
+                                .header(TUS_RESUMABLE, TUS_VERSION)
+                                .header(UPLOAD_OFFSET, Long.toString(newOffset))
+                                .build())
+                        .onErrorResume(FileValidator.UploadRejectedException.class,
+                                e -> Mono.just(error(e.getStatus(), e.getMessage(), exchange))))
+                .orElseGet(() -> Mono.just(notFound(uploadId, exchange)));
+    }
+
+    /**
+     * Turn a fully received upload into a conversion job.
+     */
+    @PostMapping("/{uploadId}/finalize")
+    public Mono<ResponseEntity<?>> finalizeUpload(
+            @PathVariable String uploadId,
+            ServerWebExchange exchange) {
+
+        UploadSession session = uploads.get(uploadId).orElse(null);
+        if (session == null) {
+            return Mono.just(notFound(uploadId, exchange));
+        }
+
+        FileValidator.ValidationResult validation = uploads.complete(session);
+        if (!validation.valid()) {
+            return uploads.discard(session)
+                    .then(Mono.just(error(HttpStatus.BAD_REQUEST, validation.errorMessage(), exchange)));
+        }
+
+        String targetFormat = session.getTargetFormat();
+        if (!converterRegistry.isConversionSupported(validation.mimeType(), targetFormat)) {
+            return uploads.discard(session)
+                    .then(Mono.just(error(HttpStatus.BAD_REQUEST,
+                            "Conversion from " + validation.mimeType() + " to " + targetFormat + " not supported",
+                            exchange)));
+        }
+
+        return jobService.createJob(
+                        session.getFileName(), validation.mimeType(),
+                        targetFormat, session.getPath(),
+                        validation.fileSize(),
+                        validation.sha256())
+                .doOnNext(job -> validation.phases().forEach(job::recordPhase))
+                .doOnNext(job -> rateLimiter.charge(getClientIp(exchange),
+                        costEstimator.estimateSeconds(job.getConverterName(), validation.fileSize())))
+                .<ResponseEntity<?>>map(job -> ResponseEntity.ok()
+                        .header("X-Job-Id", job.getId())
+                        .body(new UploadResponse(
+                                job.getId(),
+                                tokenService.generateToken(job.getId()),
+                                session.getFileName(),
+                                validation.mimeType(),
+                                validation.fileSize(),
+                                targetFormat,
+                                job.getCreatedAt(),
+                                job.getExpiresAt())))
+                // Not admitted: keep the upload so finalizing can be retried
+                .doOnError(JobRejectedException.class, e -> uploads.reopen(session))
+                .onErrorResume(e -> !(e instanceof JobRejectedException),
+                        e -> uploads.discard(session).then(Mono.error(e)));
+    }
+
+    @DeleteMapping("/{uploadId}")
+    public Mono<ResponseEntity<Void>> cancel(@PathVariable String uploadId) {
+        return uploads.get(uploadId)
+                .map(session -> uploads.discard(session)
+                        .then(Mono.just(ResponseEntity.noContent()
+                                .header(TUS_RESUMABLE, TUS_VERSION)
+                                .<Void>build())))
+                .orElseGet(() -> Mono.just(ResponseEntity.notFound().build()));
+    }
+
+    private static UploadSessionResponse toResponse(UploadSession session) {
+        return new UploadSessionResponse(
+                session.getId(),
+                session.getFileName(),
+                session.getTargetFormat(),
+                session.getOffset(),
+                session.getLength());
+    }
+
+    // Comma-separated "key base64value" pairs
+    private static Map<String, String> parseMetadata(String header) {
+        Map<String, String> metadata = new HashMap<>();
+        if (header == null || header.isBlank()) {
+            return metadata;
+        }
+        for (String pair : header.split(",")) {
+            String[] parts = pair.trim().split(" ", 2);
+            try {
+                String value = parts.length > 1
+                        ? new String(Base64.getDecoder().decode(parts[1].trim()), StandardCharsets.UTF_8)
+                        : "";
+                metadata.put(parts[0], value);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Invalid Upload-Metadata value for " + parts[0]);
+            }
+        }
+        return metadata;
+    }
+
+    private ResponseEntity<?> notFound(String uploadId, ServerWebExchange exchange) {
+        return error(HttpStatus.NOT_FOUND, "Upload not found: " + uploadId, exchange);
+    }
+
+    private static ResponseEntity<?> error(HttpStatus status, String message, ServerWebExchange exchange) {
+        return ResponseEntity.status(status)
+                .body(ErrorResponse.of(status.value(), status.getReasonPhrase(), message,
+                        exchange.getRequest().getPath().value()));
+    }
+
+    private String getClientIp(ServerWebExchange exchange) {
+        String forwarded = exchange.getRequest().getHeaders().getFirst("X-Forwarded-For");
+        if (forwarded != null && !forwarded.isEmpty()) {
+            return forwarded.split(",")[0].trim();
+        }
+        var remoteAddr = exchange.getRequest().getRemoteAddress();
+        return remoteAddr != null ? remoteAddr.getAddress().getHostAddress() : "unknown";
+    }
+}
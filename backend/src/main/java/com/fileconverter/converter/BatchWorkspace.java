@@ -0,0 +1,95 @@
+package com.fileconverter.converter;
+
+import com.fileconverter.converter.Converter.BatchItem;
+import com.fileconverter.diagnostics.JobPhase;
+import com.fileconverter.diagnostics.PhaseContext;
+import com.fileconverter.diagnostics.PhaseSpan;
+import com.fileconverter.storage.TempStorageService;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Scratch directory for one batch invocation. Inputs are linked in under
+ * their index ({@code in/3.png}) so files from different jobs cannot collide
+ * by name, and outputs are expected back under the same index
+ * ({@code out/3.webp}).
+ */
+public class BatchWorkspace implements AutoCloseable {
+
+    private final Path root;
+    private final Path outputDir;
+    private final List<BatchItem> items;
+    private final List<Path> inputs;
+
+    public BatchWorkspace(String prefix, List<BatchItem> items) throws IOException {
+        this.root = Files.createTempDirectory(prefix);
+        this.outputDir = Files.createDirectory(root.resolve("out"));
+        this.items = items;
+        this.inputs = new ArrayList<>(items.size());
+        Path inputDir = Files.createDirectory(root.resolve("in"));
+        for (int i = 0; i < items.size(); i++) {
+            Path input = items.get(i).input();
+            Path staged = inputDir.resolve(i + extension(input));
+            TempStorageService.linkOrCopy(input, staged);
+            inputs.add(staged);
+        }
+    }
+
+    public Path getRoot() {
+        return root;
+    }
+
+    public Path getOutputDir() {
+        return outputDir;
+    }
+
+    public List<Path> getInputs() {
+        return inputs;
+    }
+
+    /**
+     * Move each produced output to its item's destination.
+     *
+     * @return Items whose output is missing or empty
+     */
+    public List<BatchItem> collect(String targetFormat) throws IOException {
+        PhaseSpan collect = PhaseSpan.start(JobPhase.OUTPUT_COLLECTION);
+        List<BatchItem> missing = new ArrayList<>();
+        for (int i = 0; i < items.size(); i++) {
+            Path produced = outputDir.resolve(i + "." + targetFormat);
+            if (Files.isRegularFile(produced) && Files.size(produced) > 0) {
+                Files.move(produced, items.get(i).output(), StandardCopyOption.REPLACE_EXISTING);
+            } else {
+                missing.add(items.get(i));
+            }
+        }
+        PhaseContext.record(collect);
+        return missing;
+    }
+
+    @Override
+    public void close() {
+        try (Stream<Path> paths = Files.walk(root)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(p -> {
+                try {
+                    Files.deleteIfExists(p);
+                } catch (IOException ignored) {
+                }
+            });
+        } catch (IOException ignored) {
+        }
+    }
+
+    private static String extension(Path file) {
+        String name = file.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return dot > 0 ? name.substring(dot) : "";
+    }
+}
@@ -0,0 +1,127 @@
+package com.fileconverter.converter;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * A conversion no single tool can do, run as a chain of converters inside
+ * one job. Intermediate files go to a scratch directory next to the job's
+ * output and are deleted afterwards. Planned by {@link ConverterRegistry}.
+ */
+public class ChainedConverter implements Converter {
+
+    private static final Logger log = LoggerFactory.getLogger(ChainedConverter.class);
+
+    private final List<Step> steps;
+    private final String name;
+    private final double cost;
+
+    ChainedConverter(List<Step> steps, String name, double cost) {
+        this.steps = List.copyOf(steps);
+        this.name = name;
+        this.cost = cost;
+    }
+
+    public List<Step> getSteps() {
+        return steps;
+    }
+
+    /**
+     * @return Estimated cost the planner chose this chain by
+     */
+    public double getCost() {
+        return cost;
+    }
+
+    @Override
+    public void convert(Path input, Path output, String targetFormat,
+            ProgressListener progressCallback) throws Exception {
+
+        Path scratch = Files.createTempDirectory(output.getParent(), "steps-");
+        try {
+            Path current = input;
+            for (int i = 0; i < steps.size(); i++) {
+                Step step = steps.get(i);
+                boolean last = i == steps.size() - 1;
+                Path next = last ? output : scratch.resolve("step" + i + "." + step.targetFormat());
+                log.debug("Step {}/{}: {} {} -> {}", i + 1, steps.size(),
+                        step.converter().getName(), step.inputMimeType(), step.targetFormat());
+
+                double from = (double) i / steps.size();
+                double span = 1.0 / steps.size();
+                step.converter().convert(current, next, step.targetFormat(),
+                        progress -> progressCallback.accept(from + progress * span));
+                current = next;
+            }
+        } finally {
+            delete(scratch);
+        }
+    }
+
+    /**
+     * @return The tool of the most expensive step, whose pool runs the chain
+     */
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Every step's tool, format and options, so results of different chains
+     * are cached apart.
+     */
+    @Override
+    public List<String> getOutputOptions(String targetFormat) {
+        List<String> options = new ArrayList<>();
+        for (Step step : steps) {
+            options.add(step.converter().getName() + ":" + step.targetFormat());
+            options.addAll(step.converter().getOutputOptions(step.targetFormat()));
+        }
+        return options;
+    }
+
+    @Override
+    public Set<String> getSupportedInputTypes() {
+        return Set.of(steps.get(0).inputMimeType());
+    }
+
+    @Override
+    public Set<String> getSupportedOutputFormats() {
+        return Set.of(steps.get(steps.size() - 1).targetFormat());
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder chain = new StringBuilder(steps.get(0).inputMimeType());
+        steps.forEach(step -> chain.append(" -[").append(step.converter().getName()).append("]-> ")
+                .append(step.targetFormat()));
+        return chain.toString();
+    }
+
+    private static void delete(Path dir) {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(p -> {
+                try {
+                    Files.deleteIfExists(p);
+                } catch (IOException ignored) {
+                }
+            });
+        } catch (IOException ignored) {
+        }
+    }
+
+    /**
+     * One tool invocation in a chain.
+     */
+    public record Step(Converter converter, String inputMimeType, String targetFormat) {
+    }
+}
@@ -1,8 +1,8 @@
 package com.fileconverter.converter;
 
 import java.nio.file.Path;
+import java.util.List;
 import java.util.Set;
-import java.util.function.Consumer;
 
 public interface Converter {
 
@@ -12,11 +12,61 @@ public interface Converter {
      * @param input            Source file path
      * @param output           Destination file path
      * @param targetFormat     Target format extension
-     * @param progressCallback Callback for progress updates (0.0 to 1.0)
+     * @param progressCallback Callback for progress updates (0.0 to 1.0) and, where
+     *                         known, speed and time remaining
      * @throws Exception if conversion fails
      */
     void convert(Path input, Path output, String targetFormat,
-            Consumer<Double> progressCallback) throws Exception;
+            ProgressListener progressCallback) throws Exception;
+
+    /**
+     * @return Short name of the underlying tool, used to select its worker pool
+     */
+    String getName();
+
+    /**
+     * @return Tool arguments that shape the output for the given format; part of
+     *         the key under which converted results are cached
+     */
+    default List<String> getOutputOptions(String targetFormat) {
+        return List.of();
+    }
+
+    /**
+     * @return true if jobs with this input type and target format may be
+     *         grouped into one {@link #convertBatch} invocation
+     */
+    default boolean supportsBatch(String inputMimeType, String targetFormat) {
+        return false;
+    }
+
+    /**
+     * Convert several files to the same target format in one tool invocation.
+     *
+     * @param items        Inputs and where each output belongs
+     * @param targetFormat Target format extension
+     * @return Items that produced no output; callers convert them again one by one
+     * @throws Exception if the invocation could not run at all
+     */
+    default List<BatchItem> convertBatch(List<BatchItem> items, String targetFormat) throws Exception {
+        throw new UnsupportedOperationException(getName() + " does not convert batches");
+    }
+
+    /**
+     * @return true if this conversion can read its input from stdin and write
+     *         its output to stdout, so it may start before the upload has ended
+     */
+    default boolean supportsPipe(String inputMimeType, String targetFormat) {
+        return false;
+    }
+
+    /**
+     * Command for a piped conversion, which reads the input from stdin and
+     * writes the output to stdout as it is produced.
+     */
+    default List<String> getPipeCommand(String inputMimeType, String targetFormat) {
+        throw new UnsupportedOperationException(getName() + " does not convert through pipes");
+    }
 
     /**
      * @return Set of MIME types this converter can handle as input
@@ -35,4 +85,7 @@ public interface Converter {
         return getSupportedInputTypes().contains(inputMimeType) &&
                 getSupportedOutputFormats().contains(outputFormat);
     }
+
+    record BatchItem(Path input, Path output) {
+    }
 }
@@ -1,33 +1,120 @@
 package com.fileconverter.converter;
 
+import com.fileconverter.config.AppConfig;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
 
+/**
+ * Finds the converter for an input type and target format. Lookups go to an
+ * index built from the converters up front. Pairs no single converter
+ * handles are planned as the cheapest chain of up to {@value #MAX_STEPS}
+ * converters, weighted by the estimated cost of each tool, and served by a
+ * {@link ChainedConverter}.
+ */
 @Component
 public class ConverterRegistry {
 
     private static final Logger log = LoggerFactory.getLogger(ConverterRegistry.class);
 
+    private static final int MAX_STEPS = 3;
+
+    // Type of the file each output format produces, so it can feed another step
+    private static final Map<String, String> FORMAT_TYPES = Map.ofEntries(
+            Map.entry("jpg", "image/jpeg"),
+            Map.entry("jpeg", "image/jpeg"),
+            Map.entry("png", "image/png"),
+            Map.entry("gif", "image/gif"),
+            Map.entry("webp", "image/webp"),
+            Map.entry("bmp", "image/bmp"),
+            Map.entry("tiff", "image/tiff"),
+            Map.entry("pdf", "application/pdf"),
+            Map.entry("doc", "application/msword"),
+            Map.entry("docx", "application/vnd.openxmlformats-officedocument.wordprocessingml.document"),
+            Map.entry("xls", "application/vnd.ms-excel"),
+            Map.entry("xlsx", "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet"),
+            Map.entry("ppt", "application/vnd.ms-powerpoint"),
+            Map.entry("pptx", "application/vnd.openxmlformats-officedocument.presentationml.presentation"),
+            Map.entry("odt", "application/vnd.oasis.opendocument.text"),
+            Map.entry("ods", "application/vnd.oasis.opendocument.spreadsheet"),
+            Map.entry("odp", "application/vnd.oasis.opendocument.presentation"),
+            Map.entry("txt", "text/plain"),
+            Map.entry("html", "text/html"),
+            Map.entry("csv", "text/csv"),
+            Map.entry("md", "text/markdown"),
+            Map.entry("mp4", "video/mp4"),
+            Map.entry("webm", "video/webm"),
+            Map.entry("avi", "video/x-msvideo"),
+            Map.entry("mkv", "video/x-matroska"),
+            Map.entry("mov", "video/quicktime"),
+            Map.entry("mp3", "audio/mpeg"),
+            Map.entry("wav", "audio/wav"),
+            Map.entry("ogg", "audio/ogg"),
+            Map.entry("flac", "audio/flac"),
+            Map.entry("aac", "audio/aac"),
+            Map.entry("m4a", "audio/mp4"));
+
     private final List<Converter> converters;
+    private final AppConfig.Worker workerConfig;
+    // Input type -> target format -> converter, direct or chained
+    private final Map<String, Map<String, Converter>> index;
+    // Input type -> sorted target formats
+    private final Map<String, List<String>> formatMatrix;
+    private final String formatsVersion;
 
-    public ConverterRegistry(List<Converter> converters) {
+    public ConverterRegistry(List<Converter> converters, AppConfig config) {
         this.converters = converters;
+        this.workerConfig = config.getWorker();
         log.info("Registered {} converters", converters.size());
         converters.forEach(c -> log.info("  - {}: {} -> {}",
                 c.getClass().getSimpleName(),
                 c.getSupportedInputTypes(),
                 c.getSupportedOutputFormats()));
+
+        Set<String> inputTypes = new TreeSet<>();
+        converters.forEach(c -> inputTypes.addAll(c.getSupportedInputTypes()));
+
+        Map<String, Map<String, Converter>> routes = new HashMap<>();
+        Map<String, List<String>> matrix = new TreeMap<>();
+        int chained = 0;
+        for (String inputType : inputTypes) {
+            Map<String, Converter> byFormat = plan(inputType);
+            routes.put(inputType, Map.copyOf(byFormat));
+            matrix.put(inputType, List.copyOf(new TreeSet<>(byFormat.keySet())));
+            for (Converter converter : byFormat.values()) {
+                if (converter instanceof ChainedConverter chain) {
+                    log.debug("  chain: {}", chain);
+                    chained++;
+                }
+            }
+        }
+        this.index = Map.copyOf(routes);
+        this.formatMatrix = Collections.unmodifiableMap(matrix);
+        this.formatsVersion = Integer.toHexString(matrix.hashCode());
+        log.info("Indexed conversions for {} input types, {} of them through chains", inputTypes.size(), chained);
+    }
+
+    /**
+     * @return The tools themselves; chains are not included
+     */
+    public List<Converter> getConverters() {
+        return converters;
     }
 
     public Converter getConverter(String inputMimeType, String outputFormat) {
-        return converters.stream()
-                .filter(c -> c.supports(inputMimeType, outputFormat))
-                .findFirst()
-                .orElse(null);
+        Map<String, Converter> byFormat = index.get(inputMimeType);
+        return byFormat != null && outputFormat != null ? byFormat.get(outputFormat) : null;
     }
 
     public Optional<Converter> findConverter(String inputMimeType, String outputFormat) {
@@ -35,15 +122,123 @@ public class ConverterRegistry {
     }
 
     public List<String> getSupportedOutputFormats(String inputMimeType) {
-        return converters.stream()
-                .filter(c -> c.getSupportedInputTypes().contains(inputMimeType))
-                .flatMap(c -> c.getSupportedOutputFormats().stream())
-                .distinct()
-                .sorted()
-                .toList();
+        return formatMatrix.getOrDefault(inputMimeType, List.of());
+    }
+
+    /**
+     * @return Every input type with the formats it can be converted to
+     */
+    public Map<String, List<String>> getFormatMatrix() {
+        return formatMatrix;
+    }
+
+    /**
+     * @return Identifies the current format matrix, e.g. for an ETag
+     */
+    public String getFormatsVersion() {
+        return formatsVersion;
     }
 
     public boolean isConversionSupported(String inputMimeType, String outputFormat) {
         return getConverter(inputMimeType, outputFormat) != null;
     }
+
+    /**
+     * @return Whether some input type can be converted to the format
+     */
+    public boolean isOutputFormatSupported(String outputFormat) {
+        return formatMatrix.values().stream().anyMatch(formats -> formats.contains(outputFormat));
+    }
+
+    /**
+     * Routes from one input type. The first converter that handles a format
+     * directly keeps it, as before chains existed; other formats get the
+     * cheapest chain found.
+     */
+    private Map<String, Converter> plan(String inputType) {
+        // Cheapest known way to produce each intermediate type
+        Map<String, Route> reached = new HashMap<>();
+        reached.put(inputType, new Route(List.of(), 0));
+        List<String> frontier = List.of(inputType);
+        for (int depth = 1; depth < MAX_STEPS && !frontier.isEmpty(); depth++) {
+            List<String> next = new ArrayList<>();
+            for (String type : frontier) {
+                Route route = reached.get(type);
+                for (Converter converter : converters) {
+                    if (!converter.getSupportedInputTypes().contains(type)) {
+                        continue;
+                    }
+                    for (String format : converter.getSupportedOutputFormats()) {
+                        String produced = FORMAT_TYPES.get(format);
+                        if (produced == null) {
+                            continue;
+                        }
+                        Route extended = route.then(new ChainedConverter.Step(converter, type, format), cost(converter));
+                        Route known = reached.get(produced);
+                        if (known == null || extended.cost() < known.cost()) {
+                            reached.put(produced, extended);
+                            next.add(produced);
+                        }
+                    }
+                }
+            }
+            frontier = next;
+        }
+
+        Map<String, Route> best = new HashMap<>();
+        reached.forEach((type, route) -> {
+            for (Converter converter : converters) {
+                if (!converter.getSupportedInputTypes().contains(type)) {
+                    continue;
+                }
+                for (String format : converter.getSupportedOutputFormats()) {
+                    Route candidate = route.then(new ChainedConverter.Step(converter, type, format), cost(converter));
+                    Route known = best.get(format);
+                    if (known == null || candidate.cost() < known.cost()
+                            || candidate.cost() == known.cost() && candidate.steps().size() < known.steps().size()) {
+                        best.put(format, candidate);
+                    }
+                }
+            }
+        });
+
+        Map<String, Converter> byFormat = new LinkedHashMap<>();
+        for (Converter converter : converters) {
+            if (converter.getSupportedInputTypes().contains(inputType)) {
+                converter.getSupportedOutputFormats().forEach(format -> byFormat.putIfAbsent(format, converter));
+            }
+        }
+        best.forEach((format, route) -> {
+            if (!byFormat.containsKey(format)) {
+                byFormat.put(format, chain(route));
+            }
+        });
+        return byFormat;
+    }
+
+    private ChainedConverter chain(Route route) {
+        // The chain holds one worker of its most expensive tool for its whole run
+        Converter heaviest = route.steps().get(0).converter();
+        for (ChainedConverter.Step step : route.steps()) {
+            if (cost(step.converter()) > cost(heaviest)) {
+                heaviest = step.converter();
+            }
+        }
+        return new ChainedConverter(route.steps(), heaviest.getName(), route.cost());
+    }
+
+    // Estimated seconds for a 1 MB input; intermediate sizes are not known up front
+    private double cost(Converter converter) {
+        AppConfig.Worker.Pool pool = workerConfig.getPool(converter.getName());
+        return pool.getBaseCostSeconds() + pool.getCostSecondsPerMb();
+    }
+
+    private record Route(List<ChainedConverter.Step> steps, double cost) {
+
+        Route then(ChainedConverter.Step step, double stepCost) {
+            List<ChainedConverter.Step> extended = new ArrayList<>(steps);
+            extended.add(step);
+            return new Route(List.copyOf(extended), cost + stepCost);
+        }
+    }
 }
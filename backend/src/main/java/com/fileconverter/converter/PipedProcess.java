@@ -0,0 +1,84 @@
+package com.fileconverter.converter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * A running conversion whose stdin is fed by the caller and whose stdout is
+ * written straight to the output file. Started by
+ * {@link ProcessExecutor#startPiped}.
+ */
+public class PipedProcess {
+
+    private final Process process;
+    private final WritableByteChannel stdin;
+    private final int timeoutSeconds;
+    private volatile boolean inputClosed;
+
+    PipedProcess(Process process, int timeoutSeconds) {
+        this.process = process;
+        this.stdin = Channels.newChannel(process.getOutputStream());
+        this.timeoutSeconds = timeoutSeconds;
+    }
+
+    /**
+     * Write input bytes, blocking while the process is not reading.
+     *
+     * @return false if the process no longer accepts input, e.g. because it exited
+     */
+    public boolean write(ByteBuffer bytes) {
+        if (inputClosed) {
+            return false;
+        }
+        try {
+            while (bytes.hasRemaining()) {
+                stdin.write(bytes);
+            }
+            return true;
+        } catch (IOException e) {
+            // Broken pipe; the exit code tells what happened
+            inputClosed = true;
+            return false;
+        }
+    }
+
+    /**
+     * Signal the end of the input.
+     *
+     * @return Exit code once the process ends; fails if it does not end
+     *         within the process timeout, in which case it is killed
+     */
+    public CompletableFuture<Integer> finish() {
+        closeInput();
+        return process.onExit()
+                .orTimeout(timeoutSeconds, TimeUnit.SECONDS)
+                .handle((exited, error) -> {
+                    if (error instanceof TimeoutException) {
+                        process.destroyForcibly();
+                        throw new IllegalStateException("Process timed out after " + timeoutSeconds + " seconds");
+                    } else if (error != null) {
+                        throw new CompletionException(error);
+                    }
+                    return exited.exitValue();
+                });
+    }
+
+    public void destroy() {
+        closeInput();
+        process.destroyForcibly();
+    }
+
+    private void closeInput() {
+        inputClosed = true;
+        try {
+            stdin.close();
+        } catch (IOException ignored) {
+        }
+    }
+}
@@ -1,15 +1,25 @@
 package com.fileconverter.converter;
 
 import com.fileconverter.config.AppConfig;
+import com.fileconverter.diagnostics.JobPhase;
+import com.fileconverter.diagnostics.PhaseContext;
+import com.fileconverter.diagnostics.PhaseSpan;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 
 import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.nio.file.Path;
 import java.util.List;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.function.Consumer;
 
 @Component
@@ -17,32 +27,28 @@ public class ProcessExecutor {
 
     private static final Logger log = LoggerFactory.getLogger(ProcessExecutor.class);
 
+    private static final int OUTPUT_BUFFER_SIZE = 8192;
+
     private final int timeoutSeconds;
+    private final boolean virtualThreads;
+    private final String toolPath;
+    private final ThreadFactory outputThreadFactory;
+    private final MeterRegistry meterRegistry;
 
-    public ProcessExecutor(AppConfig config) {
+    public ProcessExecutor(AppConfig config, MeterRegistry meterRegistry) {
         this.timeoutSeconds = config.getWorker().getProcessTimeoutSeconds();
+        this.virtualThreads = config.getWorker().isVirtualThreads();
+        this.toolPath = config.getWorker().getToolPath();
+        this.outputThreadFactory = virtualThreads
+                ? Thread.ofVirtual().name("process-output-", 0).factory()
+                : Thread.ofPlatform().name("process-output-", 0).factory();
+        this.meterRegistry = meterRegistry;
     }
 
     public int execute(List<String> command, Path workDir,
             Consumer<String> outputHandler) throws Exception {
-
-        log.debug("Executing: {}", String.join(" ", command));
-
-        ProcessBuilder pb = new ProcessBuilder(command);
-        pb.directory(workDir.toFile());
-        pb.redirectErrorStream(true);
-
-        // Security: restrict environment
-        pb.environment().clear();
-        pb.environment().put("PATH", "/usr/bin:/bin:/usr/local/bin");
-        pb.environment().put("HOME", "/tmp");
-        pb.environment().put("LANG", "en_US.UTF-8");
-
-        Process process = pb.start();
-
-        Thread outputThread = new Thread(() -> {
-            try (BufferedReader reader = new BufferedReader(
-                    new InputStreamReader(process.getInputStream()))) {
+        return run(command, workDir, output -> {
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(output))) {
                 String line;
                 while ((line = reader.readLine()) != null) {
                     if (outputHandler != null) {
@@ -50,16 +56,76 @@ public class ProcessExecutor {
                     }
                     log.trace("Process output: {}", line);
                 }
+            }
+        });
+    }
+
+    /**
+     * Like {@link #execute}, but hands the raw output bytes to the handler as
+     * they arrive, reusing one buffer, for callers that parse output without
+     * building a String per line.
+     */
+    public int executeRaw(List<String> command, Path workDir,
+            OutputChunkHandler outputHandler) throws Exception {
+        return run(command, workDir, output -> {
+            byte[] buffer = new byte[OUTPUT_BUFFER_SIZE];
+            int read;
+            while ((read = output.read(buffer)) != -1) {
+                outputHandler.accept(buffer, 0, read);
+            }
+        });
+    }
+
+    /**
+     * Start a command that reads its input from stdin, which the caller feeds,
+     * and writes its result to stdout. Stdout goes straight to the output file
+     * so the result can be read while it is produced; stderr is logged.
+     */
+    public PipedProcess startPiped(List<String> command, Path workDir, Path output) throws IOException {
+        log.debug("Executing piped: {}", String.join(" ", command));
+
+        ProcessBuilder pb = processBuilder(command, workDir);
+        pb.redirectOutput(output.toFile());
+        Process process = start(pb, command);
+        process.onExit().thenAccept(exited -> recordExit(command, String.valueOf(exited.exitValue())));
+
+        outputThreadFactory.newThread(() -> {
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getErrorStream()))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    log.trace("Process output: {}", line);
+                }
+            } catch (Exception e) {
+                log.warn("Error reading process output", e);
+            }
+        }).start();
+
+        return new PipedProcess(process, timeoutSeconds);
+    }
+
+    private int run(List<String> command, Path workDir, OutputReader outputReader) throws Exception {
+
+        log.debug("Executing: {}", String.join(" ", command));
+
+        ProcessBuilder pb = processBuilder(command, workDir);
+        pb.redirectErrorStream(true);
+
+        Process process = start(pb, command);
+
+        Thread outputThread = outputThreadFactory.newThread(() -> {
+            try (InputStream output = process.getInputStream()) {
+                outputReader.read(output);
             } catch (Exception e) {
                 log.warn("Error reading process output", e);
             }
         });
         outputThread.start();
 
-        boolean completed = process.waitFor(timeoutSeconds, TimeUnit.SECONDS);
+        boolean completed = waitFor(process);
 
         if (!completed) {
             process.destroyForcibly();
+            recordExit(command, "timeout");
             throw new RuntimeException("Process timed out after " + timeoutSeconds + " seconds");
         }
 
@@ -67,13 +133,69 @@ public class ProcessExecutor {
 
         int exitCode = process.exitValue();
         log.debug("Process exited with code: {}", exitCode);
+        recordExit(command, String.valueOf(exitCode));
 
         return exitCode;
     }
 
+    private ProcessBuilder processBuilder(List<String> command, Path workDir) {
+        ProcessBuilder pb = new ProcessBuilder(command);
+        pb.directory(workDir.toFile());
+
+        // Security: restrict environment
+        pb.environment().clear();
+        pb.environment().put("PATH", toolPath);
+        pb.environment().put("HOME", "/tmp");
+        pb.environment().put("LANG", "en_US.UTF-8");
+        return pb;
+    }
+
+    /**
+     * Start the process and record how long the fork and exec took, which
+     * grows with the heap size of this JVM on some platforms.
+     */
+    private Process start(ProcessBuilder pb, List<String> command) throws IOException {
+        PhaseSpan spawn = PhaseSpan.start(JobPhase.PROCESS_SPAWN);
+        Process process = pb.start();
+        PhaseContext.record(spawn);
+        Timer.builder("fileconverter.process.spawn")
+                .description("Time to start a converter process")
+                .tag("tool", toolName(command))
+                .register(meterRegistry)
+                .record(spawn.getDuration());
+        return process;
+    }
+
+    private void recordExit(List<String> command, String code) {
+        Counter.builder("fileconverter.process.exits")
+                .description("Converter processes that exited, by exit code")
+                .tags("tool", toolName(command), "code", code)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    private static String toolName(List<String> command) {
+        return Path.of(command.get(0)).getFileName().toString();
+    }
+
+    private boolean waitFor(Process process) throws Exception {
+        if (!virtualThreads) {
+            return process.waitFor(timeoutSeconds, TimeUnit.SECONDS);
+        }
+        // Process.waitFor blocks in a monitor, which would pin the carrier thread;
+        // onExit() completes from the JDK's reaper thread and parks cleanly instead.
+        try {
+            process.onExit().get(timeoutSeconds, TimeUnit.SECONDS);
+            return true;
+        } catch (TimeoutException e) {
+            return false;
+        }
+    }
+
     public boolean isToolAvailable(String toolName) {
         try {
             ProcessBuilder pb = new ProcessBuilder("which", toolName);
+            pb.environment().put("PATH", toolPath);
             Process process = pb.start();
             boolean completed = process.waitFor(5, TimeUnit.SECONDS);
             return completed && process.exitValue() == 0;
@@ -81,4 +203,14 @@ public class ProcessExecutor {
             return false;
         }
     }
+
+    @FunctionalInterface
+    public interface OutputChunkHandler {
+        void accept(byte[] buffer, int offset, int length);
+    }
+
+    @FunctionalInterface
+    private interface OutputReader {
+        void read(InputStream output) throws Exception;
+    }
 }
@@ -0,0 +1,18 @@
+package com.fileconverter.converter;
+
+import java.util.function.Consumer;
+
+/**
+ * Receives conversion progress as a fraction from 0.0 to 1.0. Converters
+ * that know their throughput can also report speed and time remaining.
+ */
+@FunctionalInterface
+public interface ProgressListener extends Consumer<Double> {
+
+    /**
+     * @param speed      Media seconds processed per wall-clock second, or -1 if unknown
+     * @param etaSeconds Estimated seconds until the conversion finishes, or -1 if unknown
+     */
+    default void rate(double speed, long etaSeconds) {
+    }
+}
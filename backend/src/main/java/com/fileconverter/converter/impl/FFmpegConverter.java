@@ -2,19 +2,22 @@ package com.fileconverter.converter.impl;
 
 import com.fileconverter.converter.Converter;
 import com.fileconverter.converter.ProcessExecutor;
+import com.fileconverter.converter.ProgressListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
-import java.util.function.Consumer;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 @Component
 public class FFmpegConverter implements Converter {
 
+    private static final Logger log = LoggerFactory.getLogger(FFmpegConverter.class);
+
     private static final Set<String> INPUT_TYPES = Set.of(
             "video/mp4", "video/webm", "video/avi", "video/quicktime",
             "video/x-msvideo", "video/x-matroska",
@@ -25,7 +28,15 @@ public class FFmpegConverter implements Converter {
             "mp4", "webm", "avi", "mkv", "mov",
             "mp3", "wav", "ogg", "flac", "aac", "m4a");
 
-    private static final Pattern PROGRESS_PATTERN = Pattern.compile("time=([0-9:.]+)");
+    // Containers FFmpeg can demux without seeking, e.g. not MP4 with a trailing index
+    private static final Set<String> PIPE_INPUT_TYPES = Set.of(
+            "audio/mpeg", "audio/wav", "audio/ogg", "audio/flac", "audio/aac",
+            "video/webm", "video/x-matroska");
+
+    // Muxers that can write to a pipe, by target format
+    private static final Map<String, String> PIPE_MUXERS = Map.of(
+            "mp3", "mp3", "wav", "wav", "ogg", "ogg", "flac", "flac", "aac", "adts",
+            "webm", "webm", "mkv", "matroska");
 
     private final ProcessExecutor executor;
 
@@ -35,60 +46,43 @@ public class FFmpegConverter implements Converter {
 
     @Override
     public void convert(Path input, Path output, String targetFormat,
-            Consumer<Double> progressCallback) throws Exception {
+            ProgressListener progressCallback) throws Exception {
+
+        long durationUs = probeDurationUs(input);
 
         List<String> command = new ArrayList<>();
         command.add("ffmpeg");
+        command.add("-hide_banner");
+        command.add("-nostats");
+        command.add("-loglevel");
+        command.add("error");
         command.add("-y"); // Overwrite output
         command.add("-i");
         command.add(input.toString());
 
-        // Format-specific settings
-        switch (targetFormat.toLowerCase()) {
-            case "mp4" -> {
-                command.add("-c:v");
-                command.add("libx264");
-                command.add("-preset");
-                command.add("fast");
-                command.add("-crf");
-                command.add("23");
-                command.add("-c:a");
-                command.add("aac");
-            }
-            case "webm" -> {
-                command.add("-c:v");
-                command.add("libvpx-vp9");
-                command.add("-crf");
-                command.add("30");
-                command.add("-c:a");
-                command.add("libopus");
-            }
-            case "mp3" -> {
-                command.add("-vn");
-                command.add("-c:a");
-                command.add("libmp3lame");
-                command.add("-q:a");
-                command.add("2");
-            }
-            case "wav" -> {
-                command.add("-vn");
-                command.add("-c:a");
-                command.add("pcm_s16le");
-            }
-        }
+        command.addAll(getOutputOptions(targetFormat));
 
         command.add("-progress");
         command.add("pipe:1");
         command.add(output.toString());
 
-        int exitCode = executor.execute(command, input.getParent(), line -> {
-            Matcher matcher = PROGRESS_PATTERN.matcher(line);
-            if (matcher.find()) {
-                // Parse time and estimate progress (simplified)
-                progressCallback.accept(0.5);
+        long started = System.nanoTime();
+        FFmpegProgressParser parser = new FFmpegProgressParser((outTimeUs, speed, frame, end) -> {
+            if (end || durationUs <= 0 || outTimeUs < 0) {
+                return;
             }
+            long positionUs = Math.min(outTimeUs, durationUs);
+            progressCallback.accept((double) positionUs / durationUs);
+
+            // Prefer FFmpeg's own speed; early on it may be N/A
+            double elapsedUs = (System.nanoTime() - started) / 1000.0;
+            double rate = speed > 0 ? speed : elapsedUs > 0 ? positionUs / elapsedUs : -1;
+            long etaSeconds = rate > 0 ? Math.round((durationUs - positionUs) / 1_000_000.0 / rate) : -1;
+            progressCallback.rate(speed, etaSeconds);
         });
 
+        int exitCode = executor.executeRaw(command, input.getParent(), parser::feed);
+
         progressCallback.accept(1.0);
 
         if (exitCode != 0) {
@@ -96,6 +90,64 @@ public class FFmpegConverter implements Converter {
         }
     }
 
+    /**
+     * @return Input duration in microseconds, or -1 if ffprobe cannot tell
+     */
+    private long probeDurationUs(Path input) {
+        List<String> command = List.of(
+                "ffprobe", "-v", "error",
+                "-show_entries", "format=duration",
+                "-of", "default=noprint_wrappers=1:nokey=1",
+                input.toString());
+        long[] durationUs = { -1 };
+        try {
+            int exitCode = executor.execute(command, input.getParent(), line -> {
+                try {
+                    durationUs[0] = Math.round(Double.parseDouble(line.trim()) * 1_000_000);
+                } catch (NumberFormatException ignored) {
+                }
+            });
+            return exitCode == 0 ? durationUs[0] : -1;
+        } catch (Exception e) {
+            log.debug("ffprobe failed for {}: {}", input.getFileName(), e.getMessage());
+            return -1;
+        }
+    }
+
+    @Override
+    public boolean supportsPipe(String inputMimeType, String targetFormat) {
+        return PIPE_INPUT_TYPES.contains(inputMimeType)
+                && PIPE_MUXERS.containsKey(targetFormat.toLowerCase());
+    }
+
+    @Override
+    public List<String> getPipeCommand(String inputMimeType, String targetFormat) {
+        List<String> command = new ArrayList<>(List.of(
+                "ffmpeg", "-hide_banner", "-nostats", "-loglevel", "error",
+                "-i", "pipe:0"));
+        command.addAll(getOutputOptions(targetFormat));
+        command.add("-f");
+        command.add(PIPE_MUXERS.get(targetFormat.toLowerCase()));
+        command.add("pipe:1");
+        return command;
+    }
+
+    @Override
+    public String getName() {
+        return "ffmpeg";
+    }
+
+    @Override
+    public List<String> getOutputOptions(String targetFormat) {
+        return switch (targetFormat.toLowerCase()) {
+            case "mp4" -> List.of("-c:v", "libx264", "-preset", "fast", "-crf", "23", "-c:a", "aac");
+            case "webm" -> List.of("-c:v", "libvpx-vp9", "-crf", "30", "-c:a", "libopus");
+            case "mp3" -> List.of("-vn", "-c:a", "libmp3lame", "-q:a", "2");
+            case "wav" -> List.of("-vn", "-c:a", "pcm_s16le");
+            default -> List.of();
+        };
+    }
+
     @Override
     public Set<String> getSupportedInputTypes() {
         return INPUT_TYPES;
@@ -0,0 +1,176 @@
+package com.fileconverter.converter.impl;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Incremental parser for the key=value blocks FFmpeg writes with
+ * {@code -progress}. Bytes are consumed as they arrive, values are parsed
+ * in place as numbers, and nothing is allocated per line; each
+ * {@code progress=continue|end} line closes a block and reports it.
+ * Lines with other keys, such as interleaved log output, are skipped.
+ */
+final class FFmpegProgressParser {
+
+    @FunctionalInterface
+    interface Listener {
+        /**
+         * @param outTimeUs Output position in microseconds, or -1 if unknown
+         * @param speed     Encode speed as a multiple of real time, or -1 if unknown
+         * @param frame     Frames written so far, or -1 if unknown
+         * @param end       true for the final block
+         */
+        void onProgress(long outTimeUs, double speed, long frame, boolean end);
+    }
+
+    private static final int MAX_KEY_LENGTH = 16;
+    private static final long MAX_FRACTION_SCALE = 1_000_000;
+
+    private static final int FIELD_NONE = 0;
+    private static final int FIELD_OUT_TIME = 1;
+    private static final int FIELD_SPEED = 2;
+    private static final int FIELD_FRAME = 3;
+    private static final int FIELD_PROGRESS = 4;
+
+    private static final byte[] OUT_TIME_US = ascii("out_time_us");
+    // Despite its name, also reported in microseconds
+    private static final byte[] OUT_TIME_MS = ascii("out_time_ms");
+    private static final byte[] SPEED = ascii("speed");
+    private static final byte[] FRAME = ascii("frame");
+    private static final byte[] PROGRESS = ascii("progress");
+    private static final byte[] END = ascii("end");
+
+    private final Listener listener;
+    private final byte[] key;
+    private int keyLength;
+    private boolean inValue;
+    private int field;
+
+    // Value being parsed
+    private long integerPart;
+    private long fractionPart;
+    private long fractionScale = 1;
+    private boolean inFraction;
+    private boolean negative;
+    private boolean digitsSeen;
+    private boolean invalid;
+    private int endMatched;
+
+    // Latest values in the current block
+    private long outTimeUs = -1;
+    private double speed = -1;
+    private long frame = -1;
+
+    FFmpegProgressParser(Listener listener) {
+        this.listener = listener;
+        this.key = new byte[MAX_KEY_LENGTH];
+    }
+
+    void feed(byte[] buffer, int offset, int length) {
+        int end = offset + length;
+        for (int i = offset; i < end; i++) {
+            accept(buffer[i]);
+        }
+    }
+
+    private void accept(byte b) {
+        if (b == '\n' || b == '\r') {
+            endLine();
+        } else if (inValue) {
+            acceptValue(b);
+        } else if (b == '=') {
+            inValue = true;
+            field = identifyKey();
+        } else if (keyLength < MAX_KEY_LENGTH) {
+            key[keyLength++] = b;
+        } else {
+            // Longer than any key we know
+            keyLength = MAX_KEY_LENGTH + 1;
+        }
+    }
+
+    private void acceptValue(byte b) {
+        if (field == FIELD_NONE || invalid) {
+            return;
+        }
+        if (field == FIELD_PROGRESS) {
+            endMatched = endMatched >= 0 && endMatched < END.length && b == END[endMatched]
+                    ? endMatched + 1
+                    : -1;
+            return;
+        }
+        if (b >= '0' && b <= '9') {
+            if (!inFraction) {
+                integerPart = integerPart * 10 + (b - '0');
+            } else if (fractionScale < MAX_FRACTION_SCALE) {
+                fractionPart = fractionPart * 10 + (b - '0');
+                fractionScale *= 10;
+            }
+            digitsSeen = true;
+        } else if (b == ' ' && !digitsSeen) {
+            // Padding before the number
+        } else if (b == '-' && !digitsSeen && !negative) {
+            negative = true;
+        } else if (b == '.' && field == FIELD_SPEED && !inFraction) {
+            inFraction = true;
+        } else if (b == 'x' && field == FIELD_SPEED && digitsSeen) {
+            // Unit suffix, e.g. "1.5x"
+        } else {
+            // "N/A" and anything else unexpected
+            invalid = true;
+        }
+    }
+
+    private void endLine() {
+        if (inValue) {
+            boolean valid = digitsSeen && !invalid && !negative;
+            switch (field) {
+                case FIELD_OUT_TIME -> outTimeUs = valid ? integerPart : -1;
+                case FIELD_FRAME -> frame = valid ? integerPart : -1;
+                case FIELD_SPEED -> speed = valid ? integerPart + (double) fractionPart / fractionScale : -1;
+                case FIELD_PROGRESS -> listener.onProgress(outTimeUs, speed, frame, endMatched == END.length);
+                default -> {
+                }
+            }
+        }
+        keyLength = 0;
+        inValue = false;
+        field = FIELD_NONE;
+        integerPart = 0;
+        fractionPart = 0;
+        fractionScale = 1;
+        inFraction = false;
+        negative = false;
+        digitsSeen = false;
+        invalid = false;
+        endMatched = 0;
+    }
+
+    private int identifyKey() {
+        if (keyEquals(OUT_TIME_US) || keyEquals(OUT_TIME_MS)) {
+            return FIELD_OUT_TIME;
+        } else if (keyEquals(SPEED)) {
+            return FIELD_SPEED;
+        } else if (keyEquals(FRAME)) {
+            return FIELD_FRAME;
+        } else if (keyEquals(PROGRESS)) {
+            return FIELD_PROGRESS;
+        }
+        return FIELD_NONE;
+    }
+
+    private boolean keyEquals(byte[] expected) {
+        if (keyLength != expected.length) {
+            return false;
+        }
+        for (int i = 0; i < keyLength; i++) {
+            if (key[i] != expected[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static byte[] ascii(String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+}
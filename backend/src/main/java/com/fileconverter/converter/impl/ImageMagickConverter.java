@@ -1,14 +1,15 @@
 package com.fileconverter.converter.impl;
 
+import com.fileconverter.converter.BatchWorkspace;
 import com.fileconverter.converter.Converter;
 import com.fileconverter.converter.ProcessExecutor;
+import com.fileconverter.converter.ProgressListener;
 import org.springframework.stereotype.Component;
 
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
-import java.util.function.Consumer;
 
 @Component
 public class ImageMagickConverter implements Converter {
@@ -28,28 +29,13 @@ public class ImageMagickConverter implements Converter {
 
     @Override
     public void convert(Path input, Path output, String targetFormat,
-            Consumer<Double> progressCallback) throws Exception {
+            ProgressListener progressCallback) throws Exception {
 
         List<String> command = new ArrayList<>();
         command.add("convert");
         command.add(input.toString());
 
-        // Quality settings based on format
-        switch (targetFormat.toLowerCase()) {
-            case "jpg", "jpeg" -> {
-                command.add("-quality");
-                command.add("92");
-            }
-            case "png" -> {
-                command.add("-quality");
-                command.add("95");
-            }
-            case "webp" -> {
-                command.add("-quality");
-                command.add("90");
-            }
-        }
-
+        command.addAll(getOutputOptions(targetFormat));
         command.add(output.toString());
 
         progressCallback.accept(0.3);
@@ -65,6 +51,45 @@ public class ImageMagickConverter implements Converter {
         }
     }
 
+    @Override
+    public String getName() {
+        return "imagemagick";
+    }
+
+    @Override
+    public boolean supportsBatch(String inputMimeType, String targetFormat) {
+        return true;
+    }
+
+    @Override
+    public List<BatchItem> convertBatch(List<BatchItem> items, String targetFormat) throws Exception {
+        try (BatchWorkspace workspace = new BatchWorkspace("imagemagick-batch-", items)) {
+            List<String> command = new ArrayList<>();
+            command.add("mogrify");
+            command.add("-path");
+            command.add(workspace.getOutputDir().toString());
+            command.add("-format");
+            command.add(targetFormat);
+            command.addAll(getOutputOptions(targetFormat));
+            workspace.getInputs().forEach(p -> command.add(p.toString()));
+
+            // A bad file fails only its own item; the rest are still written
+            executor.execute(command, workspace.getRoot(), line -> {
+            });
+            return workspace.collect(targetFormat);
+        }
+    }
+
+    @Override
+    public List<String> getOutputOptions(String targetFormat) {
+        return switch (targetFormat.toLowerCase()) {
+            case "jpg", "jpeg" -> List.of("-quality", "92");
+            case "png" -> List.of("-quality", "95");
+            case "webp" -> List.of("-quality", "90");
+            default -> List.of();
+        };
+    }
+
     @Override
     public Set<String> getSupportedInputTypes() {
         return INPUT_TYPES;
@@ -1,7 +1,12 @@
 package com.fileconverter.converter.impl;
 
+import com.fileconverter.converter.BatchWorkspace;
 import com.fileconverter.converter.Converter;
 import com.fileconverter.converter.ProcessExecutor;
+import com.fileconverter.converter.ProgressListener;
+import com.fileconverter.diagnostics.JobPhase;
+import com.fileconverter.diagnostics.PhaseContext;
+import com.fileconverter.diagnostics.PhaseSpan;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
@@ -11,7 +16,6 @@ import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
-import java.util.function.Consumer;
 
 @Component
 public class LibreOfficeConverter implements Converter {
@@ -39,14 +43,23 @@ public class LibreOfficeConverter implements Converter {
             "odt", "ods", "odp", "txt", "html", "csv");
 
     private final ProcessExecutor executor;
+    private final LibreOfficePool pool;
 
-    public LibreOfficeConverter(ProcessExecutor executor) {
+    public LibreOfficeConverter(ProcessExecutor executor, LibreOfficePool pool) {
         this.executor = executor;
+        this.pool = pool;
     }
 
     @Override
     public void convert(Path input, Path output, String targetFormat,
-            Consumer<Double> progressCallback) throws Exception {
+            ProgressListener progressCallback) throws Exception {
+
+        if (pool.isRunning()) {
+            progressCallback.accept(0.2);
+            pool.convert(input, output, targetFormat);
+            progressCallback.accept(1.0);
+            return;
+        }
 
         Path tempDir = Files.createTempDirectory("libreoffice-");
 
@@ -54,6 +67,8 @@ public class LibreOfficeConverter implements Converter {
             List<String> command = new ArrayList<>();
             command.add("soffice");
             command.add("--headless");
+            // A private profile, so concurrent processes do not share one under $HOME
+            command.add("-env:UserInstallation=" + tempDir.resolve("profile").toUri());
 
             if (input.toString().toLowerCase().endsWith(".pdf")) {
                 command.add("--infilter=writer_pdf_import");
@@ -80,6 +95,7 @@ public class LibreOfficeConverter implements Converter {
             progressCallback.accept(0.8);
 
             // Find output file in temp dir
+            PhaseSpan collect = PhaseSpan.start(JobPhase.OUTPUT_COLLECTION);
             String inputFileName = input.getFileName().toString();
             String baseName = inputFileName.contains(".")
                     ? inputFileName.substring(0, inputFileName.lastIndexOf('.'))
@@ -109,6 +125,7 @@ public class LibreOfficeConverter implements Converter {
             }
 
             Files.move(convertedFile, output);
+            PhaseContext.record(collect);
             progressCallback.accept(1.0);
 
         } finally {
@@ -127,6 +144,40 @@ public class LibreOfficeConverter implements Converter {
         }
     }
 
+    @Override
+    public String getName() {
+        return "libreoffice";
+    }
+
+    /**
+     * Batches only help while each job would otherwise start soffice; PDFs
+     * need their own import filter and always run alone.
+     */
+    @Override
+    public boolean supportsBatch(String inputMimeType, String targetFormat) {
+        return !pool.isRunning() && !"application/pdf".equals(inputMimeType);
+    }
+
+    @Override
+    public List<BatchItem> convertBatch(List<BatchItem> items, String targetFormat) throws Exception {
+        try (BatchWorkspace workspace = new BatchWorkspace("libreoffice-batch-", items)) {
+            List<String> command = new ArrayList<>();
+            command.add("soffice");
+            command.add("--headless");
+            command.add("-env:UserInstallation=" + workspace.getRoot().resolve("profile").toUri());
+            command.add("--convert-to");
+            command.add(targetFormat);
+            command.add("--outdir");
+            command.add(workspace.getOutputDir().toString());
+            workspace.getInputs().forEach(p -> command.add(p.toString()));
+
+            // soffice carries on past documents it cannot convert
+            executor.execute(command, workspace.getRoot(), line -> {
+            });
+            return workspace.collect(targetFormat);
+        }
+    }
+
     @Override
     public Set<String> getSupportedInputTypes() {
         return INPUT_TYPES;
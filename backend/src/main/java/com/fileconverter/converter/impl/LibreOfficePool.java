@@ -0,0 +1,164 @@
+package com.fileconverter.converter.impl;
+
+import com.fileconverter.config.AppConfig;
+import com.fileconverter.converter.ProcessExecutor;
+import org.jodconverter.core.document.DefaultDocumentFormatRegistry;
+import org.jodconverter.core.document.DocumentFamily;
+import org.jodconverter.core.document.DocumentFormat;
+import org.jodconverter.core.office.OfficeException;
+import org.jodconverter.local.LocalConverter;
+import org.jodconverter.local.office.LocalOfficeManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * Pool of long-lived headless soffice instances, each listening on its own
+ * local port with its own user profile. Profiles are copied from a template
+ * that is initialized once, so an instance starts without first-run setup.
+ * <p>
+ * Instance lifecycle is managed by JODConverter: a task waits for a free
+ * instance, an instance is restarted after the configured number of
+ * conversions or when its connection is lost, and a task that exceeds the
+ * process timeout has its instance killed and restarted.
+ */
+@Component
+public class LibreOfficePool {
+
+    private static final Logger log = LoggerFactory.getLogger(LibreOfficePool.class);
+
+    // PDFs are opened as Writer documents, as the command-line path does
+    private static final DocumentFormat PDF_AS_TEXT = DocumentFormat.builder()
+            .name("Portable Document Format (Writer import)")
+            .extension("pdf")
+            .mediaType("application/pdf")
+            .inputFamily(DocumentFamily.TEXT)
+            .loadProperty("FilterName", "writer_pdf_import")
+            .build();
+
+    private final AppConfig.Office settings;
+    private final ProcessExecutor executor;
+    private final long timeoutMillis;
+    private LocalOfficeManager officeManager;
+    private LocalConverter converter;
+
+    public LibreOfficePool(AppConfig config, ProcessExecutor executor) {
+        this.settings = config.getOffice();
+        this.executor = executor;
+        this.timeoutMillis = TimeUnit.SECONDS.toMillis(config.getWorker().getProcessTimeoutSeconds());
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!settings.isEnabled()) {
+            return;
+        }
+        if (!executor.isToolAvailable("soffice")) {
+            log.warn("soffice not found; LibreOffice conversions will start a process per job");
+            return;
+        }
+        try {
+            Path baseDir = Paths.get(settings.getProfileDir());
+            Path template = baseDir.resolve("template");
+            Path workDir = baseDir.resolve("instances");
+            Files.createDirectories(workDir);
+            warmProfile(template);
+
+            int[] ports = IntStream.range(0, settings.getInstances())
+                    .map(i -> settings.getBasePort() + i)
+                    .toArray();
+            LocalOfficeManager.Builder builder = LocalOfficeManager.builder()
+                    .portNumbers(ports)
+                    .workingDir(workDir.toString())
+                    .maxTasksPerProcess(settings.getMaxConversionsPerInstance())
+                    .taskExecutionTimeout(timeoutMillis)
+                    .taskQueueTimeout(timeoutMillis);
+            if (Files.isDirectory(template.resolve("user"))) {
+                builder.templateProfileDir(template.toString());
+            }
+            LocalOfficeManager manager = builder.build();
+            manager.start();
+            officeManager = manager;
+            converter = LocalConverter.builder().officeManager(manager).build();
+            log.info("LibreOffice pool started with {} instances on ports {}-{}",
+                    ports.length, ports[0], ports[ports.length - 1]);
+        } catch (IOException | OfficeException | IllegalStateException e) {
+            log.warn("LibreOffice pool unavailable, falling back to a process per job: {}",
+                    e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (officeManager != null) {
+            try {
+                officeManager.stop();
+            } catch (OfficeException e) {
+                log.warn("Failed to stop LibreOffice pool: {}", e.getMessage());
+            }
+        }
+    }
+
+    public boolean isRunning() {
+        return officeManager != null && officeManager.isRunning();
+    }
+
+    /**
+     * Convert on a pooled instance, waiting for one to become free. PDFs are
+     * imported into Writer and saved as docx, like the command-line path.
+     */
+    public void convert(Path input, Path output, String targetFormat) throws OfficeException {
+        boolean pdfImport = "pdf".equals(extension(input));
+        DocumentFormat inputFormat = pdfImport
+                ? PDF_AS_TEXT
+                : DefaultDocumentFormatRegistry.getFormatByExtension(extension(input));
+        DocumentFormat outputFormat = DefaultDocumentFormatRegistry.getFormatByExtension(
+                pdfImport ? "docx" : targetFormat.toLowerCase());
+        if (outputFormat == null) {
+            throw new IllegalArgumentException("Unsupported LibreOffice output format: " + targetFormat);
+        }
+        var source = converter.convert(input.toFile());
+        (inputFormat != null ? source.as(inputFormat) : source)
+                .to(output.toFile())
+                .as(outputFormat)
+                .execute();
+    }
+
+    /**
+     * Run soffice once against the template profile so its first-run
+     * initialization is done before any instance copies it.
+     */
+    private void warmProfile(Path template) {
+        if (Files.isDirectory(template.resolve("user"))) {
+            return;
+        }
+        List<String> command = List.of(
+                "soffice", "--headless", "--norestore", "--terminate_after_init",
+                "-env:UserInstallation=" + template.toUri());
+        try {
+            long started = System.nanoTime();
+            int exitCode = executor.execute(command, template.getParent(), line -> {
+            });
+            log.info("Initialized LibreOffice template profile at {} in {} ms (exit code {})", template,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started), exitCode);
+        } catch (Exception e) {
+            log.warn("Failed to initialize LibreOffice template profile: {}", e.getMessage());
+        }
+    }
+
+    private static String extension(Path file) {
+        String name = file.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return dot >= 0 ? name.substring(dot + 1).toLowerCase() : "";
+    }
+}
@@ -2,13 +2,14 @@ package com.fileconverter.converter.impl;
 
 import com.fileconverter.converter.Converter;
 import com.fileconverter.converter.ProcessExecutor;
+import com.fileconverter.converter.ProgressListener;
 import org.springframework.stereotype.Component;
 
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
-import java.util.function.Consumer;
 
 @Component
 public class PandocConverter implements Converter {
@@ -20,6 +21,14 @@ public class PandocConverter implements Converter {
     private static final Set<String> OUTPUT_FORMATS = Set.of(
             "html", "pdf", "docx", "md", "txt", "rst", "epub");
 
+    // Pandoc reader for each text input type read from stdin
+    private static final Map<String, String> PIPE_READERS = Map.of(
+            "text/markdown", "markdown", "text/html", "html", "text/plain", "markdown");
+
+    // Text outputs that can be written to stdout
+    private static final Map<String, String> PIPE_WRITERS = Map.of(
+            "html", "html", "md", "markdown", "txt", "plain", "rst", "rst");
+
     private final ProcessExecutor executor;
 
     public PandocConverter(ProcessExecutor executor) {
@@ -28,7 +37,7 @@ public class PandocConverter implements Converter {
 
     @Override
     public void convert(Path input, Path output, String targetFormat,
-            Consumer<Double> progressCallback) throws Exception {
+            ProgressListener progressCallback) throws Exception {
 
         List<String> command = new ArrayList<>();
         command.add("pandoc");
@@ -36,10 +45,7 @@ public class PandocConverter implements Converter {
         command.add("-o");
         command.add(output.toString());
 
-        // PDF requires a PDF engine
-        if ("pdf".equals(targetFormat)) {
-            command.add("--pdf-engine=pdflatex");
-        }
+        command.addAll(getOutputOptions(targetFormat));
 
         progressCallback.accept(0.3);
 
@@ -53,6 +59,32 @@ public class PandocConverter implements Converter {
         }
     }
 
+    @Override
+    public boolean supportsPipe(String inputMimeType, String targetFormat) {
+        return PIPE_READERS.containsKey(inputMimeType) && PIPE_WRITERS.containsKey(targetFormat);
+    }
+
+    @Override
+    public List<String> getPipeCommand(String inputMimeType, String targetFormat) {
+        List<String> command = new ArrayList<>(List.of(
+                "pandoc",
+                "-f", PIPE_READERS.get(inputMimeType),
+                "-t", PIPE_WRITERS.get(targetFormat)));
+        command.addAll(getOutputOptions(targetFormat));
+        return command;
+    }
+
+    @Override
+    public String getName() {
+        return "pandoc";
+    }
+
+    @Override
+    public List<String> getOutputOptions(String targetFormat) {
+        // PDF requires a PDF engine
+        return "pdf".equals(targetFormat) ? List.of("--pdf-engine=pdflatex") : List.of();
+    }
+
     @Override
     public Set<String> getSupportedInputTypes() {
         return INPUT_TYPES;
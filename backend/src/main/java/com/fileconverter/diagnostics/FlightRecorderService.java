@@ -0,0 +1,136 @@
+package com.fileconverter.diagnostics;
+
+import com.fileconverter.config.AppConfig;
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.ParseException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Starts and stops one Flight Recorder recording at a time on the running
+ * node, including the {@link JobPhase} events. Recordings are bounded: they
+ * stop on their own after max-recording-minutes and keep at most
+ * max-recording-size-mb on disk. Only the latest recording file is kept.
+ */
+@Service
+public class FlightRecorderService {
+
+    private static final Logger log = LoggerFactory.getLogger(FlightRecorderService.class);
+
+    private final Path dir;
+    private final Duration maxDuration;
+    private final long maxSizeBytes;
+    private final String settings;
+
+    // Guarded by this
+    private Recording recording;
+    private Path file;
+    private Instant startedAt;
+
+    public FlightRecorderService(AppConfig config) {
+        AppConfig.Diagnostics settings = config.getDiagnostics();
+        this.dir = Paths.get(settings.getRecordingDir());
+        this.maxDuration = Duration.ofMinutes(settings.getMaxRecordingMinutes());
+        this.maxSizeBytes = settings.getMaxRecordingSizeMb() * 1024 * 1024;
+        this.settings = settings.getRecordingSettings();
+    }
+
+    /**
+     * Start a recording, replacing the file of the previous one.
+     *
+     * @param duration How long to record, capped at the configured maximum;
+     *                 null for the maximum
+     * @throws IllegalStateException if a recording is already running
+     */
+    public synchronized Map<String, Object> start(Duration duration) throws IOException, ParseException {
+        if (isRunning()) {
+            throw new IllegalStateException("A recording is already running");
+        }
+        discard();
+
+        Duration length = duration == null || duration.compareTo(maxDuration) > 0 ? maxDuration : duration;
+        Files.createDirectories(dir);
+        Instant now = Instant.now();
+        Path destination = dir.resolve("file-converter-" + now.toEpochMilli() + ".jfr");
+
+        Recording created = new Recording(Configuration.getConfiguration(settings));
+        created.setName("file-converter-admin");
+        created.setToDisk(true);
+        created.setMaxSize(maxSizeBytes);
+        created.setDuration(length);
+        created.setDestination(destination);
+        created.start();
+
+        recording = created;
+        file = destination;
+        startedAt = now;
+        log.info("Started {} Flight Recorder recording for {} into {}", settings, length, destination);
+        return getStatus();
+    }
+
+    /**
+     * Stop the running recording, if any, and return its file. A recording
+     * that reached its duration has already been written.
+     *
+     * @return The recording file, or empty if there is none
+     */
+    public synchronized Optional<Path> stop() throws IOException {
+        if (recording == null) {
+            return Optional.empty();
+        }
+        if (recording.getState() == RecordingState.RUNNING) {
+            recording.stop();
+            log.info("Stopped Flight Recorder recording into {}", file);
+        }
+        return Files.exists(file) ? Optional.of(file) : Optional.empty();
+    }
+
+    public synchronized Map<String, Object> getStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("state", recording != null ? recording.getState().name() : "NONE");
+        status.put("settings", settings);
+        status.put("maxDurationSeconds", maxDuration.toSeconds());
+        status.put("maxSizeMb", maxSizeBytes / 1024 / 1024);
+        if (recording != null) {
+            status.put("startedAt", startedAt);
+            status.put("durationSeconds", recording.getDuration().toSeconds());
+            status.put("sizeBytes", recording.getSize());
+        }
+        return status;
+    }
+
+    @PreDestroy
+    public synchronized void close() {
+        if (recording != null) {
+            recording.close();
+            recording = null;
+        }
+    }
+
+    private boolean isRunning() {
+        return recording != null
+                && (recording.getState() == RecordingState.RUNNING || recording.getState() == RecordingState.DELAYED);
+    }
+
+    private void discard() throws IOException {
+        close();
+        if (file != null) {
+            Files.deleteIfExists(file);
+            file = null;
+        }
+    }
+}
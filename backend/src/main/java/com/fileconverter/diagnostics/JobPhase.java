@@ -0,0 +1,15 @@
+package com.fileconverter.diagnostics;
+
+/**
+ * Stages a job passes through, in the order they usually happen. Phases
+ * can overlap: validation runs while the upload arrives, and process spawn
+ * and output collection are part of conversion.
+ */
+public enum JobPhase {
+    UPLOAD,
+    VALIDATION,
+    QUEUE_WAIT,
+    PROCESS_SPAWN,
+    CONVERSION,
+    OUTPUT_COLLECTION
+}
@@ -0,0 +1,32 @@
+package com.fileconverter.diagnostics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight Recorder event for one {@link JobPhase}. Its duration is the time
+ * the phase took; its thread is the one that ran it.
+ */
+@Name("com.fileconverter.JobPhase")
+@Label("Job Phase")
+@Category("File Converter")
+@Description("A phase of a conversion job")
+@StackTrace(false)
+class JobPhaseEvent extends jdk.jfr.Event {
+
+    @Label("Job Id")
+    String jobId;
+
+    @Label("Phase")
+    String phase;
+
+    @Label("Converter")
+    String converter;
+
+    @Label("Jobs")
+    @Description("Jobs sharing this phase, more than one for a batch")
+    int jobs;
+}
@@ -0,0 +1,53 @@
+package com.fileconverter.diagnostics;
+
+import java.util.function.Consumer;
+
+/**
+ * Routes phases measured deep inside a conversion, such as process spawn,
+ * to the jobs the current thread is working on. Workers bind their jobs
+ * around a conversion; converters and the process executor only call
+ * {@link #record}, without knowing which job they serve.
+ */
+public final class PhaseContext {
+
+    private static final ThreadLocal<Consumer<PhaseSpan>> CURRENT = new ThreadLocal<>();
+
+    private PhaseContext() {
+    }
+
+    /**
+     * Send phases recorded on this thread to the given sink until the
+     * returned scope is closed.
+     */
+    public static Scope bind(Consumer<PhaseSpan> sink) {
+        Consumer<PhaseSpan> previous = CURRENT.get();
+        CURRENT.set(sink);
+        return () -> {
+            if (previous != null) {
+                CURRENT.set(previous);
+            } else {
+                CURRENT.remove();
+            }
+        };
+    }
+
+    /**
+     * End the span and hand it to the jobs bound to this thread. Without a
+     * binding, only its Flight Recorder event is committed.
+     */
+    public static void record(PhaseSpan span) {
+        span.end();
+        Consumer<PhaseSpan> sink = CURRENT.get();
+        if (sink != null) {
+            sink.accept(span);
+        } else {
+            span.commit(null, null, 0);
+        }
+    }
+
+    @FunctionalInterface
+    public interface Scope extends AutoCloseable {
+        @Override
+        void close();
+    }
+}
@@ -0,0 +1,85 @@
+package com.fileconverter.diagnostics;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * A running or finished {@link JobPhase}. It keeps the wall-clock start for
+ * the job's timeline and the matching Flight Recorder event, which is
+ * committed once the span is attributed to its job.
+ */
+public final class PhaseSpan {
+
+    private final JobPhase phase;
+    private final Instant startedAt;
+    private final long startNanos;
+    private final JobPhaseEvent event;
+    private volatile long durationNanos = -1;
+    private boolean committed;
+
+    private PhaseSpan(JobPhase phase) {
+        this.phase = phase;
+        this.startedAt = Instant.now();
+        this.startNanos = System.nanoTime();
+        this.event = new JobPhaseEvent();
+        event.begin();
+    }
+
+    public static PhaseSpan start(JobPhase phase) {
+        return new PhaseSpan(phase);
+    }
+
+    /**
+     * Stop the clock. Later calls have no effect.
+     */
+    public PhaseSpan end() {
+        if (durationNanos < 0) {
+            durationNanos = System.nanoTime() - startNanos;
+            event.end();
+        }
+        return this;
+    }
+
+    public JobPhase getPhase() {
+        return phase;
+    }
+
+    public Instant getStartedAt() {
+        return startedAt;
+    }
+
+    /**
+     * @return Time taken, or so far if the span is still running
+     */
+    public Duration getDuration() {
+        long nanos = durationNanos;
+        return Duration.ofNanos(nanos >= 0 ? nanos : System.nanoTime() - startNanos);
+    }
+
+    /**
+     * End the span and commit its Flight Recorder event. A span shared by a
+     * batch is committed once, for the first job.
+     */
+    public synchronized void commit(String jobId, String converter, int jobs) {
+        end();
+        if (committed || !event.shouldCommit()) {
+            return;
+        }
+        committed = true;
+        event.jobId = jobId;
+        event.phase = phase.name();
+        event.converter = converter;
+        event.jobs = jobs;
+        event.commit();
+    }
+
+    public PhaseTiming toTiming() {
+        return new PhaseTiming(phase, startedAt, getDuration());
+    }
+
+    /**
+     * A finished phase as kept in a job's timeline.
+     */
+    public record PhaseTiming(JobPhase phase, Instant startedAt, Duration duration) {
+    }
+}
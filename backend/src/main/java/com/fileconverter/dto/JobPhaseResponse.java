@@ -0,0 +1,9 @@
+package com.fileconverter.dto;
+
+import java.time.Instant;
+
+public record JobPhaseResponse(
+        String phase,
+        Instant startedAt,
+        double durationMs) {
+}
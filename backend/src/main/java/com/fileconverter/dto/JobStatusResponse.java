@@ -1,6 +1,9 @@
 package com.fileconverter.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+
 import java.time.Instant;
+import java.util.List;
 
 public record JobStatusResponse(
         String jobId,
@@ -9,8 +12,12 @@ public record JobStatusResponse(
         String sourceFormat,
         String targetFormat,
         int progress,
+        Double speed,
+        Long etaSeconds,
         String errorMessage,
         Instant createdAt,
         Instant completedAt,
-        String downloadUrl) {
+        String downloadUrl,
+        // Only in the verbose view
+        @JsonInclude(JsonInclude.Include.NON_NULL) List<JobPhaseResponse> timeline) {
 }
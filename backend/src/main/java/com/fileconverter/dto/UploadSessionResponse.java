@@ -0,0 +1,9 @@
+package com.fileconverter.dto;
+
+public record UploadSessionResponse(
+        String uploadId,
+        String fileName,
+        String targetFormat,
+        long offset,
+        long length) {
+}
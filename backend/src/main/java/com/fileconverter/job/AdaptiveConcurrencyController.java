@@ -0,0 +1,200 @@
+package com.fileconverter.job;
+
+import com.fileconverter.config.AppConfig;
+import com.fileconverter.converter.Converter;
+import com.fileconverter.converter.ConverterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * AIMD controller for the number of jobs each converter may run at once.
+ * <p>
+ * Every interval it shrinks a converter's limit multiplicatively when the host
+ * is short of memory, overloaded, or that converter's latency (actual time
+ * relative to estimated cost) has risen well above its long-term baseline.
+ * Otherwise, if the converter has a backlog and every permit is in use, the
+ * limit grows by one. Limits stay within the pool's min-size and max-size.
+ */
+@Component
+public class AdaptiveConcurrencyController {
+
+    private static final Logger log = LoggerFactory.getLogger(AdaptiveConcurrencyController.class);
+
+    private static final int MAX_DECISIONS = 100;
+    private static final double DECREASE_FACTOR = 0.75;
+    private static final double BASELINE_ALPHA = 0.1;
+
+    private final AppConfig.Worker.Adaptive settings;
+    private final JobQueue jobQueue;
+    private final SystemResources systemResources;
+    private final Map<String, Lane> lanes;
+    private final Deque<Decision> decisions;
+
+    public AdaptiveConcurrencyController(AppConfig config, ConverterRegistry converterRegistry,
+            JobQueue jobQueue, SystemResources systemResources) {
+        this.settings = config.getWorker().getAdaptive();
+        this.jobQueue = jobQueue;
+        this.systemResources = systemResources;
+        this.decisions = new ArrayDeque<>();
+
+        Map<String, Lane> lanes = new LinkedHashMap<>();
+        for (Converter converter : converterRegistry.getConverters()) {
+            AppConfig.Worker.Pool pool = config.getWorker().getPool(converter.getName());
+            lanes.put(converter.getName(), settings.isEnabled()
+                    ? new Lane(pool.getPoolSize(), pool.getMinSize(), pool.getMaxSize())
+                    : new Lane(pool.getPoolSize(), pool.getPoolSize(), pool.getPoolSize()));
+        }
+        this.lanes = Collections.unmodifiableMap(lanes);
+    }
+
+    ConcurrencyLimit getLimit(String converterName) {
+        return lanes.get(converterName).limit;
+    }
+
+    /**
+     * @return Upper bound for the converter's limit, i.e. how many workers it may ever need
+     */
+    int getMaxLimit(String converterName) {
+        return lanes.get(converterName).max;
+    }
+
+    /**
+     * Record a successful conversion for latency tracking.
+     */
+    void recordLatency(String converterName, long elapsedNanos, double estimatedCostSeconds) {
+        Lane lane = lanes.get(converterName);
+        if (lane == null || estimatedCostSeconds <= 0) {
+            return;
+        }
+        synchronized (lane) {
+            lane.ratioSum += (elapsedNanos / 1e9) / estimatedCostSeconds;
+            lane.samples++;
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.worker.adaptive.interval-ms:5000}")
+    public void adjust() {
+        if (!settings.isEnabled()) {
+            return;
+        }
+        double loadPerCore = systemResources.getLoadPerCore();
+        double freeMemory = systemResources.getFreeMemoryRatio();
+
+        lanes.forEach((name, lane) -> {
+            double latencyRatio = lane.takeLatencyRatio();
+            int current = lane.limit.getLimit();
+            int next = current;
+            String reason = null;
+
+            if (freeMemory < settings.getMinFreeMemoryRatio()) {
+                next = decrease(current);
+                reason = String.format("free memory %.0f%%", freeMemory * 100);
+            } else if (loadPerCore > settings.getMaxLoadPerCore()) {
+                next = decrease(current);
+                reason = String.format("load %.2f per core", loadPerCore);
+            } else if (latencyRatio > 0 && lane.baseline > 0
+                    && latencyRatio > lane.baseline * settings.getLatencyTolerance()) {
+                next = decrease(current);
+                reason = String.format("latency %.1fx baseline", latencyRatio / lane.baseline);
+            } else if (jobQueue.getPendingCount(name) > 0 && lane.limit.getInFlight() >= current) {
+                next = current + 1;
+                reason = "backlog of " + jobQueue.getPendingCount(name);
+            }
+
+            if (latencyRatio > 0) {
+                lane.baseline = lane.baseline == 0
+                        ? latencyRatio
+                        : lane.baseline + BASELINE_ALPHA * (latencyRatio - lane.baseline);
+            }
+
+            next = Math.max(lane.min, Math.min(lane.max, next));
+            if (next != current) {
+                lane.limit.setLimit(next);
+                record(new Decision(Instant.now(), name, current, next, reason,
+                        loadPerCore, freeMemory, latencyRatio));
+                log.info("Concurrency for {}: {} -> {} ({})", name, current, next, reason);
+            }
+        });
+    }
+
+    public List<LimitSnapshot> getLimits() {
+        List<LimitSnapshot> snapshots = new ArrayList<>();
+        lanes.forEach((name, lane) -> snapshots.add(new LimitSnapshot(
+                name, lane.limit.getLimit(), lane.min, lane.max,
+                lane.limit.getInFlight(), jobQueue.getPendingCount(name), lane.baseline)));
+        return snapshots;
+    }
+
+    public synchronized List<Decision> getRecentDecisions() {
+        return new ArrayList<>(decisions);
+    }
+
+    public boolean isEnabled() {
+        return settings.isEnabled();
+    }
+
+    private int decrease(int current) {
+        return Math.min(current - 1, (int) (current * DECREASE_FACTOR));
+    }
+
+    private synchronized void record(Decision decision) {
+        if (decisions.size() == MAX_DECISIONS) {
+            decisions.removeFirst();
+        }
+        decisions.addLast(decision);
+    }
+
+    public record Decision(
+            Instant time,
+            String converter,
+            int previousLimit,
+            int newLimit,
+            String reason,
+            double loadPerCore,
+            double freeMemoryRatio,
+            double latencyRatio) {
+    }
+
+    public record LimitSnapshot(
+            String converter,
+            int limit,
+            int minLimit,
+            int maxLimit,
+            int inFlight,
+            int queued,
+            double baselineLatencyRatio) {
+    }
+
+    private static class Lane {
+        private final ConcurrencyLimit limit;
+        private final int min;
+        private final int max;
+        private double ratioSum;
+        private int samples;
+        private volatile double baseline;
+
+        Lane(int initial, int min, int max) {
+            this.min = Math.max(1, Math.min(min, initial));
+            this.max = Math.max(max, initial);
+            this.limit = new ConcurrencyLimit(initial);
+        }
+
+        synchronized double takeLatencyRatio() {
+            double ratio = samples > 0 ? ratioSum / samples : 0;
+            ratioSum = 0;
+            samples = 0;
+            return ratio;
+        }
+    }
+}
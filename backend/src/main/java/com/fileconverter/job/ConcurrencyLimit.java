@@ -0,0 +1,74 @@
+package com.fileconverter.job;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Semaphore whose number of permits can be changed while jobs hold them.
+ * Shrinking takes effect as running jobs release their permits.
+ */
+class ConcurrencyLimit {
+
+    private final ResizableSemaphore semaphore;
+    private final AtomicInteger running;
+    private int limit;
+
+    ConcurrencyLimit(int initialLimit) {
+        this.semaphore = new ResizableSemaphore(initialLimit);
+        this.running = new AtomicInteger();
+        this.limit = initialLimit;
+    }
+
+    void acquire() throws InterruptedException {
+        semaphore.acquire();
+    }
+
+    boolean tryAcquire() {
+        return semaphore.tryAcquire();
+    }
+
+    void release() {
+        semaphore.release();
+    }
+
+    synchronized int getLimit() {
+        return limit;
+    }
+
+    synchronized void setLimit(int newLimit) {
+        int delta = newLimit - limit;
+        if (delta > 0) {
+            semaphore.release(delta);
+        } else if (delta < 0) {
+            semaphore.reducePermits(-delta);
+        }
+        limit = newLimit;
+    }
+
+    /**
+     * Permit holders may be idle while waiting for work, so running jobs are
+     * counted separately.
+     */
+    void jobStarted() {
+        running.incrementAndGet();
+    }
+
+    void jobFinished() {
+        running.decrementAndGet();
+    }
+
+    int getInFlight() {
+        return running.get();
+    }
+
+    private static class ResizableSemaphore extends Semaphore {
+        ResizableSemaphore(int permits) {
+            super(permits);
+        }
+
+        @Override
+        protected void reducePermits(int reduction) {
+            super.reducePermits(reduction);
+        }
+    }
+}
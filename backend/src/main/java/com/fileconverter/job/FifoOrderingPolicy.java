@@ -0,0 +1,17 @@
+package com.fileconverter.job;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Plain first-come, first-served ordering by job creation time.
+ */
+@Component
+@ConditionalOnProperty(name = "app.worker.scheduling.policy", havingValue = "fifo")
+public class FifoOrderingPolicy implements JobOrderingPolicy {
+
+    @Override
+    public long priority(Job job) {
+        return job.getCreatedAt().toEpochMilli();
+    }
+}
@@ -1,7 +1,16 @@
 package com.fileconverter.job;
 
+import com.fileconverter.diagnostics.JobPhase;
+import com.fileconverter.diagnostics.PhaseSpan;
+
 import java.nio.file.Path;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
@@ -11,7 +20,10 @@ public class Job {
     private final String originalFileName;
     private final String sourceMimeType;
     private final String targetFormat;
+    private final String converterName;
     private final Path inputPath;
+    private final long inputSize;
+    private final String inputHash;
     private final Path outputPath;
     private final Instant createdAt;
     private final Instant expiresAt;
@@ -20,15 +32,25 @@ public class Job {
     private final AtomicInteger progress;
     private final AtomicReference<String> errorMessage;
     private final AtomicReference<Instant> completedAt;
+    private volatile double speed = -1;
+    private volatile long etaSeconds = -1;
+    private volatile boolean piped;
+    private volatile JobListener listener;
+    // Phases started by one component and ended by another, guarded by itself
+    private final Map<JobPhase, PhaseSpan> openPhases = new EnumMap<>(JobPhase.class);
+    private final List<PhaseSpan.PhaseTiming> timeline = new CopyOnWriteArrayList<>();
 
     public Job(String id, String originalFileName, String sourceMimeType,
-            String targetFormat, Path inputPath, Path outputPath,
-            Instant createdAt, Instant expiresAt) {
+            String targetFormat, String converterName, Path inputPath, long inputSize,
+            String inputHash, Path outputPath, Instant createdAt, Instant expiresAt) {
         this.id = id;
         this.originalFileName = originalFileName;
         this.sourceMimeType = sourceMimeType;
         this.targetFormat = targetFormat;
+        this.converterName = converterName;
         this.inputPath = inputPath;
+        this.inputSize = inputSize;
+        this.inputHash = inputHash;
         this.outputPath = outputPath;
         this.createdAt = createdAt;
         this.expiresAt = expiresAt;
@@ -38,6 +60,26 @@ public class Job {
         this.completedAt = new AtomicReference<>(null);
     }
 
+    /**
+     * Rebuild a job in a previously recorded state, e.g. when replaying the journal.
+     */
+    static Job restore(String id, String originalFileName, String sourceMimeType,
+            String targetFormat, String converterName, Path inputPath, long inputSize,
+            String inputHash, Path outputPath, Instant createdAt, Instant expiresAt,
+            JobStatus status, String errorMessage, Instant completedAt) {
+        Job job = new Job(id, originalFileName, sourceMimeType, targetFormat, converterName,
+                inputPath, inputSize, inputHash, outputPath, createdAt, expiresAt);
+        job.status.set(status);
+        job.progress.set(status == JobStatus.COMPLETED ? 100 : 0);
+        job.errorMessage.set(errorMessage);
+        job.completedAt.set(completedAt);
+        return job;
+    }
+
+    void setListener(JobListener listener) {
+        this.listener = listener;
+    }
+
     // Getters
     public String getId() {
         return id;
@@ -55,10 +97,25 @@ public class Job {
         return targetFormat;
     }
 
+    public String getConverterName() {
+        return converterName;
+    }
+
     public Path getInputPath() {
         return inputPath;
     }
 
+    public long getInputSize() {
+        return inputSize;
+    }
+
+    /**
+     * @return Hex SHA-256 of the input bytes, or null if unknown
+     */
+    public String getInputHash() {
+        return inputHash;
+    }
+
     public Path getOutputPath() {
         return outputPath;
     }
@@ -79,6 +136,32 @@ public class Job {
         return progress.get();
     }
 
+    /**
+     * @return Media seconds converted per second, or -1 if the converter does not report it
+     */
+    public double getSpeed() {
+        return speed;
+    }
+
+    /**
+     * @return Estimated seconds until completion, or -1 if unknown
+     */
+    public long getEtaSeconds() {
+        return etaSeconds;
+    }
+
+    /**
+     * @return true if the output is written as it is produced, so it can be
+     *         read before the job completes
+     */
+    public boolean isPiped() {
+        return piped;
+    }
+
+    void markPiped() {
+        piped = true;
+    }
+
     public String getErrorMessage() {
         return errorMessage.get();
     }
@@ -87,33 +170,117 @@ public class Job {
         return completedAt.get();
     }
 
+    /**
+     * @return Finished phases in the order they started
+     */
+    public List<PhaseSpan.PhaseTiming> getTimeline() {
+        List<PhaseSpan.PhaseTiming> sorted = new ArrayList<>(timeline);
+        sorted.sort(Comparator.comparing(PhaseSpan.PhaseTiming::startedAt));
+        return sorted;
+    }
+
+    // Phases
+
+    /**
+     * Start timing a phase that is ended elsewhere with {@link #endPhase},
+     * e.g. the wait in the queue. Starting it again restarts the clock.
+     */
+    public void beginPhase(JobPhase phase) {
+        synchronized (openPhases) {
+            openPhases.put(phase, PhaseSpan.start(phase));
+        }
+    }
+
+    public void endPhase(JobPhase phase) {
+        PhaseSpan span;
+        synchronized (openPhases) {
+            span = openPhases.remove(phase);
+        }
+        if (span != null) {
+            recordPhase(span);
+        }
+    }
+
+    public void recordPhase(PhaseSpan span) {
+        recordPhase(span, 1);
+    }
+
+    /**
+     * Add a finished phase to the timeline and emit its Flight Recorder event.
+     *
+     * @param jobs How many jobs shared the phase, e.g. in a batch
+     */
+    public void recordPhase(PhaseSpan span, int jobs) {
+        span.commit(id, converterName, jobs);
+        timeline.add(span.toTiming());
+    }
+
     // State transitions
     public void startProcessing() {
         status.set(JobStatus.PROCESSING);
         progress.set(10);
+        notifyStatus(JobStatus.PROCESSING);
     }
 
     public void updateProgress(int value) {
         progress.set(Math.min(99, Math.max(0, value)));
+        notifyProgress();
+    }
+
+    public void updateRate(double speed, long etaSeconds) {
+        this.speed = speed;
+        this.etaSeconds = etaSeconds;
+        notifyProgress();
+    }
+
+    /**
+     * Return the job to the queued state, e.g. when it must run on its own
+     * after the job it was attached to went away.
+     */
+    void requeue() {
+        status.set(JobStatus.QUEUED);
+        progress.set(0);
+        speed = -1;
+        etaSeconds = -1;
+        notifyStatus(JobStatus.QUEUED);
     }
 
     public void complete() {
         status.set(JobStatus.COMPLETED);
         progress.set(100);
+        etaSeconds = 0;
         completedAt.set(Instant.now());
+        notifyStatus(JobStatus.COMPLETED);
     }
 
     public void fail(String message) {
         status.set(JobStatus.FAILED);
+        etaSeconds = -1;
         errorMessage.set(message);
         completedAt.set(Instant.now());
+        notifyStatus(JobStatus.FAILED);
     }
 
     public void expire() {
         status.set(JobStatus.EXPIRED);
+        notifyStatus(JobStatus.EXPIRED);
     }
 
     public boolean isExpired() {
         return Instant.now().isAfter(expiresAt);
     }
+
+    private void notifyProgress() {
+        JobListener current = listener;
+        if (current != null) {
+            current.onProgress(this);
+        }
+    }
+
+    private void notifyStatus(JobStatus newStatus) {
+        JobListener current = listener;
+        if (current != null) {
+            current.onStatusChanged(this, newStatus);
+        }
+    }
 }
@@ -0,0 +1,264 @@
+package com.fileconverter.job;
+
+import com.fileconverter.config.AppConfig;
+import com.fileconverter.storage.TempStorageService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Single-flight deduplication of conversions. A job with the same input hash,
+ * converter and target format as one that is queued or processing is only
+ * registered with the {@link JobQueue}; it follows the leader's status and
+ * progress and receives its own link to the leader's output when it finishes.
+ * <p>
+ * If the leader is removed, expires, or loses its files before finishing, the
+ * oldest remaining follower is queued in its place, so followers never depend
+ * on a job whose owner has gone away.
+ */
+@Component
+public class JobCoalescer implements JobListener {
+
+    private static final Logger log = LoggerFactory.getLogger(JobCoalescer.class);
+
+    private final JobQueue jobQueue;
+    private final boolean enabled;
+
+    // Guarded by this
+    private final Map<String, Flight> flights;
+    // Leader and follower ids -> their flight, guarded by this
+    private final Map<String, Flight> members;
+    // Leader id -> flight, read without locking for progress updates
+    private final Map<String, Flight> leaders;
+
+    public JobCoalescer(JobQueue jobQueue, AppConfig config) {
+        this.jobQueue = jobQueue;
+        this.enabled = config.getWorker().isCoalesce();
+        this.flights = new HashMap<>();
+        this.members = new HashMap<>();
+        this.leaders = new ConcurrentHashMap<>();
+    }
+
+    @PostConstruct
+    public void init() {
+        if (enabled) {
+            jobQueue.addListener(this);
+        }
+    }
+
+    /**
+     * Attach the job to an identical conversion in flight, or submit it to the
+     * queue as a new leader.
+     *
+     * @throws JobRejectedException if the queue rejected the job
+     */
+    public void submit(Job job) {
+        String key = key(job);
+        if (key == null) {
+            jobQueue.submit(job);
+            return;
+        }
+        synchronized (this) {
+            Flight flight = flights.get(key);
+            if (flight != null) {
+                flight.followers.add(job);
+                members.put(job.getId(), flight);
+                jobQueue.track(job);
+                mirror(flight, job);
+                log.info("Job {} coalesced with job {}", job.getId(), flight.leader.getId());
+                return;
+            }
+            open(key, job, new ArrayList<>());
+        }
+        // A rejected leader is removed again, which promotes any follower
+        // that attached in the meantime
+        jobQueue.submit(job);
+    }
+
+    /**
+     * Mirror the leader's start onto its followers.
+     */
+    public void started(Job job) {
+        Flight flight = leaders.get(job.getId());
+        if (flight != null) {
+            flight.followers.forEach(Job::startProcessing);
+        }
+    }
+
+    public void progress(Job job, int value) {
+        Flight flight = leaders.get(job.getId());
+        if (flight != null) {
+            flight.followers.forEach(f -> f.updateProgress(value));
+        }
+    }
+
+    public void rate(Job job, double speed, long etaSeconds) {
+        Flight flight = leaders.get(job.getId());
+        if (flight != null) {
+            flight.followers.forEach(f -> f.updateRate(speed, etaSeconds));
+        }
+    }
+
+    /**
+     * Give each follower its own link to the leader's output and complete it.
+     * Followers are re-run if the output is gone.
+     */
+    public void completed(Job job) {
+        List<Job> followers = close(job);
+        if (followers.isEmpty()) {
+            return;
+        }
+        List<Job> orphaned = new ArrayList<>();
+        for (Job follower : followers) {
+            try {
+                Files.deleteIfExists(follower.getOutputPath());
+                TempStorageService.linkOrCopy(job.getOutputPath(), follower.getOutputPath());
+                follower.complete();
+            } catch (IOException e) {
+                log.warn("Could not share output of job {} with job {}: {}",
+                        job.getId(), follower.getId(), e.getMessage());
+                orphaned.add(follower);
+            }
+        }
+        if (!orphaned.isEmpty()) {
+            synchronized (this) {
+                promote(orphaned);
+            }
+        }
+    }
+
+    /**
+     * Fail the followers with the leader's error, unless the failure came from
+     * the leader's own files being deleted, in which case they are re-run.
+     */
+    public void failed(Job job, String message) {
+        List<Job> followers = close(job);
+        if (followers.isEmpty()) {
+            return;
+        }
+        if (!Files.exists(job.getInputPath())) {
+            synchronized (this) {
+                promote(followers);
+            }
+            return;
+        }
+        followers.forEach(f -> f.fail(message));
+    }
+
+    /**
+     * Drop the followers of a leader that another node took over. They were
+     * taken over along with it, so they are not re-run here.
+     */
+    public void lost(Job job) {
+        close(job).forEach(f -> jobQueue.removeJob(f.getId()));
+    }
+
+    @Override
+    public synchronized void onRemoved(Job job) {
+        Flight flight = members.remove(job.getId());
+        if (flight == null) {
+            return;
+        }
+        if (flight.leader != job) {
+            flight.followers.remove(job);
+            return;
+        }
+        leaders.remove(job.getId());
+        flights.remove(flight.key);
+        flight.followers.forEach(f -> members.remove(f.getId()));
+        promote(new ArrayList<>(flight.followers));
+    }
+
+    private String key(Job job) {
+        if (!enabled || job.getInputHash() == null) {
+            return null;
+        }
+        return job.getInputHash() + ':' + job.getConverterName() + ':'
+                + job.getTargetFormat().toLowerCase();
+    }
+
+    private Flight open(String key, Job leader, List<Job> followers) {
+        Flight flight = new Flight(key, leader, followers);
+        flights.put(key, flight);
+        members.put(leader.getId(), flight);
+        leaders.put(leader.getId(), flight);
+        followers.forEach(f -> members.put(f.getId(), flight));
+        return flight;
+    }
+
+    private static void mirror(Flight flight, Job follower) {
+        JobStatus leaderStatus = flight.leader.getStatus();
+        if (leaderStatus == JobStatus.PROCESSING && follower.getStatus() != JobStatus.PROCESSING) {
+            follower.startProcessing();
+        } else if (leaderStatus == JobStatus.QUEUED && follower.getStatus() != JobStatus.QUEUED) {
+            follower.requeue();
+        }
+    }
+
+    private synchronized List<Job> close(Job leader) {
+        Flight flight = leaders.remove(leader.getId());
+        if (flight == null) {
+            return List.of();
+        }
+        flights.remove(flight.key);
+        members.remove(leader.getId());
+        flight.followers.forEach(f -> members.remove(f.getId()));
+        return new ArrayList<>(flight.followers);
+    }
+
+    /**
+     * Queue the oldest live follower as a new leader for the rest.
+     */
+    private void promote(List<Job> followers) {
+        followers.removeIf(Job::isExpired);
+        if (followers.isEmpty()) {
+            return;
+        }
+        Job leader = followers.remove(0);
+        String key = key(leader);
+        Flight existing = flights.get(key);
+        if (existing != null) {
+            // A fresh upload already started the same conversion
+            followers.add(0, leader);
+            for (Job follower : followers) {
+                existing.followers.add(follower);
+                members.put(follower.getId(), existing);
+                mirror(existing, follower);
+            }
+            return;
+        }
+        leader.requeue();
+        Flight flight = open(key, leader, followers);
+        followers.forEach(f -> mirror(flight, f));
+        if (!jobQueue.enqueue(leader)) {
+            close(leader);
+            String message = "Job queue is full. Please try again later.";
+            leader.fail(message);
+            followers.forEach(f -> f.fail(message));
+            return;
+        }
+        log.info("Job {} now leads {} coalesced jobs", leader.getId(), followers.size());
+    }
+
+    private static final class Flight {
+        private final String key;
+        private final Job leader;
+        private final List<Job> followers;
+
+        Flight(String key, Job leader, List<Job> followers) {
+            this.key = key;
+            this.leader = leader;
+            this.followers = new CopyOnWriteArrayList<>(followers);
+        }
+    }
+}
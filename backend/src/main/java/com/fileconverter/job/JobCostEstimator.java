@@ -0,0 +1,29 @@
+package com.fileconverter.job;
+
+import com.fileconverter.config.AppConfig;
+import org.springframework.stereotype.Component;
+
+/**
+ * Rough conversion cost in seconds: a fixed per-tool startup cost plus a
+ * per-megabyte factor applied to the input size.
+ */
+@Component
+public class JobCostEstimator {
+
+    private static final double BYTES_PER_MB = 1024.0 * 1024.0;
+
+    private final AppConfig.Worker workerConfig;
+
+    public JobCostEstimator(AppConfig config) {
+        this.workerConfig = config.getWorker();
+    }
+
+    public double estimateSeconds(Job job) {
+        return estimateSeconds(job.getConverterName(), job.getInputSize());
+    }
+
+    public double estimateSeconds(String converterName, long inputSize) {
+        AppConfig.Worker.Pool pool = workerConfig.getPool(converterName);
+        return pool.getBaseCostSeconds() + (inputSize / BYTES_PER_MB) * pool.getCostSecondsPerMb();
+    }
+}
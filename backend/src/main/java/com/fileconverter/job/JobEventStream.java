@@ -0,0 +1,151 @@
+package com.fileconverter.job;
+
+import com.fileconverter.config.AppConfig;
+import com.fileconverter.dto.JobStatusResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Pushes job status to subscribers as it changes. Each watched job has one
+ * replay-latest sink that all of its streams share, so a snapshot is built
+ * once per change no matter how many clients watch it. Progress changes only
+ * mark the job dirty; a single timer publishes dirty jobs at most once per
+ * interval. Status changes are published immediately, and a finished job's
+ * sink completes.
+ */
+@Component
+public class JobEventStream implements JobListener {
+
+    private static final Logger log = LoggerFactory.getLogger(JobEventStream.class);
+
+    private final JobQueue jobQueue;
+    private final JobService jobService;
+    private final Duration interval;
+    private final Map<String, Sinks.Many<JobStatusResponse>> channels;
+    private final Set<String> dirty;
+    private Disposable ticker;
+
+    public JobEventStream(JobQueue jobQueue, JobService jobService, AppConfig config) {
+        this.jobQueue = jobQueue;
+        this.jobService = jobService;
+        this.interval = Duration.ofMillis(config.getEvents().getMinIntervalMs());
+        this.channels = new ConcurrentHashMap<>();
+        this.dirty = ConcurrentHashMap.newKeySet();
+    }
+
+    @PostConstruct
+    public void start() {
+        jobQueue.addListener(this);
+        ticker = Flux.interval(interval, interval)
+                .onBackpressureDrop()
+                .subscribe(tick -> flush());
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (ticker != null) {
+            ticker.dispose();
+        }
+        channels.values().forEach(Sinks.Many::tryEmitComplete);
+    }
+
+    /**
+     * Stream of snapshots for a job, starting with its current state and
+     * ending once it completes, fails or expires.
+     *
+     * @return empty if the job is unknown
+     */
+    public Optional<Flux<JobStatusResponse>> watch(String jobId) {
+        return jobQueue.getJob(jobId).map(job -> {
+            Sinks.Many<JobStatusResponse> sink = channels.computeIfAbsent(jobId, id -> {
+                Sinks.Many<JobStatusResponse> created = Sinks.many().replay().latest();
+                created.tryEmitNext(jobService.toResponse(job));
+                return created;
+            });
+            // Covers a job that finished before its channel was registered
+            if (isFinished(job.getStatus())) {
+                publish(sink, job);
+                close(jobId, sink);
+            }
+            return sink.asFlux();
+        });
+    }
+
+    @Override
+    public void onProgress(Job job) {
+        if (channels.containsKey(job.getId())) {
+            dirty.add(job.getId());
+        }
+    }
+
+    @Override
+    public void onStatusChanged(Job job, JobStatus status) {
+        Sinks.Many<JobStatusResponse> sink = channels.get(job.getId());
+        if (sink == null) {
+            return;
+        }
+        dirty.remove(job.getId());
+        publish(sink, job);
+        if (isFinished(status)) {
+            close(job.getId(), sink);
+        }
+    }
+
+    @Override
+    public void onRemoved(Job job) {
+        Sinks.Many<JobStatusResponse> sink = channels.get(job.getId());
+        if (sink != null) {
+            close(job.getId(), sink);
+        }
+    }
+
+    private void flush() {
+        Iterator<String> it = dirty.iterator();
+        while (it.hasNext()) {
+            String jobId = it.next();
+            it.remove();
+            Sinks.Many<JobStatusResponse> sink = channels.get(jobId);
+            Optional<Job> job = jobQueue.getJob(jobId);
+            if (sink != null && job.isPresent()) {
+                publish(sink, job.get());
+            }
+        }
+    }
+
+    private void publish(Sinks.Many<JobStatusResponse> sink, Job job) {
+        JobStatusResponse snapshot = jobService.toResponse(job);
+        // The timer and worker threads may both publish for one job
+        synchronized (sink) {
+            Sinks.EmitResult result = sink.tryEmitNext(snapshot);
+            if (result.isFailure() && result != Sinks.EmitResult.FAIL_TERMINATED) {
+                log.debug("Dropped event for job {}: {}", job.getId(), result);
+            }
+        }
+    }
+
+    private void close(String jobId, Sinks.Many<JobStatusResponse> sink) {
+        synchronized (sink) {
+            sink.tryEmitComplete();
+        }
+        channels.remove(jobId, sink);
+        dirty.remove(jobId);
+    }
+
+    private static boolean isFinished(JobStatus status) {
+        return status == JobStatus.COMPLETED || status == JobStatus.FAILED
+                || status == JobStatus.EXPIRED;
+    }
+}
@@ -0,0 +1,487 @@
+package com.fileconverter.job;
+
+import com.fileconverter.config.AppConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only write-ahead journal of job state transitions in a memory-mapped
+ * file, so queued and finished jobs survive a restart.
+ * <p>
+ * Listener callbacks only hand an event to a queue; a single writer thread
+ * encodes it into the mapping, so submission never waits on I/O. Each record
+ * is {@code [length][crc32][body]}; replay stops at the first zero length or
+ * bad checksum, which is where a crash may have torn the last write.
+ * Compaction rewrites the file with one record per live job.
+ */
+@Component
+public class JobJournal implements JobListener {
+
+    private static final Logger log = LoggerFactory.getLogger(JobJournal.class);
+
+    private static final int MAGIC = 0x46434A31; // "FCJ1"
+    private static final int HEADER_SIZE = 4;
+    private static final int RECORD_OVERHEAD = 8;
+    private static final byte TYPE_SUBMITTED = 1;
+    private static final byte TYPE_STATUS = 2;
+    private static final byte TYPE_REMOVED = 3;
+    private static final long FLUSH_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final JobQueue jobQueue;
+    private final AppConfig.Journal settings;
+    private final Path file;
+    private final BlockingQueue<Event> events;
+
+    // Owned by the writer thread once it has started
+    private final Map<String, Entry> live;
+    private final CRC32 crc;
+    private ByteBuffer scratch;
+    private FileChannel channel;
+    private MappedByteBuffer mapped;
+    private boolean dirty;
+    private Thread writer;
+
+    public JobJournal(JobQueue jobQueue, AppConfig config) {
+        this.jobQueue = jobQueue;
+        this.settings = config.getJournal();
+        this.file = Paths.get(settings.getDir()).resolve("jobs.journal");
+        this.events = new LinkedBlockingQueue<>();
+        this.live = new LinkedHashMap<>();
+        this.crc = new CRC32();
+        this.scratch = ByteBuffer.allocate(4096);
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        if (!settings.isEnabled()) {
+            return;
+        }
+        Files.createDirectories(file.getParent());
+
+        // Registered first so changes made while replaying, e.g. a worker
+        // starting a restored job, wait in the event queue for the writer
+        jobQueue.addListener(this);
+        long started = System.nanoTime();
+        int records = replay();
+        int restored = restoreJobs();
+        compact();
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+
+        writer = Thread.ofPlatform().name("job-journal").daemon().start(this::writeLoop);
+        log.info("Journal {} replayed {} records and restored {} jobs in {} ms",
+                file, records, restored, elapsedMs);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (writer != null) {
+            events.add(new Stop());
+            writer.join(TimeUnit.SECONDS.toMillis(10));
+        }
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                log.warn("Failed to close journal: {}", e.getMessage());
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.journal.compact-interval-ms:600000}",
+            initialDelayString = "${app.journal.compact-interval-ms:600000}")
+    public void scheduleCompaction() {
+        if (writer != null) {
+            events.add(new Compact());
+        }
+    }
+
+    @Override
+    public void onSubmitted(Job job) {
+        events.add(new Entry(job.getId(), job.getOriginalFileName(), job.getSourceMimeType(),
+                job.getTargetFormat(), job.getConverterName(), job.getInputPath().toString(),
+                job.getInputSize(), job.getOutputPath().toString(),
+                job.getCreatedAt().toEpochMilli(), job.getExpiresAt().toEpochMilli(),
+                job.getInputHash()));
+    }
+
+    @Override
+    public void onStatusChanged(Job job, JobStatus status) {
+        Instant completedAt = job.getCompletedAt();
+        events.add(new StatusChange(job.getId(), status,
+                status == JobStatus.FAILED ? job.getErrorMessage() : null,
+                completedAt != null ? completedAt.toEpochMilli() : 0));
+    }
+
+    @Override
+    public void onRemoved(Job job) {
+        events.add(new Removed(job.getId()));
+    }
+
+    private void writeLoop() {
+        long lastFlush = System.nanoTime();
+        while (true) {
+            try {
+                Event event = events.poll(1, TimeUnit.SECONDS);
+                if (event instanceof Stop) {
+                    flush();
+                    return;
+                } else if (event instanceof Compact) {
+                    compact();
+                } else if (event != null) {
+                    apply(event);
+                    append(event);
+                }
+                if (dirty && System.nanoTime() - lastFlush > FLUSH_INTERVAL_NANOS) {
+                    flush();
+                    lastFlush = System.nanoTime();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.error("Journal write failed", e);
+            }
+        }
+    }
+
+    // --- Replay ---
+
+    private int replay() throws IOException {
+        if (!Files.exists(file) || Files.size(file) < HEADER_SIZE) {
+            return 0;
+        }
+        int records = 0;
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = in.map(FileChannel.MapMode.READ_ONLY, 0, in.size());
+            if (buffer.getInt() != MAGIC) {
+                Path corrupt = file.resolveSibling(file.getFileName() + ".corrupt");
+                log.warn("Journal {} has an unknown format, moving it to {}", file, corrupt);
+                Files.move(file, corrupt, StandardCopyOption.REPLACE_EXISTING);
+                return 0;
+            }
+            while (buffer.remaining() >= RECORD_OVERHEAD) {
+                int length = buffer.getInt();
+                int checksum = buffer.getInt();
+                if (length <= 0 || length > buffer.remaining()) {
+                    break;
+                }
+                ByteBuffer body = buffer.slice(buffer.position(), length);
+                crc.reset();
+                crc.update(body.duplicate());
+                if ((int) crc.getValue() != checksum) {
+                    log.warn("Journal record {} is corrupt, ignoring the remainder", records);
+                    break;
+                }
+                apply(decode(body));
+                buffer.position(buffer.position() + length);
+                records++;
+            }
+        }
+        return records;
+    }
+
+    private int restoreJobs() {
+        int restored = 0;
+        Instant now = Instant.now();
+        Iterator<Entry> it = live.values().iterator();
+        while (it.hasNext()) {
+            Entry entry = it.next();
+            Path input = Path.of(entry.inputPath);
+            Path output = Path.of(entry.outputPath);
+            boolean usable = switch (entry.status) {
+                case QUEUED, PROCESSING -> Files.exists(input);
+                case COMPLETED -> Files.exists(output);
+                case FAILED -> true;
+                case EXPIRED -> false;
+            };
+            if (!usable || now.isAfter(Instant.ofEpochMilli(entry.expiresAt))) {
+                it.remove();
+                continue;
+            }
+            // Interrupted conversions start over
+            if (entry.status == JobStatus.PROCESSING) {
+                entry.status = JobStatus.QUEUED;
+            }
+            Job job = Job.restore(entry.id, entry.originalFileName, entry.sourceMimeType,
+                    entry.targetFormat, entry.converterName, input, entry.inputSize,
+                    entry.inputHash, output,
+                    Instant.ofEpochMilli(entry.createdAt), Instant.ofEpochMilli(entry.expiresAt),
+                    entry.status, entry.errorMessage,
+                    entry.completedAt > 0 ? Instant.ofEpochMilli(entry.completedAt) : null);
+            if (jobQueue.restore(job)) {
+                restored++;
+            } else {
+                it.remove();
+            }
+        }
+        return restored;
+    }
+
+    private void apply(Event event) {
+        switch (event) {
+            case Entry entry -> live.put(entry.id, entry);
+            case StatusChange change -> {
+                Entry entry = live.get(change.id());
+                if (entry != null) {
+                    entry.status = change.status();
+                    entry.errorMessage = change.errorMessage();
+                    entry.completedAt = change.completedAt();
+                }
+            }
+            case Removed removed -> live.remove(removed.id());
+            default -> {
+            }
+        }
+    }
+
+    // --- Writing ---
+
+    private void append(Event event) throws IOException {
+        ByteBuffer body = encode(event);
+        if (mapped.remaining() < RECORD_OVERHEAD + body.remaining()) {
+            compact();
+            if (mapped.remaining() < RECORD_OVERHEAD + body.remaining()) {
+                map(mapped.position(), Math.max(mapped.capacity() * 2L,
+                        mapped.position() + RECORD_OVERHEAD + body.remaining()));
+            }
+        }
+        writeRecord(mapped, body);
+        dirty = true;
+    }
+
+    /**
+     * Rewrite the journal as a snapshot of live jobs and switch to it atomically.
+     */
+    private void compact() throws IOException {
+        Path tmp = file.resolveSibling(file.getFileName() + ".compact");
+        long size;
+        try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).flip();
+            out.write(header);
+            for (Entry entry : live.values()) {
+                writeRecord(out, encode(entry));
+                if (entry.status != JobStatus.QUEUED) {
+                    writeRecord(out, encode(new StatusChange(entry.id, entry.status,
+                            entry.errorMessage, entry.completedAt)));
+                }
+            }
+            out.force(true);
+            size = out.size();
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        map(size, Math.max(settings.getSizeMb() * 1024L * 1024L, size * 2));
+        log.debug("Journal compacted to {} live jobs ({} bytes)", live.size(), size);
+    }
+
+    private void map(long position, long size) throws IOException {
+        if (channel != null) {
+            channel.close();
+        }
+        channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        mapped.position((int) position);
+        dirty = false;
+    }
+
+    private void flush() {
+        if (mapped != null && dirty) {
+            mapped.force();
+            dirty = false;
+        }
+    }
+
+    private void writeRecord(MappedByteBuffer target, ByteBuffer body) {
+        crc.reset();
+        crc.update(body.duplicate());
+        int start = target.position();
+        // Body before length, so a reader never sees a length without its record
+        target.position(start + RECORD_OVERHEAD);
+        target.put(body.duplicate());
+        target.putInt(start + 4, (int) crc.getValue());
+        target.putInt(start, body.remaining());
+    }
+
+    private void writeRecord(FileChannel out, ByteBuffer body) throws IOException {
+        crc.reset();
+        crc.update(body.duplicate());
+        ByteBuffer header = ByteBuffer.allocate(RECORD_OVERHEAD)
+                .putInt(body.remaining())
+                .putInt((int) crc.getValue())
+                .flip();
+        out.write(new ByteBuffer[] { header, body.duplicate() });
+    }
+
+    // --- Encoding ---
+
+    private ByteBuffer encode(Event event) {
+        scratch.clear();
+        switch (event) {
+            case Entry entry -> {
+                putByte(TYPE_SUBMITTED);
+                putString(entry.id);
+                putString(entry.originalFileName);
+                putString(entry.sourceMimeType);
+                putString(entry.targetFormat);
+                putString(entry.converterName);
+                putString(entry.inputPath);
+                putLong(entry.inputSize);
+                putString(entry.outputPath);
+                putLong(entry.createdAt);
+                putLong(entry.expiresAt);
+                putString(entry.inputHash);
+            }
+            case StatusChange change -> {
+                putByte(TYPE_STATUS);
+                putString(change.id());
+                putByte((byte) change.status().ordinal());
+                putLong(change.completedAt());
+                putString(change.errorMessage());
+            }
+            case Removed removed -> {
+                putByte(TYPE_REMOVED);
+                putString(removed.id());
+            }
+            default -> throw new IllegalArgumentException("Not a journal record: " + event);
+        }
+        return scratch.flip();
+    }
+
+    private Event decode(ByteBuffer body) {
+        byte type = body.get();
+        return switch (type) {
+            // The input hash was appended later and is absent from older records
+            case TYPE_SUBMITTED -> new Entry(getString(body), getString(body), getString(body),
+                    getString(body), getString(body), getString(body), body.getLong(),
+                    getString(body), body.getLong(), body.getLong(),
+                    body.hasRemaining() ? getString(body) : null);
+            case TYPE_STATUS -> {
+                String id = getString(body);
+                JobStatus status = JobStatus.values()[body.get()];
+                long completedAt = body.getLong();
+                yield new StatusChange(id, status, getString(body), completedAt);
+            }
+            case TYPE_REMOVED -> new Removed(getString(body));
+            default -> throw new IllegalStateException("Unknown journal record type " + type);
+        };
+    }
+
+    private void putByte(byte value) {
+        ensureScratch(1);
+        scratch.put(value);
+    }
+
+    private void putLong(long value) {
+        ensureScratch(8);
+        scratch.putLong(value);
+    }
+
+    private void putString(String value) {
+        if (value == null) {
+            ensureScratch(4);
+            scratch.putInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        ensureScratch(4 + bytes.length);
+        scratch.putInt(bytes.length);
+        scratch.put(bytes);
+    }
+
+    private void ensureScratch(int bytes) {
+        if (scratch.remaining() < bytes) {
+            ByteBuffer larger = ByteBuffer.allocate(Math.max(scratch.capacity() * 2,
+                    scratch.position() + bytes));
+            scratch.flip();
+            larger.put(scratch);
+            scratch = larger;
+        }
+    }
+
+    private static String getString(ByteBuffer body) {
+        int length = body.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        body.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // --- Events ---
+
+    private sealed interface Event permits Entry, StatusChange, Removed, Compact, Stop {
+    }
+
+    /**
+     * A submitted job together with its latest known state.
+     */
+    private static final class Entry implements Event {
+        private final String id;
+        private final String originalFileName;
+        private final String sourceMimeType;
+        private final String targetFormat;
+        private final String converterName;
+        private final String inputPath;
+        private final long inputSize;
+        private final String outputPath;
+        private final long createdAt;
+        private final long expiresAt;
+        private final String inputHash;
+        private JobStatus status = JobStatus.QUEUED;
+        private String errorMessage;
+        private long completedAt;
+
+        Entry(String id, String originalFileName, String sourceMimeType, String targetFormat,
+                String converterName, String inputPath, long inputSize, String outputPath,
+                long createdAt, long expiresAt, String inputHash) {
+            this.id = id;
+            this.originalFileName = originalFileName;
+            this.sourceMimeType = sourceMimeType;
+            this.targetFormat = targetFormat;
+            this.converterName = converterName;
+            this.inputPath = inputPath;
+            this.inputSize = inputSize;
+            this.outputPath = outputPath;
+            this.createdAt = createdAt;
+            this.expiresAt = expiresAt;
+            this.inputHash = inputHash;
+        }
+    }
+
+    private record StatusChange(String id, JobStatus status, String errorMessage, long completedAt)
+            implements Event {
+    }
+
+    private record Removed(String id) implements Event {
+    }
+
+    private record Compact() implements Event {
+    }
+
+    private record Stop() implements Event {
+    }
+}
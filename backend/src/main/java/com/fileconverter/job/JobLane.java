@@ -0,0 +1,307 @@
+package com.fileconverter.job;
+
+import com.fileconverter.config.AppConfig;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+
+/**
+ * Bounded pending queue for one converter, ordered by a {@link JobOrderingPolicy}.
+ * Jobs with equal priority keep submission order.
+ * <p>
+ * The lane also keeps the estimated cost and input bytes of its waiting
+ * jobs, and how fast workers take them: a moving average of cost and bytes
+ * taken per second, counted from when each job became available so idle
+ * time does not dilute it. Until there is a measurement, the pool is
+ * assumed to work through one estimated second per worker per second.
+ */
+class JobLane {
+
+    private static final double NANOS_PER_SECOND = 1e9;
+    private static final double BYTES_PER_MB = 1024.0 * 1024.0;
+    // Time constant of the drain rate average
+    private static final double RATE_TAU_NANOS = 30 * NANOS_PER_SECOND;
+    // Jobs taken closer together than this are averaged as one sample
+    private static final long MIN_SAMPLE_NANOS = 100_000_000L;
+
+    private final int capacity;
+    private final double maxPendingCost;
+    private final JobOrderingPolicy policy;
+    private final JobCostEstimator costEstimator;
+    private final PriorityQueue<Entry> entries;
+    private final ReentrantLock lock;
+    private final Condition notEmpty;
+    private long sequence;
+
+    // Guarded by lock
+    private double pendingCost;
+    private long pendingBytes;
+    private double costRate;
+    private double byteRate;
+    private boolean sampling;
+    private long sampleStartNanos;
+    private double sampleCost;
+    private long sampleBytes;
+    private long lastSampleNanos;
+
+    JobLane(AppConfig.Worker.Pool settings, JobOrderingPolicy policy, JobCostEstimator costEstimator) {
+        this.capacity = settings.getQueueCapacity();
+        this.maxPendingCost = settings.getMaxPendingCostSeconds();
+        this.policy = policy;
+        this.costEstimator = costEstimator;
+        this.entries = new PriorityQueue<>();
+        this.lock = new ReentrantLock();
+        this.notEmpty = lock.newCondition();
+        this.costRate = settings.getPoolSize();
+        this.byteRate = settings.getCostSecondsPerMb() > 0
+                ? settings.getPoolSize() * BYTES_PER_MB / settings.getCostSecondsPerMb()
+                : 0;
+    }
+
+    boolean offer(Job job) {
+        return offer(job, false);
+    }
+
+    /**
+     * @param withinBudget Also refuse the job if it would take the lane's
+     *                     pending cost past max-pending-cost-seconds. An
+     *                     empty lane takes any job, however expensive.
+     */
+    boolean offer(Job job, boolean withinBudget) {
+        long priority = policy.priority(job);
+        double cost = costEstimator.estimateSeconds(job);
+        lock.lock();
+        try {
+            if (entries.size() >= capacity) {
+                return false;
+            }
+            if (withinBudget && maxPendingCost > 0 && !entries.isEmpty()
+                    && pendingCost + cost > maxPendingCost) {
+                return false;
+            }
+            entries.add(new Entry(job, priority, sequence++, cost, System.nanoTime()));
+            pendingCost += cost;
+            pendingBytes += job.getInputSize();
+            notEmpty.signal();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    Job poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while (entries.isEmpty()) {
+                if (nanos <= 0) {
+                    return null;
+                }
+                nanos = notEmpty.awaitNanos(nanos);
+            }
+            Entry entry = entries.poll();
+            taken(entry, System.nanoTime());
+            return entry.job();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Remove and return the highest-priority job matching the predicate.
+     */
+    Job removeFirst(Predicate<Job> filter) {
+        lock.lock();
+        try {
+            Entry best = null;
+            for (Entry entry : entries) {
+                if (filter.test(entry.job()) && (best == null || entry.compareTo(best) < 0)) {
+                    best = entry;
+                }
+            }
+            if (best == null) {
+                return null;
+            }
+            entries.remove(best);
+            taken(best, System.nanoTime());
+            return best.job();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Remove up to max jobs matching the predicate, highest priority first.
+     */
+    List<Job> drain(Predicate<Job> filter, int max) {
+        lock.lock();
+        try {
+            List<Entry> matches = new ArrayList<>();
+            for (Entry entry : entries) {
+                if (filter.test(entry.job())) {
+                    matches.add(entry);
+                }
+            }
+            matches.sort(null);
+            List<Job> drained = new ArrayList<>(Math.min(max, matches.size()));
+            long now = System.nanoTime();
+            for (Entry entry : matches.subList(0, Math.min(max, matches.size()))) {
+                entries.remove(entry);
+                taken(entry, now);
+                drained.add(entry.job());
+            }
+            return drained;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    boolean remove(Job job) {
+        lock.lock();
+        try {
+            Iterator<Entry> it = entries.iterator();
+            while (it.hasNext()) {
+                Entry entry = it.next();
+                if (entry.job() == job) {
+                    it.remove();
+                    dequeued(entry);
+                    return true;
+                }
+            }
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int size() {
+        lock.lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int capacity() {
+        return capacity;
+    }
+
+    /**
+     * @return Estimated seconds of conversion waiting in the lane
+     */
+    double pendingCost() {
+        lock.lock();
+        try {
+            return pendingCost;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    long pendingBytes() {
+        lock.lock();
+        try {
+            return pendingBytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return Input bytes taken by workers per second
+     */
+    double byteRate() {
+        lock.lock();
+        try {
+            return byteRate;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Seconds until the lane is likely to take a job of the given cost, at
+     * the current drain rate: until one job has left if it is full, and
+     * until enough cost has left to fit the job within its budget.
+     */
+    double secondsUntilRoom(double cost) {
+        lock.lock();
+        try {
+            double excess = 0;
+            if (entries.size() >= capacity && !entries.isEmpty()) {
+                excess = pendingCost / entries.size();
+            }
+            if (maxPendingCost > 0) {
+                excess = Math.max(excess, pendingCost + cost - maxPendingCost);
+            }
+            return excess / costRate;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Seconds the lane's workers take to get through the given cost.
+     */
+    double secondsToDrain(double cost) {
+        lock.lock();
+        try {
+            return cost / costRate;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void dequeued(Entry entry) {
+        pendingCost -= entry.cost();
+        pendingBytes -= entry.job().getInputSize();
+        if (entries.isEmpty()) {
+            // Clear rounding drift
+            pendingCost = 0;
+        }
+    }
+
+    /**
+     * Account for a job a worker took and update the drain rate. A sample
+     * that is still too short when the lane runs empty says nothing about
+     * throughput and is dropped.
+     */
+    private void taken(Entry entry, long now) {
+        dequeued(entry);
+        if (!sampling) {
+            sampling = true;
+            sampleStartNanos = Math.max(lastSampleNanos, entry.queuedNanos());
+        }
+        sampleCost += entry.cost();
+        sampleBytes += entry.job().getInputSize();
+
+        long elapsed = now - sampleStartNanos;
+        if (elapsed >= MIN_SAMPLE_NANOS) {
+            double weight = 1 - Math.exp(-elapsed / RATE_TAU_NANOS);
+            costRate += weight * (sampleCost * NANOS_PER_SECOND / elapsed - costRate);
+            byteRate += weight * (sampleBytes * NANOS_PER_SECOND / elapsed - byteRate);
+            lastSampleNanos = now;
+        } else if (!entries.isEmpty()) {
+            return;
+        }
+        sampling = false;
+        sampleCost = 0;
+        sampleBytes = 0;
+    }
+
+    private record Entry(Job job, long priority, long sequence, double cost, long queuedNanos)
+            implements Comparable<Entry> {
+        @Override
+        public int compareTo(Entry other) {
+            int byPriority = Long.compare(priority, other.priority);
+            return byPriority != 0 ? byPriority : Long.compare(sequence, other.sequence);
+        }
+    }
+}
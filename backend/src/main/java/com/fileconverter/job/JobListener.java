@@ -0,0 +1,23 @@
+package com.fileconverter.job;
+
+/**
+ * Observer of job lifecycle events, registered with {@link JobQueue#addListener}.
+ * Callbacks run on the thread causing the change and must not block.
+ */
+public interface JobListener {
+
+    default void onSubmitted(Job job) {
+    }
+
+    default void onStatusChanged(Job job, JobStatus status) {
+    }
+
+    /**
+     * Progress, speed or ETA moved; may fire many times per second.
+     */
+    default void onProgress(Job job) {
+    }
+
+    default void onRemoved(Job job) {
+    }
+}
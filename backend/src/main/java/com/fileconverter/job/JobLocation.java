@@ -0,0 +1,28 @@
+package com.fileconverter.job;
+
+import java.net.URI;
+
+/**
+ * Where a job held by another node is, as seen through the {@link JobStore}.
+ */
+public sealed interface JobLocation {
+
+    /**
+     * Held by a node that is up; requests for the job are passed on to it.
+     */
+    record OnNode(String nodeId, URI url) implements JobLocation {
+    }
+
+    /**
+     * Held by a node that stopped sending heartbeats. Another node takes the
+     * job over once its lease has expired.
+     */
+    record Unavailable(String nodeId) implements JobLocation {
+    }
+
+    /**
+     * Queued with no node holding it, until one claims it.
+     */
+    record Waiting(Job job) implements JobLocation {
+    }
+}
@@ -0,0 +1,14 @@
+package com.fileconverter.job;
+
+/**
+ * Decides the order in which queued jobs of one converter are started.
+ */
+public interface JobOrderingPolicy {
+
+    /**
+     * Computed once when the job is queued.
+     *
+     * @return Sort key for the job; lower values run first
+     */
+    long priority(Job job);
+}
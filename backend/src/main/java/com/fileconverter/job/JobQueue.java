@@ -1,46 +1,301 @@
 package com.fileconverter.job;
 
 import com.fileconverter.config.AppConfig;
+import com.fileconverter.converter.Converter;
+import com.fileconverter.converter.ConverterRegistry;
+import com.fileconverter.diagnostics.JobPhase;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
-import java.util.concurrent.BlockingQueue;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
 
+/**
+ * Holds every known job plus one pending queue ("lane") per converter, so a
+ * backlog for one tool never delays jobs bound for another. Within a lane,
+ * jobs start in the order chosen by the configured {@link JobOrderingPolicy}.
+ * <p>
+ * New jobs are admitted by estimated cost rather than count alone: each
+ * lane has a budget of pending conversion seconds, the input waiting across
+ * all lanes is capped, and nothing is admitted while free memory is low. A
+ * rejection says when to retry, from the rate at which workers are taking
+ * jobs.
+ * <p>
+ * Every job is also recorded in the {@link JobStore}. When nodes share a
+ * store, a job in this node's lane may be claimed and run by another node;
+ * the worker that later takes it here finds it claimed and drops it.
+ */
 @Component
 public class JobQueue {
 
     private static final Logger log = LoggerFactory.getLogger(JobQueue.class);
 
-    private final BlockingQueue<Job> pendingJobs;
+    private static final long MEMORY_CHECK_INTERVAL_NANOS = 1_000_000_000L;
+
+    private final Map<String, JobLane> lanes;
     private final ConcurrentHashMap<String, Job> allJobs;
+    private final List<JobListener> listeners;
+    private final JobListener dispatcher;
     private final int capacity;
+    private final JobCostEstimator costEstimator;
+    private final SystemResources systemResources;
+    private final JobStore store;
+    private final MeterRegistry meterRegistry;
+    private final long maxPendingBytes;
+    private final double minFreeMemoryRatio;
+    private final int maxRetryAfterSeconds;
+    private volatile double freeMemoryRatio;
+    private volatile long memoryCheckedNanos;
+
+    public JobQueue(AppConfig config, ConverterRegistry converterRegistry, JobOrderingPolicy orderingPolicy,
+            JobCostEstimator costEstimator, SystemResources systemResources, JobStore store,
+            MeterRegistry meterRegistry) {
+        Map<String, JobLane> lanes = new LinkedHashMap<>();
+        int capacity = 0;
+        for (Converter converter : converterRegistry.getConverters()) {
+            AppConfig.Worker.Pool pool = config.getWorker().getPool(converter.getName());
+            JobLane lane = new JobLane(pool, orderingPolicy, costEstimator);
+            lanes.put(converter.getName(), lane);
+            capacity += pool.getQueueCapacity();
 
-    public JobQueue(AppConfig config) {
-        this.capacity = config.getWorker().getQueueCapacity();
-        this.pendingJobs = new LinkedBlockingQueue<>(capacity);
+            Gauge.builder("fileconverter.queue.depth", lane, JobLane::size)
+                    .description("Jobs waiting in a converter's lane")
+                    .tag("converter", converter.getName())
+                    .register(meterRegistry);
+            Gauge.builder("fileconverter.queue.cost", lane, JobLane::pendingCost)
+                    .description("Estimated conversion seconds waiting in a converter's lane")
+                    .tag("converter", converter.getName())
+                    .baseUnit("seconds")
+                    .register(meterRegistry);
+        }
+        this.lanes = Collections.unmodifiableMap(lanes);
+        this.capacity = capacity;
+        this.costEstimator = costEstimator;
+        this.systemResources = systemResources;
+        this.store = store;
+        this.meterRegistry = meterRegistry;
+        AppConfig.Worker.Admission admission = config.getWorker().getAdmission();
+        this.maxPendingBytes = admission.getMaxPendingMb() * 1024 * 1024;
+        this.minFreeMemoryRatio = admission.getMinFreeMemoryRatio();
+        this.maxRetryAfterSeconds = admission.getMaxRetryAfterSeconds();
+        this.freeMemoryRatio = 1.0;
+        this.memoryCheckedNanos = System.nanoTime() - MEMORY_CHECK_INTERVAL_NANOS;
         this.allJobs = new ConcurrentHashMap<>();
+        this.listeners = new CopyOnWriteArrayList<>();
+        this.dispatcher = new JobListener() {
+            @Override
+            public void onStatusChanged(Job job, JobStatus status) {
+                if (status == JobStatus.COMPLETED || status == JobStatus.FAILED) {
+                    store.finish(job);
+                }
+                listeners.forEach(l -> l.onStatusChanged(job, status));
+            }
+
+            @Override
+            public void onProgress(Job job) {
+                listeners.forEach(l -> l.onProgress(job));
+            }
+        };
+        log.info("Job ordering policy: {}", orderingPolicy.getClass().getSimpleName());
+    }
+
+    /**
+     * Queue a new job if there is room for it.
+     *
+     * @throws JobRejectedException if its lane is full or over its cost
+     *                              budget, too much input is waiting, or
+     *                              free memory is low
+     */
+    public void submit(Job job) {
+        JobLane lane = lanes.get(job.getConverterName());
+        if (lane == null) {
+            throw new IllegalStateException("No queue for converter " + job.getConverterName());
+        }
+        // Announced before it is visible to workers, so listeners see the
+        // submission ahead of any status change
+        job.setListener(dispatcher);
+        allJobs.put(job.getId(), job);
+        listeners.forEach(l -> l.onSubmitted(job));
+        job.beginPhase(JobPhase.QUEUE_WAIT);
+
+        double cost = costEstimator.estimateSeconds(job);
+        long pendingBytes = getPendingBytes();
+        if (maxPendingBytes > 0 && pendingBytes > 0 && pendingBytes + job.getInputSize() > maxPendingBytes) {
+            double byteRate = lanes.values().stream().mapToDouble(JobLane::byteRate).sum();
+            throw reject(job, "disk", "Too much input is waiting to be converted.",
+                    (pendingBytes + job.getInputSize() - maxPendingBytes) / byteRate);
+        }
+        if (minFreeMemoryRatio > 0 && freeMemoryRatio() < minFreeMemoryRatio) {
+            // Memory comes back as running conversions finish
+            throw reject(job, "memory", "The server is low on memory.",
+                    lane.secondsToDrain(lane.size() > 0 ? lane.pendingCost() / lane.size() : cost));
+        }
+        // Published only once admitted, so no other node claims a job that is
+        // then turned away. A worker here that takes it in between waits in
+        // claim() until the record exists.
+        synchronized (job) {
+            if (!lane.offer(job, true)) {
+                throw reject(job, "queue", "Job queue is full.", lane.secondsUntilRoom(cost));
+            }
+            store.publish(job);
+        }
+        log.info("Job {} queued for {}. Queue size: {}",
+                job.getId(), job.getConverterName(), lane.size());
+    }
+
+    /**
+     * Remove a job that was not admitted and describe the rejection. A
+     * coalescing leader's removal promotes any follower that attached to it.
+     */
+    private JobRejectedException reject(Job job, String reason, String message, double retrySeconds) {
+        removeJob(job.getId());
+        long seconds = Double.isNaN(retrySeconds) ? maxRetryAfterSeconds : (long) Math.ceil(retrySeconds);
+        Duration retryAfter = Duration.ofSeconds(Math.max(1, Math.min(seconds, maxRetryAfterSeconds)));
+        Counter.builder("fileconverter.queue.rejected")
+                .description("Jobs turned away by admission control")
+                .tag("converter", job.getConverterName())
+                .tag("reason", reason)
+                .register(meterRegistry)
+                .increment();
+        log.warn("Rejected job {} for {} ({}), retry after {}s",
+                job.getId(), job.getConverterName(), reason, retryAfter.toSeconds());
+        return new JobRejectedException(message + " Please try again later.", retryAfter);
+    }
+
+    private double freeMemoryRatio() {
+        long now = System.nanoTime();
+        if (now - memoryCheckedNanos >= MEMORY_CHECK_INTERVAL_NANOS) {
+            freeMemoryRatio = systemResources.getFreeMemoryRatio();
+            memoryCheckedNanos = now;
+        }
+        return freeMemoryRatio;
+    }
+
+    /**
+     * Register a job that shares another job's execution. It is visible to
+     * lookups and listeners but never handed to a worker unless it is later
+     * {@link #enqueue enqueued}.
+     */
+    void track(Job job) {
+        register(job);
+        log.info("Job {} attached to an identical conversion", job.getId());
+    }
+
+    /**
+     * Make a job visible to lookups and listeners without queueing it, e.g.
+     * one that a worker runs directly.
+     */
+    void register(Job job) {
+        job.setListener(dispatcher);
+        allJobs.put(job.getId(), job);
+        store.own(job);
+        listeners.forEach(l -> l.onSubmitted(job));
     }
 
-    public boolean submit(Job job) {
-        if (pendingJobs.offer(job)) {
-            allJobs.put(job.getId(), job);
-            log.info("Job {} queued. Queue size: {}", job.getId(), pendingJobs.size());
-            return true;
+    /**
+     * Put an already registered job into its converter's lane.
+     */
+    boolean enqueue(Job job) {
+        JobLane lane = lanes.get(job.getConverterName());
+        if (lane == null || !allJobs.containsKey(job.getId())) {
+            return false;
         }
-        log.warn("Queue full. Rejected job {}", job.getId());
-        return false;
+        job.beginPhase(JobPhase.QUEUE_WAIT);
+        synchronized (job) {
+            if (!lane.offer(job)) {
+                return false;
+            }
+            store.publish(job);
+        }
+        return true;
+    }
+
+    /**
+     * Take the right to run a job a worker took from a lane.
+     *
+     * @return false if another node claimed it first
+     */
+    boolean claim(Job job) {
+        synchronized (job) {
+            return store.claim(job);
+        }
+    }
+
+    /**
+     * Re-register a job recovered after a restart without announcing it as a
+     * new submission. Queued jobs go back into their lane. Jobs another node
+     * took over while this one was down are left to it.
+     */
+    public boolean restore(Job job) {
+        if (!store.reclaim(job)) {
+            log.info("Restored job {} was taken over by another node", job.getId());
+            return false;
+        }
+        job.setListener(dispatcher);
+        if (job.getStatus() == JobStatus.QUEUED) {
+            JobLane lane = lanes.get(job.getConverterName());
+            job.beginPhase(JobPhase.QUEUE_WAIT);
+            if (lane == null || !lane.offer(job)) {
+                log.warn("Could not re-queue restored job {}", job.getId());
+                return false;
+            }
+        }
+        allJobs.put(job.getId(), job);
+        return true;
+    }
+
+    public void addListener(JobListener listener) {
+        listeners.add(listener);
     }
 
-    public Job take() throws InterruptedException {
-        return pendingJobs.take();
+    /**
+     * Wait up to the given time for the next job in a converter's own lane.
+     */
+    public Job poll(String converterName, long timeout, TimeUnit unit) throws InterruptedException {
+        return lanes.get(converterName).poll(timeout, unit);
     }
 
-    public Optional<Job> poll() {
-        return Optional.ofNullable(pendingJobs.poll());
+    /**
+     * Take a job from another converter's lane that the caller is able to run,
+     * preferring the longest backlog.
+     */
+    public Optional<Job> steal(String converterName, Predicate<Job> canRun) {
+        List<JobLane> victims = lanes.entrySet().stream()
+                .filter(e -> !e.getKey().equals(converterName))
+                .map(Map.Entry::getValue)
+                .filter(lane -> lane.size() > 0)
+                .sorted(Comparator.comparingInt(JobLane::size).reversed())
+                .toList();
+
+        for (JobLane lane : victims) {
+            Job job = lane.removeFirst(canRun);
+            if (job != null) {
+                return Optional.of(job);
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Take up to max queued jobs from a converter's own lane that match the
+     * predicate, in the order they would otherwise start.
+     */
+    public List<Job> drain(String converterName, Predicate<Job> filter, int max) {
+        return max > 0 ? lanes.get(converterName).drain(filter, max) : List.of();
     }
 
     public Optional<Job> getJob(String jobId) {
@@ -50,13 +305,34 @@ public class JobQueue {
     public void removeJob(String jobId) {
         Job job = allJobs.remove(jobId);
         if (job != null) {
-            pendingJobs.remove(job);
+            JobLane lane = lanes.get(job.getConverterName());
+            if (lane != null) {
+                lane.remove(job);
+            }
+            store.remove(job);
+            listeners.forEach(l -> l.onRemoved(job));
             log.debug("Removed job {}", jobId);
         }
     }
 
+    public Set<String> getConverterNames() {
+        return lanes.keySet();
+    }
+
     public int getPendingCount() {
-        return pendingJobs.size();
+        return lanes.values().stream().mapToInt(JobLane::size).sum();
+    }
+
+    public int getPendingCount(String converterName) {
+        JobLane lane = lanes.get(converterName);
+        return lane != null ? lane.size() : 0;
+    }
+
+    /**
+     * @return Input bytes of the jobs waiting in all lanes
+     */
+    public long getPendingBytes() {
+        return lanes.values().stream().mapToLong(JobLane::pendingBytes).sum();
     }
 
     public int getTotalCount() {
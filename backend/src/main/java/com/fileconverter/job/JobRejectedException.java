@@ -0,0 +1,21 @@
+package com.fileconverter.job;
+
+import java.time.Duration;
+
+/**
+ * A job the queue refused to admit, with how long the client should wait
+ * before trying again.
+ */
+public class JobRejectedException extends RuntimeException {
+
+    private final Duration retryAfter;
+
+    public JobRejectedException(String message, Duration retryAfter) {
+        super(message);
+        this.retryAfter = retryAfter;
+    }
+
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+}
@@ -1,15 +1,22 @@
 package com.fileconverter.job;
 
 import com.fileconverter.config.AppConfig;
+import com.fileconverter.converter.Converter;
+import com.fileconverter.converter.ConverterRegistry;
+import com.fileconverter.dto.JobPhaseResponse;
 import com.fileconverter.dto.JobStatusResponse;
+import com.fileconverter.storage.ConversionCache;
 import com.fileconverter.storage.TempStorageService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Mono;
 
+import java.io.IOException;
 import java.nio.file.Path;
 import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 
 @Service
@@ -18,18 +25,36 @@ public class JobService {
     private static final Logger log = LoggerFactory.getLogger(JobService.class);
 
     private final JobQueue jobQueue;
+    private final JobStore jobStore;
+    private final JobCoalescer coalescer;
+    private final WorkerPool workerPool;
     private final TempStorageService storageService;
+    private final ConversionCache conversionCache;
+    private final ConverterRegistry converterRegistry;
     private final int ttlMinutes;
+    private final boolean pipe;
 
-    public JobService(JobQueue jobQueue, TempStorageService storageService, AppConfig config) {
+    public JobService(JobQueue jobQueue, JobStore jobStore, JobCoalescer coalescer, WorkerPool workerPool,
+            TempStorageService storageService, ConversionCache conversionCache, ConverterRegistry converterRegistry,
+            AppConfig config) {
         this.jobQueue = jobQueue;
+        this.jobStore = jobStore;
+        this.coalescer = coalescer;
+        this.workerPool = workerPool;
         this.storageService = storageService;
+        this.conversionCache = conversionCache;
+        this.converterRegistry = converterRegistry;
         this.ttlMinutes = config.getStorage().getTtlMinutes();
+        this.pipe = config.getWorker().isPipe();
     }
 
     public Mono<Job> createJob(String originalFileName, String sourceMimeType,
-            String targetFormat, Path inputPath) {
+            String targetFormat, Path inputPath, long inputSize, String inputHash) {
         return Mono.fromCallable(() -> {
+            Converter converter = converterRegistry.findConverter(sourceMimeType, targetFormat)
+                    .orElseThrow(() -> new IllegalArgumentException(
+                            "Conversion from " + sourceMimeType + " to " + targetFormat + " not supported"));
+
             String jobId = UUID.randomUUID().toString();
             Instant now = Instant.now();
             Instant expiresAt = now.plusSeconds(ttlMinutes * 60L);
@@ -39,39 +64,152 @@ public class JobService {
 
             Job job = new Job(
                     jobId, originalFileName, sourceMimeType,
-                    targetFormat, inputPath, outputPath,
-                    now, expiresAt);
-
-            if (!jobQueue.submit(job)) {
-                throw new IllegalStateException("Job queue is full. Please try again later.");
+                    targetFormat, converter.getName(), inputPath, inputSize, inputHash,
+                    outputPath, now, expiresAt);
+
+            // A result converted before completes at once, without taking a
+            // queue slot or a worker
+            String cacheKey = conversionCache.key(job, converter);
+            if (cacheKey != null && conversionCache.restore(cacheKey, outputPath)) {
+                jobQueue.register(job);
+                job.complete();
+                log.info("Job {} completed from cached result", jobId);
+                return job;
             }
 
+            coalescer.submit(job);
             return job;
         });
     }
 
-    public Mono<JobStatusResponse> getJobStatus(String jobId) {
+    /**
+     * Start converting an upload that is still arriving, if its converter can
+     * read it from a pipe and has a free slot; the job then skips the queue.
+     * Its size and hash are not known yet, so it is neither cached nor
+     * coalesced.
+     *
+     * @param inputPath Where the upload is being written
+     * @return empty if the upload should be converted the usual way once complete
+     */
+    public Optional<PipedConversion> startPiped(String originalFileName, String sourceMimeType,
+            String targetFormat, Path inputPath) {
+        if (!pipe) {
+            return Optional.empty();
+        }
+        Converter converter = converterRegistry.findConverter(sourceMimeType, targetFormat)
+                .filter(c -> c.supportsPipe(sourceMimeType, targetFormat))
+                .orElse(null);
+        if (converter == null) {
+            return Optional.empty();
+        }
+
+        String jobId = UUID.randomUUID().toString();
+        Instant now = Instant.now();
+        try {
+            Path outputPath = storageService.createOutputPath(jobId,
+                    generateOutputFileName(originalFileName, targetFormat));
+            Job job = new Job(
+                    jobId, originalFileName, sourceMimeType,
+                    targetFormat, converter.getName(), inputPath, 0, null,
+                    outputPath, now, now.plusSeconds(ttlMinutes * 60L));
+
+            Optional<PipedConversion> conversion = workerPool.startPiped(job, converter);
+            if (conversion.isEmpty()) {
+                storageService.deleteJob(jobId).subscribe();
+            }
+            return conversion;
+        } catch (IOException e) {
+            log.warn("Could not start piped job: {}", e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Stop a piped conversion whose upload failed and discard its job.
+     */
+    public Mono<Void> abortPiped(PipedConversion conversion) {
+        conversion.abort();
+        jobQueue.removeJob(conversion.getJob().getId());
+        return storageService.deleteJob(conversion.getJob().getId());
+    }
+
+    /**
+     * @return The job if its output is still being written and can be read as it grows
+     */
+    public Optional<Job> getStreamingJob(String jobId) {
+        return jobQueue.getJob(jobId)
+                .filter(job -> job.isPiped() && job.getStatus() == JobStatus.PROCESSING);
+    }
+
+    /**
+     * Cancel a job that no node has claimed yet.
+     */
+    public void removeWaiting(String jobId) {
+        jobStore.removeWaiting(jobId);
+        log.info("Removed waiting job {}", jobId);
+    }
+
+    /**
+     * Find a job that is not on this node.
+     *
+     * @return Where the job is, or empty if this node holds it or no node does
+     */
+    public Optional<JobLocation> locate(String jobId) {
+        Job job = jobQueue.getJob(jobId).orElse(null);
+        if (job != null) {
+            if (job.getStatus() != JobStatus.QUEUED || jobStore.holds(job)) {
+                return Optional.empty();
+            }
+            // Claimed by another node before a worker here reached it
+            jobQueue.removeJob(jobId);
+        }
+        return jobStore.locate(jobId);
+    }
+
+    /**
+     * @param verbose Include the timeline of finished phases
+     */
+    public Mono<JobStatusResponse> getJobStatus(String jobId, boolean verbose) {
         return Mono.fromCallable(() -> {
             Job job = jobQueue.getJob(jobId)
                     .orElseThrow(() -> new IllegalArgumentException("Job not found: " + jobId));
+            return toResponse(job, verbose);
+        });
+    }
 
-            String downloadUrl = null;
-            if (job.getStatus() == JobStatus.COMPLETED) {
-                downloadUrl = "/api/jobs/" + jobId + "/download";
-            }
+    public JobStatusResponse toResponse(Job job) {
+        return toResponse(job, false);
+    }
 
-            return new JobStatusResponse(
-                    job.getId(),
-                    job.getStatus().name(),
-                    job.getOriginalFileName(),
-                    job.getSourceMimeType(),
-                    job.getTargetFormat(),
-                    job.getProgress(),
-                    job.getErrorMessage(),
-                    job.getCreatedAt(),
-                    job.getCompletedAt(),
-                    downloadUrl);
-        });
+    private JobStatusResponse toResponse(Job job, boolean verbose) {
+        String downloadUrl = null;
+        // A piped job's output can be read while it is written
+        if (job.getStatus() == JobStatus.COMPLETED
+                || job.isPiped() && job.getStatus() == JobStatus.PROCESSING) {
+            downloadUrl = "/api/jobs/" + job.getId() + "/download";
+        }
+
+        return new JobStatusResponse(
+                job.getId(),
+                job.getStatus().name(),
+                job.getOriginalFileName(),
+                job.getSourceMimeType(),
+                job.getTargetFormat(),
+                job.getProgress(),
+                job.getSpeed() >= 0 ? job.getSpeed() : null,
+                job.getEtaSeconds() >= 0 ? job.getEtaSeconds() : null,
+                job.getErrorMessage(),
+                job.getCreatedAt(),
+                job.getCompletedAt(),
+                downloadUrl,
+                verbose ? timeline(job) : null);
+    }
+
+    private static List<JobPhaseResponse> timeline(Job job) {
+        return job.getTimeline().stream()
+                .map(t -> new JobPhaseResponse(t.phase().name(), t.startedAt(),
+                        t.duration().toNanos() / 1_000_000.0))
+                .toList();
     }
 
     public Mono<Path> getOutputPath(String jobId) {
@@ -0,0 +1,84 @@
+package com.fileconverter.job;
+
+import java.util.Optional;
+import java.util.function.Predicate;
+
+/**
+ * Where jobs are recorded beyond this node's {@link JobQueue}, and how nodes
+ * share queued work. The queue keeps the lanes this node's workers take jobs
+ * from; the store decides which node runs each job, and tells a node where
+ * to find a job it does not hold.
+ * <p>
+ * Selected with app.cluster.store. {@link LocalJobStore} runs a single node.
+ * {@link SharedFileJobStore} lets several nodes claim each other's work.
+ */
+public interface JobStore {
+
+    String getNodeId();
+
+    /**
+     * A job was admitted to this node's lane. Other nodes may claim it from
+     * here on.
+     */
+    void publish(Job job);
+
+    /**
+     * This node holds a job that never waits in a lane, e.g. a piped job.
+     */
+    void own(Job job);
+
+    /**
+     * This node finished a job. It stays with this node, which serves its
+     * result, and is not handed to another node when this one stops.
+     */
+    void finish(Job job);
+
+    /**
+     * Take the right to run a job from this node's lane. Called by the worker
+     * that took the job, before running it.
+     *
+     * @return false if another node claimed it first; this node then drops it
+     */
+    boolean claim(Job job);
+
+    /**
+     * Claim a job queued on another node, or left behind by one that stopped.
+     * The job is rebuilt with its output on this node.
+     *
+     * @param converterName The lane the caller works for
+     * @param canRun        Whether the caller can run a job from another lane
+     */
+    Optional<Job> claimQueued(String converterName, Predicate<Job> canRun);
+
+    /**
+     * Whether a job replayed after a restart still belongs to this node.
+     */
+    boolean reclaim(Job job);
+
+    /**
+     * Whether a job is still this node's, rather than claimed by another node
+     * or taken over while this one did not renew its lease. Checked again
+     * before a finished conversion is reported.
+     */
+    boolean holds(Job job);
+
+    /**
+     * This node is done with the job, e.g. it expired.
+     */
+    void remove(Job job);
+
+    /**
+     * Drop a job no node holds, e.g. one cancelled while it was waiting.
+     */
+    void removeWaiting(String jobId);
+
+    /**
+     * Whether another node of the cluster is up, as of its last heartbeat.
+     */
+    boolean isLiveNode(String nodeId);
+
+    /**
+     * @return Where a job this node does not hold is, or empty if no node has it
+     */
+    Optional<JobLocation> locate(String jobId);
+}
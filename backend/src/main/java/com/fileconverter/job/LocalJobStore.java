@@ -0,0 +1,78 @@
+package com.fileconverter.job;
+
+import com.fileconverter.config.AppConfig;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.Optional;
+import java.util.function.Predicate;
+
+/**
+ * A single node: every job in the queue is this node's to run, and there is
+ * nowhere else to look for one.
+ */
+@Component
+@ConditionalOnProperty(name = "app.cluster.store", havingValue = "local", matchIfMissing = true)
+public class LocalJobStore implements JobStore {
+
+    private final String nodeId;
+
+    public LocalJobStore(AppConfig config) {
+        this.nodeId = config.getCluster().getNodeId();
+    }
+
+    @Override
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    @Override
+    public void publish(Job job) {
+    }
+
+    @Override
+    public void own(Job job) {
+    }
+
+    @Override
+    public void finish(Job job) {
+    }
+
+    @Override
+    public boolean claim(Job job) {
+        return true;
+    }
+
+    @Override
+    public Optional<Job> claimQueued(String converterName, Predicate<Job> canRun) {
+        return Optional.empty();
+    }
+
+    @Override
+    public boolean reclaim(Job job) {
+        return true;
+    }
+
+    @Override
+    public boolean holds(Job job) {
+        return true;
+    }
+
+    @Override
+    public void remove(Job job) {
+    }
+
+    @Override
+    public void removeWaiting(String jobId) {
+    }
+
+    @Override
+    public boolean isLiveNode(String nodeId) {
+        return false;
+    }
+
+    @Override
+    public Optional<JobLocation> locate(String jobId) {
+        return Optional.empty();
+    }
+}
@@ -0,0 +1,89 @@
+package com.fileconverter.job;
+
+import com.fileconverter.converter.PipedProcess;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.buffer.DataBuffer;
+
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A job converting an upload that is still arriving. The uploader writes
+ * each piece of the input as it comes in, then calls {@link #finish} once
+ * the upload is complete and valid, or {@link #abort} if it is not.
+ */
+public class PipedConversion {
+
+    private static final Logger log = LoggerFactory.getLogger(PipedConversion.class);
+
+    private final Job job;
+    private final PipedProcess process;
+    private final Runnable onEnd;
+    private final AtomicBoolean ended;
+
+    PipedConversion(Job job, PipedProcess process, Runnable onEnd) {
+        this.job = job;
+        this.process = process;
+        this.onEnd = onEnd;
+        this.ended = new AtomicBoolean();
+    }
+
+    public Job getJob() {
+        return job;
+    }
+
+    /**
+     * Hand input bytes to the process, blocking while it catches up. The
+     * buffer itself is left as it was.
+     */
+    public void write(DataBuffer buffer) {
+        try (DataBuffer.ByteBufferIterator it = buffer.readableByteBuffers()) {
+            while (it.hasNext()) {
+                if (!process.write(it.next())) {
+                    // The exit code reports why once the upload is done
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * End of input; the job completes or fails when the process exits.
+     */
+    public void finish() {
+        if (ended.get()) {
+            return;
+        }
+        process.finish().whenComplete((exitCode, error) -> {
+            if (!ended.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                if (error != null) {
+                    Throwable cause = error instanceof CompletionException && error.getCause() != null
+                            ? error.getCause()
+                            : error;
+                    job.fail(cause.getMessage());
+                } else if (exitCode != 0) {
+                    job.fail(job.getConverterName() + " conversion failed with exit code: " + exitCode);
+                } else {
+                    job.complete();
+                    log.info("Job {} completed successfully", job.getId());
+                }
+            } finally {
+                onEnd.run();
+            }
+        });
+    }
+
+    /**
+     * Stop the process because the upload failed or was rejected.
+     */
+    public void abort() {
+        if (ended.compareAndSet(false, true)) {
+            process.destroy();
+            onEnd.run();
+        }
+    }
+}
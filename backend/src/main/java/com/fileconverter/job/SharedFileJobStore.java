@@ -0,0 +1,541 @@
+package com.fileconverter.job;
+
+import com.fileconverter.config.AppConfig;
+import com.fileconverter.storage.TempStorageService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * Shares jobs between nodes through a directory every node mounts. Each job
+ * is a small record file whose name says which node holds it; a node takes
+ * a job by renaming its record, and a rename either succeeds for exactly one
+ * node or fails.
+ * <pre>
+ * nodes/&lt;node&gt;        heartbeat, holding the node's URL
+ * queued/&lt;id&gt;.&lt;node&gt;  waiting in that node's lane, claimable by any node
+ * queued/&lt;id&gt;         left by a node that stopped, claimable by any node
+ * owned/&lt;id&gt;.&lt;node&gt;   claimed, running or finished on that node
+ * </pre>
+ * Every node refreshes its heartbeat on a timer of its own, so slow scheduled
+ * tasks cannot delay it. File times come from the file server's clock, so a
+ * node is judged silent by how long, on the local monotonic clock, its
+ * heartbeat time has not changed. A node first seen is aged by comparing its
+ * heartbeat time with this node's own. Once a node has been silent
+ * for the lease TTL, the first node to notice moves its unfinished records
+ * back to queued/ for another node to run, so a job whose node crashed while
+ * running it is converted again. Finished jobs stay with their node.
+ * <p>
+ * A node that was only paused, e.g. by a long GC or a suspended VM, may
+ * still be converting a job that has moved on. It checks that it holds the
+ * job before reporting the result and drops the result otherwise, so only
+ * one node completes each job, though two may have converted it.
+ * <p>
+ * A job can only run on a node that can read its input, so jobs move between
+ * nodes only when the temp directory is on a mount they share.
+ */
+@Component
+@ConditionalOnProperty(name = "app.cluster.store", havingValue = "shared-fs")
+public class SharedFileJobStore implements JobStore {
+
+    private static final Logger log = LoggerFactory.getLogger(SharedFileJobStore.class);
+
+    // How long idle workers wait before looking at other nodes' queues again
+    // when the last look found nothing to claim
+    private static final long SCAN_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+    // Heartbeats of nodes silent for this long are deleted
+    private static final long FORGET_NODE_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    private final TempStorageService storageService;
+    private final MeterRegistry meterRegistry;
+    private final String nodeId;
+    private final String advertiseUrl;
+    private final long heartbeatIntervalMs;
+    private final long leaseTtlMs;
+    private final long ttlMs;
+    private final Path nodesDir;
+    private final Path queuedDir;
+    private final Path ownedDir;
+    private final Path tmpDir;
+    // Other nodes as of the last heartbeat, by id
+    private final Map<String, Node> nodes;
+    private final Counter takeovers;
+    private volatile long nextScanNanos;
+    private ScheduledExecutorService heartbeats;
+
+    public SharedFileJobStore(TempStorageService storageService, AppConfig config, MeterRegistry meterRegistry) {
+        AppConfig.Cluster cluster = config.getCluster();
+        this.storageService = storageService;
+        this.meterRegistry = meterRegistry;
+        this.nodeId = cluster.getNodeId();
+        this.advertiseUrl = cluster.getAdvertiseUrl();
+        this.heartbeatIntervalMs = cluster.getHeartbeatIntervalMs();
+        this.leaseTtlMs = cluster.getLeaseTtlMs();
+        this.ttlMs = TimeUnit.MINUTES.toMillis(config.getStorage().getTtlMinutes());
+        Path dir = Paths.get(cluster.getDir());
+        this.nodesDir = dir.resolve("nodes");
+        this.queuedDir = dir.resolve("queued");
+        this.ownedDir = dir.resolve("owned");
+        this.tmpDir = dir.resolve("tmp");
+        this.nodes = new ConcurrentHashMap<>();
+        this.takeovers = Counter.builder("fileconverter.cluster.takeovers")
+                .description("Jobs moved back to the shared queue after their node stopped")
+                .register(meterRegistry);
+        Gauge.builder("fileconverter.cluster.nodes", nodes,
+                        n -> 1 + n.values().stream().filter(Node::alive).count())
+                .description("Nodes with a current heartbeat, this one included")
+                .register(meterRegistry);
+        if (nodeId.isEmpty() || nodeId.contains("/") || nodeId.contains("\\")) {
+            throw new IllegalStateException("Invalid cluster node id: " + nodeId);
+        }
+    }
+
+    @PostConstruct
+    public void init() throws IOException {
+        for (Path dir : new Path[] {nodesDir, queuedDir, ownedDir, tmpDir}) {
+            Files.createDirectories(dir);
+        }
+        heartbeat();
+        heartbeats = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("cluster-heartbeat").daemon().factory());
+        heartbeats.scheduleWithFixedDelay(() -> {
+            try {
+                heartbeat();
+            } catch (RuntimeException e) {
+                // Thrown out of the task, it would cancel every later heartbeat
+                log.error("Heartbeat of node {} failed", nodeId, e);
+            }
+        }, heartbeatIntervalMs, heartbeatIntervalMs, TimeUnit.MILLISECONDS);
+        log.info("Node {} joined the cluster at {} ({} other nodes up)", nodeId, nodesDir.getParent(),
+                nodes.values().stream().filter(Node::alive).count());
+    }
+
+    /**
+     * Leave the cluster, handing this node's unfinished jobs to the others.
+     */
+    @PreDestroy
+    public void stop() {
+        if (heartbeats != null) {
+            heartbeats.shutdownNow();
+            try {
+                heartbeats.awaitTermination(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        int released = release(nodeId);
+        try {
+            Files.deleteIfExists(nodesDir.resolve(nodeId));
+        } catch (IOException e) {
+            log.warn("Failed to remove heartbeat of node {}: {}", nodeId, e.getMessage());
+        }
+        log.info("Node {} left the cluster, releasing {} unfinished jobs", nodeId, released);
+    }
+
+    @Override
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    @Override
+    public void publish(Job job) {
+        write(job, queuedDir.resolve(job.getId() + "." + nodeId));
+        // A follower promoted to run its own conversion was owned until now
+        deleteQuietly(ownedDir.resolve(job.getId() + "." + nodeId));
+    }
+
+    @Override
+    public void own(Job job) {
+        write(job, ownedDir.resolve(job.getId() + "." + nodeId));
+    }
+
+    @Override
+    public void finish(Job job) {
+        Path owned = ownedDir.resolve(job.getId() + "." + nodeId);
+        // Not recreated for a job taken over in the meantime
+        if (Files.exists(owned)) {
+            write(job, owned);
+        }
+    }
+
+    @Override
+    public boolean claim(Job job) {
+        Path owned = ownedDir.resolve(job.getId() + "." + nodeId);
+        try {
+            move(queuedDir.resolve(job.getId() + "." + nodeId), owned);
+            return true;
+        } catch (NoSuchFileException e) {
+            // Claimed by another node, unless this node already held it, e.g.
+            // a job that was running when the node restarted
+            return Files.exists(owned);
+        } catch (IOException e) {
+            log.warn("Failed to claim job {}: {}", job.getId(), e.getMessage());
+            return false;
+        }
+    }
+
+    @Override
+    public Optional<Job> claimQueued(String converterName, Predicate<Job> canRun) {
+        long now = System.nanoTime();
+        if (now - nextScanNanos < 0) {
+            return Optional.empty();
+        }
+        try (DirectoryStream<Path> queued = Files.newDirectoryStream(queuedDir)) {
+            for (Path file : queued) {
+                if (nodeId.equals(nodeOf(file))) {
+                    continue;
+                }
+                Optional<Job> job = read(file)
+                        .filter(j -> Files.isReadable(j.getInputPath()))
+                        .filter(j -> j.getConverterName().equals(converterName) || canRun.test(j));
+                if (job.isPresent()) {
+                    Optional<Job> claimed = claimFrom(file, job.get());
+                    if (claimed.isPresent()) {
+                        return claimed;
+                    }
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Failed to list shared queue: {}", e.getMessage());
+        }
+        nextScanNanos = now + SCAN_INTERVAL_NANOS;
+        return Optional.empty();
+    }
+
+    private Optional<Job> claimFrom(Path file, Job queued) {
+        String node = nodeOf(file);
+        Path owned = ownedDir.resolve(queued.getId() + "." + nodeId);
+        try {
+            move(file, owned);
+        } catch (NoSuchFileException e) {
+            return Optional.empty();
+        } catch (IOException e) {
+            log.warn("Failed to claim job {}: {}", queued.getId(), e.getMessage());
+            return Optional.empty();
+        }
+
+        try {
+            Path outputPath = storageService.createOutputPath(queued.getId(),
+                    queued.getOutputPath().getFileName().toString());
+            Job job = new Job(queued.getId(), queued.getOriginalFileName(), queued.getSourceMimeType(),
+                    queued.getTargetFormat(), queued.getConverterName(), queued.getInputPath(),
+                    queued.getInputSize(), queued.getInputHash(), outputPath,
+                    queued.getCreatedAt(), queued.getExpiresAt());
+            Counter.builder("fileconverter.cluster.claims")
+                    .description("Jobs this node took from another node's queue or a stopped node")
+                    .tag("source", node != null ? "node" : "orphan")
+                    .register(meterRegistry)
+                    .increment();
+            log.info("Job {} claimed from {}", job.getId(), node != null ? "node " + node : "a stopped node");
+            return Optional.of(job);
+        } catch (IOException e) {
+            // Put it back for someone else
+            log.warn("Failed to prepare claimed job {}: {}", queued.getId(), e.getMessage());
+            try {
+                move(owned, queuedDir.resolve(queued.getId()));
+            } catch (IOException ignored) {
+            }
+            return Optional.empty();
+        }
+    }
+
+    @Override
+    public boolean reclaim(Job job) {
+        return holds(job);
+    }
+
+    @Override
+    public boolean holds(Job job) {
+        return Files.exists(queuedDir.resolve(job.getId() + "." + nodeId))
+                || Files.exists(ownedDir.resolve(job.getId() + "." + nodeId));
+    }
+
+    @Override
+    public void remove(Job job) {
+        deleteQuietly(queuedDir.resolve(job.getId() + "." + nodeId));
+        deleteQuietly(ownedDir.resolve(job.getId() + "." + nodeId));
+    }
+
+    @Override
+    public void removeWaiting(String jobId) {
+        deleteQuietly(queuedDir.resolve(jobId));
+    }
+
+    @Override
+    public boolean isLiveNode(String nodeId) {
+        Node node = nodes.get(nodeId);
+        return node != null && node.alive();
+    }
+
+    @Override
+    public Optional<JobLocation> locate(String jobId) {
+        for (Node node : nodes.values()) {
+            String name = jobId + "." + node.id();
+            if (Files.exists(ownedDir.resolve(name)) || Files.exists(queuedDir.resolve(name))) {
+                return Optional.of(node.alive()
+                        ? new JobLocation.OnNode(node.id(), node.url())
+                        : new JobLocation.Unavailable(node.id()));
+            }
+        }
+        return read(queuedDir.resolve(jobId)).map(JobLocation.Waiting::new);
+    }
+
+    /**
+     * Refresh this node's heartbeat, and take over the jobs of nodes whose
+     * lease has run out.
+     */
+    private void heartbeat() {
+        // This node's heartbeat time, on the same clock as the others'
+        long ownTime = -1;
+        try {
+            Path tmp = tmpDir.resolve(nodeId + "." + UUID.randomUUID());
+            Files.writeString(tmp, advertiseUrl, StandardCharsets.UTF_8);
+            move(tmp, nodesDir.resolve(nodeId));
+            ownTime = Files.getLastModifiedTime(nodesDir.resolve(nodeId)).toMillis();
+        } catch (IOException e) {
+            log.warn("Failed to write heartbeat of node {}: {}", nodeId, e.getMessage());
+        }
+
+        long now = System.nanoTime();
+        try (DirectoryStream<Path> heartbeats = Files.newDirectoryStream(nodesDir)) {
+            for (Path file : heartbeats) {
+                String id = file.getFileName().toString();
+                if (id.equals(nodeId)) {
+                    continue;
+                }
+                try {
+                    long fileTime = Files.getLastModifiedTime(file).toMillis();
+                    Node previous = nodes.get(id);
+                    long changedAt;
+                    if (previous == null) {
+                        long age = ownTime < 0 ? 0 : Math.max(0, ownTime - fileTime);
+                        changedAt = now - TimeUnit.MILLISECONDS.toNanos(age);
+                    } else {
+                        changedAt = previous.fileTime() == fileTime ? previous.changedAt() : now;
+                    }
+                    long silentMs = TimeUnit.NANOSECONDS.toMillis(now - changedAt);
+                    boolean alive = silentMs < leaseTtlMs;
+                    nodes.put(id, new Node(id, URI.create(Files.readString(file, StandardCharsets.UTF_8).trim()),
+                            fileTime, changedAt, alive));
+                    if (!alive && (previous == null || previous.alive())) {
+                        int released = release(id);
+                        takeovers.increment(released);
+                        if (released > 0 || previous != null) {
+                            log.warn("Node {} silent for {} ms, released {} of its jobs",
+                                    id, silentMs, released);
+                        }
+                    }
+                    if (silentMs > FORGET_NODE_MILLIS) {
+                        Files.deleteIfExists(file);
+                        nodes.remove(id);
+                    }
+                } catch (NoSuchFileException e) {
+                    nodes.remove(id);
+                } catch (IOException | IllegalArgumentException e) {
+                    log.warn("Failed to read heartbeat of node {}: {}", id, e.getMessage());
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Failed to list cluster nodes: {}", e.getMessage());
+        }
+        nodes.keySet().removeIf(id -> !Files.exists(nodesDir.resolve(id)));
+    }
+
+    /**
+     * Drop jobs left over by stopped nodes that nobody claimed before they
+     * expired, and expired jobs that stopped nodes had finished.
+     */
+    @Scheduled(fixedRate = 60000)
+    public void cleanupOrphans() {
+        long cutoff = System.currentTimeMillis() - ttlMs;
+        try (DirectoryStream<Path> queued = Files.newDirectoryStream(queuedDir, p -> nodeOf(p) == null)) {
+            for (Path file : queued) {
+                if (Files.getLastModifiedTime(file).toMillis() < cutoff
+                        && read(file).map(Job::isExpired).orElse(true)) {
+                    deleteQuietly(file);
+                    log.info("Expired unclaimed job {}", file.getFileName());
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Failed to clean up shared queue: {}", e.getMessage());
+        }
+        try (DirectoryStream<Path> owned = Files.newDirectoryStream(ownedDir, p -> stopped(nodeOf(p)))) {
+            for (Path file : owned) {
+                if (Files.getLastModifiedTime(file).toMillis() < cutoff
+                        && read(file).map(Job::isExpired).orElse(true)) {
+                    deleteQuietly(file);
+                    log.info("Expired finished job {}", file.getFileName());
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Failed to clean up finished jobs: {}", e.getMessage());
+        }
+    }
+
+    private boolean stopped(String node) {
+        if (node == null || node.equals(nodeId)) {
+            return false;
+        }
+        Node known = nodes.get(node);
+        return known == null || !known.alive();
+    }
+
+    /**
+     * Move a node's unfinished jobs back to the shared queue. Several nodes
+     * may do this at once; each record moves once.
+     *
+     * @return How many jobs this call moved
+     */
+    private int release(String node) {
+        int released = 0;
+        for (Path dir : new Path[] {queuedDir, ownedDir}) {
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, p -> node.equals(nodeOf(p)))) {
+                for (Path file : files) {
+                    String name = file.getFileName().toString();
+                    if (finished(file)) {
+                        continue;
+                    }
+                    try {
+                        move(file, queuedDir.resolve(name.substring(0, name.indexOf('.'))));
+                        released++;
+                    } catch (NoSuchFileException ignored) {
+                        // Released by another node
+                    } catch (IOException e) {
+                        log.warn("Failed to release job {}: {}", name, e.getMessage());
+                    }
+                }
+            } catch (IOException e) {
+                log.warn("Failed to list jobs of node {}: {}", node, e.getMessage());
+            }
+        }
+        return released;
+    }
+
+    private void write(Job job, Path target) {
+        Properties record = new Properties();
+        record.setProperty("id", job.getId());
+        record.setProperty("originalFileName", job.getOriginalFileName());
+        record.setProperty("sourceMimeType", job.getSourceMimeType());
+        record.setProperty("targetFormat", job.getTargetFormat());
+        record.setProperty("converterName", job.getConverterName());
+        record.setProperty("inputPath", job.getInputPath().toAbsolutePath().toString());
+        record.setProperty("inputSize", Long.toString(job.getInputSize()));
+        if (job.getInputHash() != null) {
+            record.setProperty("inputHash", job.getInputHash());
+        }
+        record.setProperty("outputPath", job.getOutputPath().toAbsolutePath().toString());
+        record.setProperty("createdAt", Long.toString(job.getCreatedAt().toEpochMilli()));
+        record.setProperty("expiresAt", Long.toString(job.getExpiresAt().toEpochMilli()));
+        record.setProperty("node", nodeId);
+        record.setProperty("status", job.getStatus().name());
+
+        Path tmp = tmpDir.resolve(target.getFileName() + "." + UUID.randomUUID());
+        try {
+            try (OutputStream out = Files.newOutputStream(tmp)) {
+                record.store(out, null);
+            }
+            move(tmp, target);
+        } catch (IOException e) {
+            deleteQuietly(tmp);
+            log.warn("Failed to record job {}: {}", job.getId(), e.getMessage());
+        }
+    }
+
+    private Optional<Job> read(Path file) {
+        Properties record = load(file);
+        if (record == null) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(new Job(record.getProperty("id"), record.getProperty("originalFileName"),
+                    record.getProperty("sourceMimeType"), record.getProperty("targetFormat"),
+                    record.getProperty("converterName"), Path.of(record.getProperty("inputPath")),
+                    Long.parseLong(record.getProperty("inputSize")), record.getProperty("inputHash"),
+                    Path.of(record.getProperty("outputPath")),
+                    Instant.ofEpochMilli(Long.parseLong(record.getProperty("createdAt"))),
+                    Instant.ofEpochMilli(Long.parseLong(record.getProperty("expiresAt")))));
+        } catch (RuntimeException e) {
+            log.warn("Ignoring malformed job record {}: {}", file.getFileName(), e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Whether a record is of a job its node completed or failed.
+     */
+    private boolean finished(Path file) {
+        Properties record = load(file);
+        String status = record != null ? record.getProperty("status") : null;
+        return JobStatus.COMPLETED.name().equals(status) || JobStatus.FAILED.name().equals(status);
+    }
+
+    private Properties load(Path file) {
+        Properties record = new Properties();
+        try (InputStream in = Files.newInputStream(file)) {
+            record.load(in);
+            return record;
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            log.warn("Failed to read job record {}: {}", file.getFileName(), e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * @return The node a job record names, or null for a job no node holds.
+     *         Job ids have no dots; node ids may.
+     */
+    private static String nodeOf(Path file) {
+        String name = file.getFileName().toString();
+        int dot = name.indexOf('.');
+        return dot > 0 ? name.substring(dot + 1) : null;
+    }
+
+    private static void move(Path source, Path target) throws IOException {
+        Files.move(source, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException ignored) {
+        }
+    }
+
+    /**
+     * @param fileTime   Heartbeat file time, compared only with earlier ones
+     * @param changedAt  {@link System#nanoTime()} when the file time last changed
+     */
+    private record Node(String id, URI url, long fileTime, long changedAt, boolean alive) {
+    }
+}
@@ -0,0 +1,30 @@
+package com.fileconverter.job;
+
+import com.fileconverter.config.AppConfig;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Shortest-job-first with aging. A job's key is its creation time plus its
+ * estimated cost scaled by the aging weight, so a cheap job may overtake an
+ * expensive one only if it arrived within that window. An expensive job
+ * therefore waits at most {@code cost * agingWeight} longer than under FIFO.
+ */
+@Component
+@ConditionalOnProperty(name = "app.worker.scheduling.policy", havingValue = "sjf", matchIfMissing = true)
+public class ShortestJobFirstPolicy implements JobOrderingPolicy {
+
+    private final JobCostEstimator costEstimator;
+    private final double agingWeight;
+
+    public ShortestJobFirstPolicy(JobCostEstimator costEstimator, AppConfig config) {
+        this.costEstimator = costEstimator;
+        this.agingWeight = config.getWorker().getScheduling().getAgingWeight();
+    }
+
+    @Override
+    public long priority(Job job) {
+        double costSeconds = costEstimator.estimateSeconds(job);
+        return job.getCreatedAt().toEpochMilli() + (long) (costSeconds * agingWeight * 1000);
+    }
+}
@@ -0,0 +1,80 @@
+package com.fileconverter.job;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Host load and memory as seen by the kernel, read from /proc where available
+ * so container-wide pressure is visible and not just the JVM heap.
+ */
+@Component
+public class SystemResources {
+
+    private static final Logger log = LoggerFactory.getLogger(SystemResources.class);
+
+    private static final Path LOADAVG = Path.of("/proc/loadavg");
+    private static final Path MEMINFO = Path.of("/proc/meminfo");
+
+    private final OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+    private final int cores = Runtime.getRuntime().availableProcessors();
+
+    public int getCores() {
+        return cores;
+    }
+
+    /**
+     * @return One-minute load average divided by the number of cores, or 0 if unknown
+     */
+    public double getLoadPerCore() {
+        double load = -1;
+        if (Files.isReadable(LOADAVG)) {
+            try {
+                String content = Files.readString(LOADAVG);
+                load = Double.parseDouble(content.substring(0, content.indexOf(' ')));
+            } catch (IOException | RuntimeException e) {
+                log.debug("Could not read {}: {}", LOADAVG, e.getMessage());
+            }
+        }
+        if (load < 0) {
+            load = os.getSystemLoadAverage();
+        }
+        return load < 0 ? 0 : load / cores;
+    }
+
+    /**
+     * @return MemAvailable / MemTotal, or 1 if unknown
+     */
+    public double getFreeMemoryRatio() {
+        if (!Files.isReadable(MEMINFO)) {
+            return 1.0;
+        }
+        try {
+            List<String> lines = Files.readAllLines(MEMINFO);
+            long total = meminfoKb(lines, "MemTotal:");
+            long available = meminfoKb(lines, "MemAvailable:");
+            return total > 0 && available >= 0 ? (double) available / total : 1.0;
+        } catch (IOException e) {
+            log.debug("Could not read {}: {}", MEMINFO, e.getMessage());
+            return 1.0;
+        }
+    }
+
+    private long meminfoKb(List<String> lines, String key) {
+        for (String line : lines) {
+            if (line.startsWith(key)) {
+                String value = line.substring(key.length()).trim();
+                int space = value.indexOf(' ');
+                return Long.parseLong(space > 0 ? value.substring(0, space) : value);
+            }
+        }
+        return -1;
+    }
+}
@@ -3,55 +3,142 @@ package com.fileconverter.job;
 import com.fileconverter.config.AppConfig;
 import com.fileconverter.converter.ConverterRegistry;
 import com.fileconverter.converter.Converter;
+import com.fileconverter.converter.PipedProcess;
+import com.fileconverter.converter.ProcessExecutor;
+import com.fileconverter.converter.ProgressListener;
+import com.fileconverter.diagnostics.JobPhase;
+import com.fileconverter.diagnostics.PhaseContext;
+import com.fileconverter.diagnostics.PhaseSpan;
+import com.fileconverter.storage.ConversionCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
 
+/**
+ * Runs a separate pool per converter, each draining its own lane of the
+ * {@link JobQueue}. Idle workers may steal jobs their converter also supports.
+ * How many jobs a converter runs at once is set by its {@link ConcurrencyLimit},
+ * which the {@link AdaptiveConcurrencyController} may move between the pool's
+ * min-size and max-size; platform pools start max-size threads that each
+ * hold a permit while working.
+ * <p>
+ * In virtual-thread mode each converter gets a single dispatcher that starts
+ * one virtual thread per job once a permit is available.
+ * <p>
+ * A worker that picks up a small job its converter can batch also takes
+ * compatible jobs from the same lane and runs them in one invocation.
+ * <p>
+ * A chained conversion runs in the pool of its most expensive tool, holding
+ * one worker for all of its steps.
+ * <p>
+ * Piped jobs skip the queue: they take a free permit directly and run while
+ * their upload is still arriving, see {@link #startPiped}.
+ * <p>
+ * A worker claims each job in the {@link JobStore} before running it. With
+ * nothing to do locally, it claims work queued on other nodes.
+ */
 @Component
 public class WorkerPool {
 
     private static final Logger log = LoggerFactory.getLogger(WorkerPool.class);
 
+    // How long an idle worker waits on its own lane before looking elsewhere
+    private static final long IDLE_POLL_MILLIS = 250;
+
     private final JobQueue jobQueue;
+    private final JobStore jobStore;
     private final ConverterRegistry converterRegistry;
-    private final int poolSize;
+    private final AdaptiveConcurrencyController concurrencyController;
+    private final JobCostEstimator costEstimator;
+    private final ConversionCache conversionCache;
+    private final JobCoalescer coalescer;
+    private final ProcessExecutor processExecutor;
+    private final AppConfig.Worker workerConfig;
+    private final MeterRegistry meterRegistry;
     private final AtomicBoolean running;
-    private ExecutorService executor;
+    private final Map<String, ExecutorService> executors;
 
-    public WorkerPool(JobQueue jobQueue, ConverterRegistry converterRegistry, AppConfig config) {
+    public WorkerPool(JobQueue jobQueue, JobStore jobStore, ConverterRegistry converterRegistry,
+            AdaptiveConcurrencyController concurrencyController, JobCostEstimator costEstimator,
+            ConversionCache conversionCache, JobCoalescer coalescer, ProcessExecutor processExecutor,
+            AppConfig config, MeterRegistry meterRegistry) {
         this.jobQueue = jobQueue;
+        this.jobStore = jobStore;
         this.converterRegistry = converterRegistry;
-        this.poolSize = config.getWorker().getPoolSize();
+        this.concurrencyController = concurrencyController;
+        this.costEstimator = costEstimator;
+        this.conversionCache = conversionCache;
+        this.coalescer = coalescer;
+        this.processExecutor = processExecutor;
+        this.workerConfig = config.getWorker();
+        this.meterRegistry = meterRegistry;
         this.running = new AtomicBoolean(false);
+        this.executors = new LinkedHashMap<>();
     }
 
     @PostConstruct
     public void start() {
         running.set(true);
-        executor = Executors.newFixedThreadPool(poolSize, r -> {
-            Thread t = new Thread(r, "converter-worker");
-            t.setDaemon(true);
-            return t;
-        });
+        if (workerConfig.isVirtualThreads()) {
+            startVirtual();
+            return;
+        }
+        for (Converter converter : converterRegistry.getConverters()) {
+            String name = converter.getName();
+            int poolSize = concurrencyController.getMaxLimit(name);
+            AtomicInteger threadCount = new AtomicInteger();
 
-        for (int i = 0; i < poolSize; i++) {
-            executor.submit(this::workerLoop);
+            ExecutorService executor = Executors.newFixedThreadPool(poolSize, r -> {
+                Thread t = new Thread(r, "converter-" + name + "-" + threadCount.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+            for (int i = 0; i < poolSize; i++) {
+                executor.submit(() -> workerLoop(converter, concurrencyController.getLimit(name)));
+            }
+            executors.put(name, executor);
+            log.info("Worker pool for {} started with {} workers, {} active",
+                    name, poolSize, concurrencyController.getLimit(name).getLimit());
+        }
+    }
+
+    private void startVirtual() {
+        for (Converter converter : converterRegistry.getConverters()) {
+            String name = converter.getName();
+            ConcurrencyLimit limit = concurrencyController.getLimit(name);
+
+            ExecutorService executor = Executors.newThreadPerTaskExecutor(
+                    Thread.ofVirtual().name("converter-" + name + "-", 0).factory());
+            executor.submit(() -> dispatchLoop(converter, limit, executor));
+            executors.put(name, executor);
+            log.info("Virtual-thread worker pool for {} started with {} permits", name, limit.getLimit());
         }
-        log.info("Worker pool started with {} workers", poolSize);
     }
 
     @PreDestroy
     public void stop() {
         running.set(false);
-        if (executor != null) {
-            executor.shutdown();
+        executors.values().forEach(ExecutorService::shutdown);
+        for (ExecutorService executor : executors.values()) {
             try {
                 if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
                     executor.shutdownNow();
@@ -64,11 +151,18 @@ public class WorkerPool {
         log.info("Worker pool stopped");
     }
 
-    private void workerLoop() {
+    private void workerLoop(Converter converter, ConcurrencyLimit limit) {
         while (running.get()) {
             try {
-                Job job = jobQueue.take();
-                processJob(job);
+                limit.acquire();
+                try {
+                    Job job = nextJob(converter);
+                    if (job != null) {
+                        runJob(job, converter, limit);
+                    }
+                } finally {
+                    limit.release();
+                }
             } catch (InterruptedException e) {
                 Thread.currentThread().interrupt();
                 break;
@@ -78,35 +172,344 @@ public class WorkerPool {
         }
     }
 
-    private void processJob(Job job) {
-        log.info("Processing job {}: {} -> {}",
-                job.getId(), job.getSourceMimeType(), job.getTargetFormat());
+    private void dispatchLoop(Converter converter, ConcurrencyLimit permits, ExecutorService executor) {
+        while (running.get()) {
+            try {
+                permits.acquire();
+                Job job;
+                try {
+                    job = nextJob(converter);
+                } catch (Exception e) {
+                    permits.release();
+                    throw e;
+                }
+                if (job == null) {
+                    permits.release();
+                    continue;
+                }
+                executor.submit(() -> {
+                    try {
+                        runJob(job, converter, permits);
+                    } finally {
+                        permits.release();
+                    }
+                });
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Exception e) {
+                log.error("Dispatcher error", e);
+            }
+        }
+    }
 
+    /**
+     * Start a piped conversion if the converter has a permit free right now.
+     * The job is registered with the queue but never enters a lane; its
+     * permit is returned when the conversion ends.
+     */
+    Optional<PipedConversion> startPiped(Job job, Converter converter) {
+        ConcurrencyLimit limit = concurrencyController.getLimit(converter.getName());
+        if (!running.get() || !limit.tryAcquire()) {
+            return Optional.empty();
+        }
+        PipedProcess process;
+        try (PhaseContext.Scope phases = PhaseContext.bind(job::recordPhase)) {
+            process = processExecutor.startPiped(
+                    converter.getPipeCommand(job.getSourceMimeType(), job.getTargetFormat()),
+                    job.getOutputPath().getParent(), job.getOutputPath());
+        } catch (Exception e) {
+            limit.release();
+            log.warn("Could not start piped {} conversion: {}", converter.getName(), e.getMessage());
+            return Optional.empty();
+        }
+
+        limit.jobStarted();
+        job.markPiped();
+        jobQueue.register(job);
+        job.startProcessing();
+        job.beginPhase(JobPhase.CONVERSION);
+        log.info("Processing job {} with {} while its upload arrives: {} -> {}",
+                job.getId(), converter.getName(), job.getSourceMimeType(), job.getTargetFormat());
+
+        return Optional.of(new PipedConversion(job, process, () -> {
+            job.endPhase(JobPhase.CONVERSION);
+            limit.jobFinished();
+            limit.release();
+        }));
+    }
+
+    private Job nextJob(Converter converter) throws InterruptedException {
+        String name = converter.getName();
+        Predicate<Job> canRun = workerConfig.isWorkStealing()
+                ? j -> converter.supports(j.getSourceMimeType(), j.getTargetFormat())
+                : j -> false;
+        Job job = jobQueue.poll(name, IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+        if (job == null && workerConfig.isWorkStealing()) {
+            job = jobQueue.steal(name, canRun).orElse(null);
+            if (job != null) {
+                log.info("Job {} stolen from {} by {} pool",
+                        job.getId(), job.getConverterName(), name);
+            }
+        }
+        if (job != null) {
+            return claim(job) ? job : null;
+        }
+        job = jobStore.claimQueued(name, canRun).orElse(null);
+        if (job != null) {
+            jobQueue.register(job);
+        }
+        return job;
+    }
+
+    /**
+     * Claim a job taken from this node's queue, dropping it if another node
+     * claimed it first.
+     */
+    private boolean claim(Job job) {
+        if (jobQueue.claim(job)) {
+            return true;
+        }
+        log.info("Job {} was claimed by another node", job.getId());
+        jobQueue.removeJob(job.getId());
+        return false;
+    }
+
+    private void runJob(Job job, Converter converter, ConcurrencyLimit limit) {
+        // Chained conversions queue in the lane of one of their tools
+        Converter runner = converter.supports(job.getSourceMimeType(), job.getTargetFormat())
+                ? converter
+                : converterRegistry.getConverter(job.getSourceMimeType(), job.getTargetFormat());
+        // Counted as running only once the batch is gathered, so a linger
+        // does not show up as in-flight work to the concurrency controller
+        List<Job> batch = gatherBatch(job, runner);
+        limit.jobStarted();
         try {
-            job.startProcessing();
+            Timer queueWait = Timer.builder("fileconverter.queue.wait")
+                    .description("Time from upload until a worker picks the job up")
+                    .tag("converter", runner.getName())
+                    .publishPercentileHistogram()
+                    .register(meterRegistry);
+            Instant now = Instant.now();
+            batch.forEach(j -> {
+                j.endPhase(JobPhase.QUEUE_WAIT);
+                queueWait.record(Duration.between(j.getCreatedAt(), now));
+            });
+            if (batch.size() > 1) {
+                processBatch(batch, runner);
+            } else {
+                processJob(job, runner);
+            }
+        } finally {
+            limit.jobFinished();
+        }
+    }
 
-            Converter converter = converterRegistry.getConverter(
-                    job.getSourceMimeType(), job.getTargetFormat());
+    /**
+     * Collect small queued jobs for the same target format that the converter
+     * can run in one invocation with the given job, waiting once for the
+     * linger window if the batch is not yet full. The wait holds the worker's
+     * permit, so it is skipped while other jobs are queued for the converter.
+     */
+    private List<Job> gatherBatch(Job first, Converter converter) {
+        AppConfig.Worker.Batch settings = workerConfig.getBatch();
+        if (!settings.isEnabled() || settings.getMaxSize() < 2 || !batchable(first, converter)) {
+            return List.of(first);
+        }
+        Predicate<Job> compatible = j -> j.getTargetFormat().equalsIgnoreCase(first.getTargetFormat())
+                && converter.supports(j.getSourceMimeType(), j.getTargetFormat())
+                && batchable(j, converter);
 
-            if (converter == null) {
-                job.fail("No converter available for this format combination");
-                return;
+        List<Job> batch = new ArrayList<>();
+        batch.add(first);
+        batch.addAll(drain(converter, compatible, settings.getMaxSize() - batch.size()));
+        if (batch.size() < settings.getMaxSize() && settings.getLingerMs() > 0
+                && jobQueue.getPendingCount(converter.getName()) == 0) {
+            try {
+                Thread.sleep(settings.getLingerMs());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return batch;
             }
+            batch.addAll(drain(converter, compatible, settings.getMaxSize() - batch.size()));
+        }
+        return batch;
+    }
+
+    private List<Job> drain(Converter converter, Predicate<Job> filter, int max) {
+        return jobQueue.drain(converter.getName(), filter, max).stream()
+                .filter(this::claim)
+                .toList();
+    }
+
+    private boolean batchable(Job job, Converter converter) {
+        return job.getInputSize() <= workerConfig.getBatch().getMaxInputSizeKb() * 1024
+                && converter.supportsBatch(job.getSourceMimeType(), job.getTargetFormat());
+    }
 
-            job.updateProgress(20);
+    private void processJob(Job job, Converter converter) {
+        log.info("Processing job {} with {}: {} -> {}",
+                job.getId(), converter.getName(), job.getSourceMimeType(), job.getTargetFormat());
 
-            converter.convert(
-                    job.getInputPath(),
-                    job.getOutputPath(),
-                    job.getTargetFormat(),
-                    progress -> job.updateProgress(20 + (int) (progress * 0.7)));
+        convert(job, converter, start(job, converter));
+    }
+
+    /**
+     * Run the converter for a job that has already been started.
+     */
+    private void convert(Job job, Converter converter, String cacheKey) {
+        if (!stillHeld(job)) {
+            return;
+        }
+        long started = System.nanoTime();
+        try {
+            PhaseSpan conversion = PhaseSpan.start(JobPhase.CONVERSION);
+            try (PhaseContext.Scope phases = PhaseContext.bind(job::recordPhase)) {
+                converter.convert(
+                        job.getInputPath(),
+                        job.getOutputPath(),
+                        job.getTargetFormat(),
+                        progressListener(job));
+            } finally {
+                job.recordPhase(conversion);
+            }
+            long elapsed = System.nanoTime() - started;
+            concurrencyController.recordLatency(converter.getName(), elapsed,
+                    costEstimator.estimateSeconds(converter.getName(), job.getInputSize()));
+            recordConversion(converter, "single", "success", elapsed);
 
-            job.complete();
-            log.info("Job {} completed successfully", job.getId());
+            complete(job, cacheKey);
 
         } catch (Exception e) {
+            recordConversion(converter, "single", "failure", System.nanoTime() - started);
+            if (!stillHeld(job)) {
+                return;
+            }
             log.error("Job {} failed: {}", job.getId(), e.getMessage());
             job.fail(e.getMessage());
+            coalescer.failed(job, e.getMessage());
+        }
+    }
+
+    /**
+     * Run several jobs in one converter invocation. Jobs the batch leaves
+     * without output, or all of them if the invocation itself fails, are
+     * run again one by one so each gets its own result and error message.
+     */
+    private void processBatch(List<Job> jobs, Converter converter) {
+        String targetFormat = jobs.get(0).getTargetFormat();
+        log.info("Processing batch of {} jobs with {}: -> {}", jobs.size(), converter.getName(), targetFormat);
+
+        Map<Converter.BatchItem, Job> pending = new LinkedHashMap<>();
+        Map<Job, String> cacheKeys = new HashMap<>();
+        for (Job job : jobs) {
+            cacheKeys.put(job, start(job, converter));
+            pending.put(new Converter.BatchItem(job.getInputPath(), job.getOutputPath()), job);
+        }
+
+        List<Converter.BatchItem> failed;
+        long started = System.nanoTime();
+        List<Job> batch = List.copyOf(pending.values());
+        PhaseSpan conversion = PhaseSpan.start(JobPhase.CONVERSION);
+        try (PhaseContext.Scope phases = PhaseContext.bind(span -> recordPhase(batch, span))) {
+            failed = converter.convertBatch(new ArrayList<>(pending.keySet()), targetFormat);
+            long elapsed = System.nanoTime() - started;
+            double estimate = pending.values().stream()
+                    .mapToDouble(j -> costEstimator.estimateSeconds(converter.getName(), j.getInputSize()))
+                    .sum();
+            concurrencyController.recordLatency(converter.getName(), elapsed, estimate);
+            recordConversion(converter, "batch", "success", elapsed);
+        } catch (Exception e) {
+            recordConversion(converter, "batch", "failure", System.nanoTime() - started);
+            log.warn("Batch of {} jobs failed, running them individually: {}", pending.size(), e.getMessage());
+            failed = new ArrayList<>(pending.keySet());
+        } finally {
+            recordPhase(batch, conversion);
+        }
+
+        for (Converter.BatchItem item : failed) {
+            Job job = pending.remove(item);
+            if (job != null) {
+                log.info("Retrying job {} from a failed batch on its own", job.getId());
+                convert(job, converter, cacheKeys.get(job));
+            }
+        }
+        pending.values().forEach(job -> complete(job, cacheKeys.get(job)));
+    }
+
+    private static void recordPhase(List<Job> batch, PhaseSpan span) {
+        batch.forEach(job -> job.recordPhase(span, batch.size()));
+    }
+
+    /**
+     * Map converter progress onto the 20-90% band of the job and its followers.
+     */
+    private ProgressListener progressListener(Job job) {
+        return new ProgressListener() {
+            @Override
+            public void accept(Double progress) {
+                int value = 20 + (int) (progress * 70);
+                job.updateProgress(value);
+                coalescer.progress(job, value);
+            }
+
+            @Override
+            public void rate(double speed, long etaSeconds) {
+                job.updateRate(speed, etaSeconds);
+                coalescer.rate(job, speed, etaSeconds);
+            }
+        };
+    }
+
+    /**
+     * Mark the job as processing. Cached results were already served when
+     * the job was created, see {@link JobService#createJob}.
+     *
+     * @return Its result cache key, or null if it is not cacheable
+     */
+    private String start(Job job, Converter converter) {
+        job.startProcessing();
+        coalescer.started(job);
+        job.updateProgress(20);
+        coalescer.progress(job, 20);
+        return conversionCache.key(job, converter);
+    }
+
+    private void recordConversion(Converter converter, String mode, String outcome, long nanos) {
+        Timer.builder("fileconverter.conversion.duration")
+                .description("Time spent in converter invocations, excluding cache hits")
+                .tags("converter", converter.getName(), "mode", mode, "outcome", outcome)
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    private void complete(Job job, String cacheKey) {
+        if (!stillHeld(job)) {
+            return;
+        }
+        job.complete();
+        coalescer.completed(job);
+        log.info("Job {} completed successfully", job.getId());
+
+        if (cacheKey != null) {
+            conversionCache.store(cacheKey, job.getOutputPath());
+        }
+    }
+
+    /**
+     * Check that this node still holds a job before reporting on it. If its
+     * lease ran out while this node was stalled, another node has the job
+     * and its followers; they are dropped here without touching the output,
+     * which may be the path the new holder writes to.
+     */
+    private boolean stillHeld(Job job) {
+        if (jobStore.holds(job)) {
+            return true;
         }
+        log.warn("Job {} was taken over by another node, dropping its result here", job.getId());
+        coalescer.lost(job);
+        jobQueue.removeJob(job.getId());
+        return false;
     }
 }
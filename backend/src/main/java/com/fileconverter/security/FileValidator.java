@@ -2,87 +2,217 @@ package com.fileconverter.security;
 
 import com.fileconverter.config.AllowedFileTypes;
 import com.fileconverter.config.AppConfig;
-import org.apache.tika.Tika;
+import com.fileconverter.diagnostics.JobPhase;
+import com.fileconverter.diagnostics.PhaseSpan;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.http.codec.multipart.FilePart;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Component;
-import reactor.core.publisher.Mono;
+import reactor.core.publisher.Flux;
 
-import java.io.InputStream;
-import java.nio.file.Files;
-import java.nio.file.Path;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
 
 @Component
 public class FileValidator {
 
     private static final Logger log = LoggerFactory.getLogger(FileValidator.class);
 
-    private final Tika tika;
+    // Enough for the magic bytes of every allowed type
+    private static final int SNIFF_LENGTH = 8 * 1024;
+
+    private final MimeDetector mimeDetector;
     private final long maxFileSize;
+    private final MeterRegistry meterRegistry;
+    private final DistributionSummary uploadSizes;
 
-    public FileValidator(AppConfig config) {
-        this.tika = new Tika();
+    public FileValidator(AppConfig config, MimeDetector mimeDetector, MeterRegistry meterRegistry) {
+        this.mimeDetector = mimeDetector;
         this.maxFileSize = config.getStorage().getMaxFileSize();
+        this.meterRegistry = meterRegistry;
+        this.uploadSizes = DistributionSummary.builder("fileconverter.upload.size")
+                .description("Size of accepted uploads")
+                .baseUnit("bytes")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    private void rejected(String reason) {
+        Counter.builder("fileconverter.upload.rejected")
+                .description("Uploads rejected while validating their content")
+                .tag("reason", reason)
+                .register(meterRegistry)
+                .increment();
     }
 
     /**
-     * Validate file by checking MIME type via magic bytes
+     * Start validating an upload as it streams in. See {@link Inspection}.
      */
-    public Mono<ValidationResult> validate(Path filePath) {
-        return Mono.fromCallable(() -> {
-            // Check file exists
-            if (!Files.exists(filePath)) {
-                return ValidationResult.error("File not found");
-            }
+    public Inspection inspect() {
+        return new Inspection();
+    }
 
-            // Check file size
-            long size = Files.size(filePath);
-            if (size > maxFileSize) {
-                return ValidationResult.error(
-                        "File too large. Maximum size is " + (maxFileSize / 1024 / 1024) + "MB");
+    /**
+     * Quick validation of declared content type (for early rejection)
+     */
+    public boolean isContentTypeAllowed(String contentType) {
+        return AllowedFileTypes.isAllowed(contentType);
+    }
+
+    /**
+     * Validates one upload while it is written, so there is no second read
+     * pass. The size cap is enforced as bytes arrive, the MIME type is checked
+     * once the first 8 KB are in, and the SHA-256 is
+     * computed along the way. A rejected upload fails the stream with
+     * {@link UploadRejectedException}, which cancels the request body.
+     * <p>
+     * The upload phase is timed from the inspection's creation to its
+     * result, and the validation phase around type detection.
+     */
+    public final class Inspection {
+
+        private final MessageDigest digest;
+        private final byte[] head;
+        private int headLength;
+        private long size;
+        private String mimeType;
+        private final PhaseSpan upload;
+        private PhaseSpan validation;
+
+        private Inspection() {
+            this.upload = PhaseSpan.start(JobPhase.UPLOAD);
+            try {
+                this.digest = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
             }
+            this.head = new byte[SNIFF_LENGTH];
+        }
+
+        /**
+         * Pass the content through this inspection. Buffers are forwarded
+         * unchanged; the stream errors as soon as the upload is rejected.
+         */
+        public Flux<DataBuffer> check(Flux<DataBuffer> content) {
+            return content.handle((buffer, sink) -> {
+                String error = accept(buffer);
+                if (error == null) {
+                    sink.next(buffer);
+                } else {
+                    DataBufferUtils.release(buffer);
+                    rejected(size > maxFileSize ? "too_large" : "type");
+                    sink.error(new UploadRejectedException(
+                            size > maxFileSize ? HttpStatus.PAYLOAD_TOO_LARGE : HttpStatus.BAD_REQUEST,
+                            error));
+                }
+            });
+        }
 
+        /**
+         * @return The detected MIME type once enough bytes have arrived, else null
+         */
+        public String getMimeType() {
+            return mimeType;
+        }
+
+        /**
+         * Result for the complete upload. Call once the content has been written.
+         */
+        public ValidationResult result() {
             if (size == 0) {
+                rejected("empty");
                 return ValidationResult.error("Empty file");
             }
+            if (mimeType == null) {
+                // Shorter than the sniff length
+                String error = sniff();
+                if (error != null) {
+                    rejected("type");
+                    return ValidationResult.error(error);
+                }
+            }
+            uploadSizes.record(size);
+            upload.end();
+            List<PhaseSpan> phases = validation != null ? List.of(upload, validation) : List.of(upload);
+            return ValidationResult.success(mimeType, size, HexFormat.of().formatHex(digest.digest()), phases);
+        }
 
-            // Detect MIME type via magic bytes
-            String detectedMime;
-            try (InputStream is = Files.newInputStream(filePath)) {
-                detectedMime = tika.detect(is);
+        private String accept(DataBuffer buffer) {
+            size += buffer.readableByteCount();
+            if (size > maxFileSize) {
+                return "File too large. Maximum size is " + (maxFileSize / 1024 / 1024) + "MB";
             }
 
-            log.debug("Detected MIME type: {}", detectedMime);
+            try (DataBuffer.ByteBufferIterator it = buffer.readableByteBuffers()) {
+                while (it.hasNext()) {
+                    ByteBuffer bytes = it.next();
+                    if (headLength < SNIFF_LENGTH) {
+                        int n = Math.min(bytes.remaining(), SNIFF_LENGTH - headLength);
+                        bytes.duplicate().get(head, headLength, n);
+                        headLength += n;
+                    }
+                    digest.update(bytes);
+                }
+            }
 
-            // Check against allow-list
-            if (!AllowedFileTypes.isAllowed(detectedMime)) {
-                return ValidationResult.error(
-                        "File type not allowed: " + detectedMime);
+            if (mimeType == null && headLength == SNIFF_LENGTH) {
+                return sniff();
             }
+            return null;
+        }
 
-            return ValidationResult.success(detectedMime, size);
-        });
+        private String sniff() {
+            validation = PhaseSpan.start(JobPhase.VALIDATION);
+            String detected = mimeDetector.detect(head, headLength);
+            validation.end();
+            log.debug("Detected MIME type: {}", detected);
+            if (!AllowedFileTypes.isAllowed(detected)) {
+                return "File type not allowed: " + detected;
+            }
+            mimeType = detected;
+            return null;
+        }
     }
 
     /**
-     * Quick validation of declared content type (for early rejection)
+     * An upload rejected while streaming, with the status to answer it with.
      */
-    public boolean isContentTypeAllowed(String contentType) {
-        return AllowedFileTypes.isAllowed(contentType);
+    public static class UploadRejectedException extends RuntimeException {
+
+        private final HttpStatus status;
+
+        public UploadRejectedException(HttpStatus status, String message) {
+            super(message);
+            this.status = status;
+        }
+
+        public HttpStatus getStatus() {
+            return status;
+        }
     }
 
     public record ValidationResult(
             boolean valid,
             String mimeType,
             long fileSize,
-            String errorMessage) {
-        public static ValidationResult success(String mimeType, long fileSize) {
-            return new ValidationResult(true, mimeType, fileSize, null);
+            String sha256,
+            String errorMessage,
+            List<PhaseSpan> phases) {
+        public static ValidationResult success(String mimeType, long fileSize, String sha256,
+                List<PhaseSpan> phases) {
+            return new ValidationResult(true, mimeType, fileSize, sha256, null, phases);
         }
 
         public static ValidationResult error(String message) {
-            return new ValidationResult(false, null, 0, message);
+            return new ValidationResult(false, null, 0, null, message, List.of());
         }
     }
 }
@@ -6,16 +6,48 @@ import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.security.Keys;
 import org.springframework.stereotype.Service;
 
+import javax.crypto.Mac;
 import javax.crypto.SecretKey;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
 import java.time.Instant;
+import java.util.Arrays;
+import java.util.Base64;
 import java.util.Date;
+import java.util.Iterator;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * Issues and verifies the bearer tokens that grant access to one job.
+ * <p>
+ * Tokens are JWTs by default. With app.security.token-format=compact they
+ * are instead the base64url of a version byte, the expiry in epoch seconds,
+ * the job UUID and the first 16 bytes of an HMAC-SHA256 over those, which
+ * verifies without any JSON parsing. Both forms are accepted either way.
+ * <p>
+ * Verified tokens are cached until they expire, keyed by a seeded 64-bit
+ * hash of the token, so repeated polls skip verification. A hit still
+ * compares the whole token string.
+ */
 @Service
 public class JobTokenService {
 
+    private static final byte COMPACT_VERSION = 1;
+    private static final int COMPACT_MAC_LENGTH = 16;
+    // Version, expiry, UUID and truncated MAC
+    private static final int COMPACT_LENGTH = 1 + Long.BYTES + 2 * Long.BYTES + COMPACT_MAC_LENGTH;
+
     private final SecretKey secretKey;
     private final int ttlMinutes;
+    private final boolean compact;
+    private final int cacheSize;
+    private final ConcurrentHashMap<Long, VerifiedToken> verified;
+    private final long hashSeed;
+    private final ThreadLocal<Mac> macs;
 
     public JobTokenService(AppConfig config) {
         String secret = config.getSecurity().getTokenSecret();
@@ -23,12 +55,32 @@ public class JobTokenService {
         String paddedSecret = String.format("%-32s", secret).substring(0, 32);
         this.secretKey = Keys.hmacShaKeyFor(paddedSecret.getBytes(StandardCharsets.UTF_8));
         this.ttlMinutes = config.getSecurity().getTokenTtlMinutes();
+        this.compact = "compact".equalsIgnoreCase(config.getSecurity().getTokenFormat());
+        this.cacheSize = config.getSecurity().getTokenCacheSize();
+        this.verified = new ConcurrentHashMap<>();
+        this.hashSeed = new SecureRandom().nextLong();
+        this.macs = ThreadLocal.withInitial(() -> {
+            try {
+                Mac mac = Mac.getInstance("HmacSHA256");
+                mac.init(secretKey);
+                return mac;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException(e);
+            }
+        });
     }
 
     public String generateToken(String jobId) {
         Instant now = Instant.now();
         Instant expiry = now.plusSeconds(ttlMinutes * 60L);
 
+        if (compact) {
+            UUID uuid = parseUuid(jobId);
+            if (uuid != null) {
+                return generateCompactToken(uuid, expiry);
+            }
+        }
+
         return Jwts.builder()
                 .subject(jobId)
                 .issuedAt(Date.from(now))
@@ -38,6 +90,33 @@ public class JobTokenService {
     }
 
     public TokenValidation validateToken(String token) {
+        long key = hash(token);
+        VerifiedToken cached = verified.get(key);
+        if (cached != null && cached.token().equals(token)) {
+            if (System.currentTimeMillis() < cached.expiresAtMillis()) {
+                return cached.validation();
+            }
+            verified.remove(key, cached);
+            return TokenValidation.expiredToken();
+        }
+
+        TokenValidation validation = token.indexOf('.') < 0
+                ? validateCompactToken(token)
+                : validateJwt(token);
+        if (validation.valid()) {
+            remember(key, token, validation);
+        }
+        return validation;
+    }
+
+    /**
+     * Drop cached verifications for a job's tokens, e.g. once it is deleted.
+     */
+    public void invalidate(String jobId) {
+        verified.values().removeIf(entry -> entry.validation().jobId().equals(jobId));
+    }
+
+    private TokenValidation validateJwt(String token) {
         try {
             Claims claims = Jwts.parser()
                     .verifyWith(secretKey)
@@ -59,6 +138,97 @@ public class JobTokenService {
         }
     }
 
+    private String generateCompactToken(UUID jobId, Instant expiry) {
+        ByteBuffer buffer = ByteBuffer.allocate(COMPACT_LENGTH);
+        buffer.put(COMPACT_VERSION)
+                .putLong(expiry.getEpochSecond())
+                .putLong(jobId.getMostSignificantBits())
+                .putLong(jobId.getLeastSignificantBits());
+        buffer.put(mac(buffer.array(), COMPACT_LENGTH - COMPACT_MAC_LENGTH), 0, COMPACT_MAC_LENGTH);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(buffer.array());
+    }
+
+    private TokenValidation validateCompactToken(String token) {
+        byte[] bytes;
+        try {
+            bytes = Base64.getUrlDecoder().decode(token);
+        } catch (IllegalArgumentException e) {
+            return TokenValidation.invalid("Malformed token");
+        }
+        if (bytes.length != COMPACT_LENGTH || bytes[0] != COMPACT_VERSION) {
+            return TokenValidation.invalid("Malformed token");
+        }
+
+        int signedLength = COMPACT_LENGTH - COMPACT_MAC_LENGTH;
+        byte[] expected = Arrays.copyOf(mac(bytes, signedLength), COMPACT_MAC_LENGTH);
+        if (!MessageDigest.isEqual(expected, Arrays.copyOfRange(bytes, signedLength, COMPACT_LENGTH))) {
+            return TokenValidation.invalid("Invalid signature");
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(bytes, 1, signedLength - 1);
+        Instant expiry = Instant.ofEpochSecond(buffer.getLong());
+        if (Instant.now().isAfter(expiry)) {
+            return TokenValidation.expiredToken();
+        }
+        UUID jobId = new UUID(buffer.getLong(), buffer.getLong());
+        return TokenValidation.valid(jobId.toString(), expiry);
+    }
+
+    private byte[] mac(byte[] data, int length) {
+        Mac mac = macs.get();
+        mac.update(data, 0, length);
+        return mac.doFinal();
+    }
+
+    private void remember(long key, String token, TokenValidation validation) {
+        if (cacheSize <= 0) {
+            return;
+        }
+        if (verified.size() >= cacheSize) {
+            evict();
+        }
+        verified.put(key, new VerifiedToken(token, validation.expiresAt().toEpochMilli(), validation));
+    }
+
+    /**
+     * Make room: drop expired entries, then arbitrary ones until a tenth of
+     * the cache is free.
+     */
+    private void evict() {
+        long now = System.currentTimeMillis();
+        verified.values().removeIf(entry -> entry.expiresAtMillis() <= now);
+        Iterator<Long> keys = verified.keySet().iterator();
+        while (verified.size() > cacheSize * 9 / 10 && keys.hasNext()) {
+            keys.next();
+            keys.remove();
+        }
+    }
+
+    /**
+     * 64-bit FNV-1a over the token's chars, seeded per process so cache keys
+     * cannot be predicted from outside.
+     */
+    private long hash(String token) {
+        long h = 0xcbf29ce484222325L ^ hashSeed;
+        for (int i = 0; i < token.length(); i++) {
+            h ^= token.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        return h;
+    }
+
+    private static UUID parseUuid(String value) {
+        try {
+            UUID uuid = UUID.fromString(value);
+            return uuid.toString().equals(value) ? uuid : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private record VerifiedToken(String token, long expiresAtMillis, TokenValidation validation) {
+    }
+
     public record TokenValidation(
             boolean valid,
             boolean expired,
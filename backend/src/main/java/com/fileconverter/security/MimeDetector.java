@@ -0,0 +1,315 @@
+package com.fileconverter.security;
+
+import org.apache.tika.Tika;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Set;
+
+/**
+ * Detects the MIME type of an upload from its first bytes. Only the
+ * signatures of the binary types in {@link com.fileconverter.config.AllowedFileTypes}
+ * are checked, through a byte trie keyed on the leading bytes; containers
+ * (RIFF, ISO media, EBML, Ogg, ZIP) are then resolved by looking inside them.
+ * Anything it cannot decide, including all text formats, goes to Tika.
+ * <p>
+ * Types are reported under the names the allow-list and converters use, so
+ * e.g. WAV is {@code audio/wav} where Tika says {@code audio/vnd.wave}.
+ */
+@Component
+public class MimeDetector {
+
+    private static final Set<String> MP4_BRANDS = Set.of(
+            "isom", "iso2", "iso3", "iso4", "iso5", "iso6", "mp41", "mp42",
+            "avc1", "M4V ", "M4VH", "M4VP", "MSNV", "dash", "mmp4");
+    private static final Set<String> M4A_BRANDS = Set.of("M4A ", "M4B ", "M4P ");
+    private static final Set<Integer> BMP_HEADER_SIZES = Set.of(12, 40, 52, 56, 64, 108, 124);
+
+    private static final String OOXML = "application/x-tika-ooxml";
+    private static final String DOCX = "application/vnd.openxmlformats-officedocument.wordprocessingml.document";
+    private static final String XLSX = "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet";
+    private static final String PPTX = "application/vnd.openxmlformats-officedocument.presentationml.presentation";
+    private static final byte[] ODF_MIMETYPE_PREFIX = ascii("application/vnd.oasis.opendocument.");
+
+    private final Tika tika;
+    private final Node root;
+
+    public MimeDetector() {
+        this.tika = new Tika();
+        this.root = new Node();
+        fixed("image/jpeg", 0xFF, 0xD8, 0xFF);
+        fixed("image/png", 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A);
+        fixed("image/gif", "GIF87a");
+        fixed("image/gif", "GIF89a");
+        fixed("image/tiff", 'I', 'I', 0x2A, 0x00);
+        fixed("image/tiff", 'M', 'M', 0x00, 0x2A);
+        fixed("application/pdf", "%PDF-");
+        // OLE2 compound file; Tika core cannot tell Word, Excel and PowerPoint apart either
+        fixed("application/x-tika-msoffice", 0xD0, 0xCF, 0x11, 0xE0, 0xA1, 0xB1, 0x1A, 0xE1);
+        fixed("audio/mpeg", "ID3");
+        fixed("audio/flac", "fLaC");
+        add(MimeDetector::bmp, 'B', 'M');
+        add(MimeDetector::riff, 'R', 'I', 'F', 'F');
+        add(MimeDetector::ebml, 0x1A, 0x45, 0xDF, 0xA3);
+        add(MimeDetector::ogg, 'O', 'g', 'g', 'S');
+        add(MimeDetector::zip, 'P', 'K', 0x03, 0x04);
+        // MPEG audio and ADTS frames start with an 11-bit sync; the rest of the header decides
+        for (int b = 0xE0; b <= 0xFF; b++) {
+            add(MimeDetector::mpegFrame, 0xFF, b);
+        }
+    }
+
+    /**
+     * @return The detected type; Tika's answer when the signatures do not decide
+     */
+    public String detect(byte[] prefix, int length) {
+        String detected = detectSignature(prefix, length);
+        return detected != null ? detected : tika.detect(Arrays.copyOf(prefix, length));
+    }
+
+    /**
+     * @return The type identified by the signature table alone, or null
+     */
+    public String detectSignature(byte[] prefix, int length) {
+        Resolver resolver = null;
+        Node node = root;
+        for (int i = 0; i < length && node != null; i++) {
+            node = node.children != null ? node.children[prefix[i] & 0xFF] : null;
+            if (node != null && node.resolver != null) {
+                // Longest match wins
+                resolver = node.resolver;
+            }
+        }
+        if (resolver != null) {
+            return resolver.resolve(prefix, length);
+        }
+        // ISO base media files carry their signature after the box size
+        if (length >= 12 && matches(prefix, length, 4, "ftyp")) {
+            return isoMedia(prefix, length);
+        }
+        return null;
+    }
+
+    private void fixed(String mimeType, String signature) {
+        add((prefix, length) -> mimeType, ascii(signature));
+    }
+
+    private void fixed(String mimeType, int... signature) {
+        add((prefix, length) -> mimeType, signature);
+    }
+
+    private void add(Resolver resolver, int... signature) {
+        byte[] bytes = new byte[signature.length];
+        for (int i = 0; i < signature.length; i++) {
+            bytes[i] = (byte) signature[i];
+        }
+        add(resolver, bytes);
+    }
+
+    private void add(Resolver resolver, byte[] signature) {
+        Node node = root;
+        for (byte b : signature) {
+            if (node.children == null) {
+                node.children = new Node[256];
+            }
+            int index = b & 0xFF;
+            if (node.children[index] == null) {
+                node.children[index] = new Node();
+            }
+            node = node.children[index];
+        }
+        node.resolver = resolver;
+    }
+
+    private static String bmp(byte[] prefix, int length) {
+        return length >= 18 && BMP_HEADER_SIZES.contains(intLE(prefix, 14)) ? "image/bmp" : null;
+    }
+
+    private static String riff(byte[] prefix, int length) {
+        if (matches(prefix, length, 8, "WEBP")) {
+            return "image/webp";
+        } else if (matches(prefix, length, 8, "WAVE")) {
+            return "audio/wav";
+        } else if (matches(prefix, length, 8, "AVI ")) {
+            return "video/x-msvideo";
+        }
+        return null;
+    }
+
+    private static String isoMedia(byte[] prefix, int length) {
+        String brand = new String(prefix, 8, 4, StandardCharsets.ISO_8859_1);
+        if ("qt  ".equals(brand)) {
+            return "video/quicktime";
+        } else if (M4A_BRANDS.contains(brand)) {
+            return "audio/mp4";
+        } else if (MP4_BRANDS.contains(brand)) {
+            return "video/mp4";
+        }
+        return null;
+    }
+
+    // EBML header: find the DocType element (0x4282) and read its string
+    private static String ebml(byte[] prefix, int length) {
+        for (int i = 4; i + 3 < length; i++) {
+            if ((prefix[i] & 0xFF) == 0x42 && (prefix[i + 1] & 0xFF) == 0x82) {
+                int size = prefix[i + 2] & 0x7F;
+                if ((prefix[i + 2] & 0x80) == 0 || i + 3 + size > length) {
+                    return null;
+                }
+                String docType = new String(prefix, i + 3, size, StandardCharsets.US_ASCII);
+                return switch (docType) {
+                    case "webm" -> "video/webm";
+                    case "matroska" -> "video/x-matroska";
+                    default -> null;
+                };
+            }
+        }
+        return null;
+    }
+
+    // The first packet names the codec
+    private static String ogg(byte[] prefix, int length) {
+        if (matches(prefix, length, 28, "\u0001vorbis") || matches(prefix, length, 28, "OpusHead")
+                || matches(prefix, length, 28, "\u007FFLAC") || matches(prefix, length, 28, "Speex   ")) {
+            return "audio/ogg";
+        }
+        return null;
+    }
+
+    private static String mpegFrame(byte[] prefix, int length) {
+        if (length < 3) {
+            return null;
+        }
+        int b1 = prefix[1] & 0xFF;
+        int b2 = prefix[2] & 0xFF;
+        int version = (b1 >> 3) & 0x3;
+        int layer = (b1 >> 1) & 0x3;
+        if (layer == 0) {
+            // ADTS: MPEG-2/4 AAC, with a four-bit sampling frequency index
+            if ((version == 2 || version == 3) && ((b2 >> 2) & 0xF) < 13) {
+                return "audio/aac";
+            }
+            return null;
+        }
+        int sampleRate = (b2 >> 2) & 0x3;
+        if (version == 1 || sampleRate == 3) {
+            return null;
+        }
+        if (layer == 1 && (b2 >> 4) != 0xF && (b2 >> 4) != 0) {
+            return "audio/mpeg";
+        }
+        return null;
+    }
+
+    /**
+     * Walk the ZIP local file headers in the prefix. ODF files start with a
+     * stored "mimetype" entry; OOXML files are told apart by their part names.
+     */
+    private static String zip(byte[] prefix, int length) {
+        boolean ooxml = false;
+        int offset = 0;
+        while (offset + 30 <= length && intLE(prefix, offset) == 0x04034B50) {
+            int flags = shortLE(prefix, offset + 6);
+            long compressedSize = intLE(prefix, offset + 18) & 0xFFFFFFFFL;
+            int nameLength = shortLE(prefix, offset + 26);
+            int extraLength = shortLE(prefix, offset + 28);
+            int nameStart = offset + 30;
+            if (nameStart + nameLength > length) {
+                break;
+            }
+            String name = new String(prefix, nameStart, nameLength, StandardCharsets.UTF_8);
+            int dataStart = nameStart + nameLength + extraLength;
+
+            if (offset == 0 && name.equals("mimetype")) {
+                return odf(prefix, length, dataStart, (int) compressedSize);
+            } else if (name.equals("[Content_Types].xml") || name.startsWith("_rels/")) {
+                ooxml = true;
+            } else if (name.startsWith("word/")) {
+                return DOCX;
+            } else if (name.startsWith("xl/")) {
+                return XLSX;
+            } else if (name.startsWith("ppt/")) {
+                return PPTX;
+            }
+
+            long next;
+            if ((flags & 0x08) != 0 && compressedSize == 0) {
+                // Sizes follow the data in a descriptor; look for the next header instead
+                next = nextLocalHeader(prefix, length, dataStart);
+            } else {
+                next = dataStart + compressedSize;
+            }
+            if (next < 0 || next > length) {
+                break;
+            }
+            offset = (int) next;
+        }
+        return ooxml ? OOXML : null;
+    }
+
+    private static int nextLocalHeader(byte[] prefix, int length, int from) {
+        for (int i = from; i + 4 <= length; i++) {
+            if (prefix[i] == 'P' && prefix[i + 1] == 'K' && prefix[i + 2] == 0x03 && prefix[i + 3] == 0x04) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static String odf(byte[] prefix, int length, int start, int size) {
+        if (start + size > length || size <= ODF_MIMETYPE_PREFIX.length) {
+            return null;
+        }
+        for (int i = 0; i < ODF_MIMETYPE_PREFIX.length; i++) {
+            if (prefix[start + i] != ODF_MIMETYPE_PREFIX[i]) {
+                return null;
+            }
+        }
+        String mimeType = new String(prefix, start, size, StandardCharsets.US_ASCII);
+        return switch (mimeType) {
+            case "application/vnd.oasis.opendocument.text",
+                    "application/vnd.oasis.opendocument.spreadsheet",
+                    "application/vnd.oasis.opendocument.presentation" -> mimeType;
+            default -> null;
+        };
+    }
+
+    private static boolean matches(byte[] prefix, int length, int offset, String expected) {
+        if (offset + expected.length() > length) {
+            return false;
+        }
+        for (int i = 0; i < expected.length(); i++) {
+            if (prefix[offset + i] != (byte) expected.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int shortLE(byte[] bytes, int offset) {
+        return (bytes[offset] & 0xFF) | (bytes[offset + 1] & 0xFF) << 8;
+    }
+
+    private static int intLE(byte[] bytes, int offset) {
+        return (bytes[offset] & 0xFF) | (bytes[offset + 1] & 0xFF) << 8
+                | (bytes[offset + 2] & 0xFF) << 16 | (bytes[offset + 3] & 0xFF) << 24;
+    }
+
+    private static byte[] ascii(String value) {
+        return value.getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    @FunctionalInterface
+    private interface Resolver {
+        /**
+         * @return The type, or null to leave the decision to Tika
+         */
+        String resolve(byte[] prefix, int length);
+    }
+
+    private static final class Node {
+        Node[] children;
+        Resolver resolver;
+    }
+}
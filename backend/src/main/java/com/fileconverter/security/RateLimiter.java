@@ -1,49 +1,212 @@
 package com.fileconverter.security;
 
 import com.fileconverter.config.AppConfig;
-import io.github.bucket4j.Bandwidth;
-import io.github.bucket4j.Bucket;
-import io.github.bucket4j.Refill;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
-import java.time.Duration;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 
+/**
+ * Per-client limits on two dimensions: a request count, and the estimated
+ * conversion cost of what the client uploaded, in seconds, which grows with
+ * upload size. Both are token buckets that refill continuously.
+ * <p>
+ * Clients are spread over lock stripes, each an access-ordered map with a
+ * fixed share of max-clients. A client is dropped from the cold end of its
+ * stripe once both its buckets would be full again, which loses nothing;
+ * only when a stripe is full of active clients is the least recently seen
+ * one evicted early. Memory stays bounded and a burst of new addresses
+ * never resets everyone else's limits.
+ */
 @Component
 public class RateLimiter {
 
-    private final ConcurrentHashMap<String, Bucket> buckets;
-    private final int requestsPerMinute;
-    private final int burstCapacity;
+    private static final long NANOS_PER_MINUTE = 60_000_000_000L;
 
-    public RateLimiter(AppConfig config) {
-        this.buckets = new ConcurrentHashMap<>();
-        this.requestsPerMinute = config.getSecurity().getRateLimit().getRequestsPerMinute();
-        this.burstCapacity = config.getSecurity().getRateLimit().getBurstCapacity();
+    private final Stripe[] stripes;
+    private final int maxClientsPerStripe;
+    private final double requestCapacity;
+    private final double requestsPerNano;
+    private final double costCapacity;
+    private final double costPerNano;
+    // After this long without requests, both buckets are full
+    private final long idleNanos;
+    private final Counter requestRejections;
+    private final Counter costRejections;
+    private final Counter evictions;
+
+    public RateLimiter(AppConfig config, MeterRegistry meterRegistry) {
+        AppConfig.Security.RateLimit settings = config.getSecurity().getRateLimit();
+        int stripeCount = Integer.highestOneBit(Math.max(1, settings.getStripes()));
+        this.stripes = new Stripe[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new Stripe();
+        }
+        this.maxClientsPerStripe = Math.max(1, settings.getMaxClients() / stripeCount);
+        this.requestCapacity = settings.getBurstCapacity();
+        this.requestsPerNano = (double) settings.getRequestsPerMinute() / NANOS_PER_MINUTE;
+        this.costCapacity = settings.getCostBurstSeconds();
+        this.costPerNano = settings.getCostSecondsPerMinute() / NANOS_PER_MINUTE;
+        // The cost bucket may be overdrawn down to -capacity
+        this.idleNanos = (long) Math.max(requestCapacity / requestsPerNano, 2 * costCapacity / costPerNano);
+
+        this.requestRejections = rejections(meterRegistry, "requests");
+        this.costRejections = rejections(meterRegistry, "cost");
+        this.evictions = Counter.builder("fileconverter.ratelimit.evicted")
+                .description("Clients dropped while still limited because the limiter was full")
+                .register(meterRegistry);
+        Gauge.builder("fileconverter.ratelimit.clients", this, RateLimiter::getClientCount)
+                .description("Clients with rate limit state")
+                .register(meterRegistry);
     }
 
+    /**
+     * Take one request token. Refused while the client has no request
+     * tokens left or its conversion cost budget is used up.
+     */
     public boolean tryConsume(String clientId) {
-        Bucket bucket = buckets.computeIfAbsent(clientId, this::createBucket);
-        return bucket.tryConsume(1);
+        Stripe stripe = stripeFor(clientId);
+        long now = System.nanoTime();
+        boolean requestsLeft;
+        boolean costLeft;
+        synchronized (stripe) {
+            ClientState state = stripe.touch(clientId, now);
+            requestsLeft = state.requests >= 1;
+            costLeft = state.cost > 0;
+            if (requestsLeft && costLeft) {
+                state.requests -= 1;
+            }
+        }
+        if (!requestsLeft) {
+            requestRejections.increment();
+        } else if (!costLeft) {
+            costRejections.increment();
+        }
+        return requestsLeft && costLeft;
     }
 
-    public long getRemainingTokens(String clientId) {
-        Bucket bucket = buckets.get(clientId);
-        return bucket != null ? bucket.getAvailableTokens() : burstCapacity;
+    /**
+     * Charge an accepted upload's estimated conversion cost. The size is
+     * only known once the upload is in, so the charge is never refused: the
+     * budget may go negative, and the client's next uploads are refused
+     * until it has refilled.
+     */
+    public void charge(String clientId, double costSeconds) {
+        Stripe stripe = stripeFor(clientId);
+        long now = System.nanoTime();
+        synchronized (stripe) {
+            ClientState state = stripe.touch(clientId, now);
+            state.cost = Math.max(-costCapacity, state.cost - costSeconds);
+        }
     }
 
-    private Bucket createBucket(String clientId) {
-        Bandwidth limit = Bandwidth.classic(
-                burstCapacity,
-                Refill.greedy(requestsPerMinute, Duration.ofMinutes(1)));
-        return Bucket.builder().addLimit(limit).build();
+    public long getRemainingTokens(String clientId) {
+        Stripe stripe = stripeFor(clientId);
+        synchronized (stripe) {
+            ClientState state = stripe.get(clientId);
+            if (state == null) {
+                return (long) requestCapacity;
+            }
+            state.refill(System.nanoTime());
+            return (long) state.requests;
+        }
     }
 
+    /**
+     * Drop clients whose buckets have refilled, including in stripes that
+     * have not been touched lately.
+     */
+    @Scheduled(fixedRate = 60000)
     public void cleanup() {
-        // Remove buckets that haven't been accessed (simple cleanup)
-        // In production, use a cache with TTL
-        if (buckets.size() > 10000) {
-            buckets.clear();
+        long now = System.nanoTime();
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                stripe.expire(now);
+            }
+        }
+    }
+
+    int getClientCount() {
+        int count = 0;
+        for (Stripe stripe : stripes) {
+            count += stripe.count;
+        }
+        return count;
+    }
+
+    private Stripe stripeFor(String clientId) {
+        int h = clientId.hashCode();
+        return stripes[(h ^ (h >>> 16)) & (stripes.length - 1)];
+    }
+
+    private static Counter rejections(MeterRegistry meterRegistry, String limit) {
+        return Counter.builder("fileconverter.ratelimit.rejected")
+                .description("Requests turned away by the per-client rate limit")
+                .tag("limit", limit)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Clients in least recently seen order. Guarded by its own monitor.
+     */
+    private final class Stripe extends LinkedHashMap<String, ClientState> {
+
+        // Readable without the lock, for the gauge
+        private volatile int count;
+
+        Stripe() {
+            super(16, 0.75f, true);
+        }
+
+        ClientState touch(String clientId, long now) {
+            expire(now);
+            ClientState state = get(clientId);
+            if (state == null) {
+                if (size() >= maxClientsPerStripe) {
+                    Iterator<ClientState> eldest = values().iterator();
+                    eldest.next();
+                    eldest.remove();
+                    evictions.increment();
+                }
+                state = new ClientState(now);
+                put(clientId, state);
+                count = size();
+            } else {
+                state.refill(now);
+            }
+            return state;
+        }
+
+        void expire(long now) {
+            Iterator<ClientState> states = values().iterator();
+            while (states.hasNext() && now - states.next().updatedNanos >= idleNanos) {
+                states.remove();
+            }
+            count = size();
+        }
+    }
+
+    private final class ClientState {
+
+        private double requests;
+        private double cost;
+        private long updatedNanos;
+
+        ClientState(long now) {
+            this.requests = requestCapacity;
+            this.cost = costCapacity;
+            this.updatedNanos = now;
+        }
+
+        void refill(long now) {
+            long elapsed = now - updatedNanos;
+            requests = Math.min(requestCapacity, requests + elapsed * requestsPerNano);
+            cost = Math.min(costCapacity, cost + elapsed * costPerNano);
+            updatedNanos = now;
         }
     }
 }
@@ -16,7 +16,7 @@ public class SecurityConfig {
     @Value("${cors.allowed-origins:http://localhost:5173,http://localhost:3000}")
     private String allowedOrigins;
 
-    @Value("${cors.allowed-methods:GET,POST,DELETE,OPTIONS}")
+    @Value("${cors.allowed-methods:GET,HEAD,POST,PATCH,DELETE,OPTIONS}")
     private String allowedMethods;
 
     @Value("${cors.max-age:3600}")
@@ -31,7 +31,15 @@ public class SecurityConfig {
         config.setExposedHeaders(List.of(
                 "Content-Disposition",
                 "X-Job-Id",
-                "X-Rate-Limit-Remaining"));
+                "X-Rate-Limit-Remaining",
+                "ETag",
+                "Accept-Ranges",
+                "Content-Range",
+                "Location",
+                "Tus-Resumable",
+                "Upload-Offset",
+                "Upload-Length",
+                "Retry-After"));
         config.setAllowCredentials(true);
         config.setMaxAge(maxAge);
 
@@ -2,16 +2,22 @@ package com.fileconverter.storage;
 
 import com.fileconverter.config.AppConfig;
 import com.fileconverter.job.JobQueue;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
+import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Stream;
 
 @Component
@@ -21,21 +27,46 @@ public class CleanupScheduler {
 
     private final TempStorageService storageService;
     private final JobQueue jobQueue;
+    private final ResumableUploadService uploads;
     private final int ttlMinutes;
+    private final Timer sweepTimer;
+    // Bytes held by job directories that survived the last sweep
+    private final AtomicLong usedBytes;
 
-    public CleanupScheduler(TempStorageService storageService, JobQueue jobQueue, AppConfig config) {
+    public CleanupScheduler(TempStorageService storageService, JobQueue jobQueue,
+            ResumableUploadService uploads, AppConfig config, MeterRegistry meterRegistry) {
         this.storageService = storageService;
         this.jobQueue = jobQueue;
+        this.uploads = uploads;
         this.ttlMinutes = config.getStorage().getTtlMinutes();
+        this.usedBytes = new AtomicLong();
+        this.sweepTimer = Timer.builder("fileconverter.cleanup.duration")
+                .description("Time taken by a cleanup sweep")
+                .register(meterRegistry);
+        Gauge.builder("fileconverter.storage.used", usedBytes, AtomicLong::get)
+                .description("Bytes in the temp directory as of the last cleanup sweep")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("fileconverter.storage.free", storageService.getTempDir().toFile(), File::getUsableSpace)
+                .description("Usable space left on the temp directory's file system")
+                .baseUnit("bytes")
+                .register(meterRegistry);
     }
 
     @Scheduled(fixedRate = 60000) // Run every minute
     public void cleanupExpiredJobs() {
+        sweepTimer.record(this::sweep);
+    }
+
+    private void sweep() {
         log.debug("Running cleanup task");
 
         // Clean expired jobs from queue
         jobQueue.cleanupExpired();
 
+        // Drop abandoned resumable uploads
+        uploads.expireIdle();
+
         // Clean old files from storage
         cleanupOldFiles();
     }
@@ -43,23 +74,36 @@ public class CleanupScheduler {
     private void cleanupOldFiles() {
         Path tempDir = storageService.getTempDir();
         Instant cutoff = Instant.now().minus(ttlMinutes, ChronoUnit.MINUTES);
+        AtomicLong used = new AtomicLong();
 
         try (Stream<Path> dirs = Files.list(tempDir)) {
             dirs.filter(Files::isDirectory)
                     .forEach(jobDir -> {
                         try {
                             Instant modified = Files.getLastModifiedTime(jobDir).toInstant();
-                            if (modified.isBefore(cutoff)) {
+                            // Uploads still in progress expire on their own schedule
+                            if (modified.isBefore(cutoff) && !uploads.isActive(jobDir.getFileName().toString())) {
                                 storageService.deleteJob(jobDir.getFileName().toString())
                                         .subscribe();
                                 log.info("Cleaned up expired directory: {}", jobDir.getFileName());
+                            } else {
+                                used.addAndGet(directorySize(jobDir));
                             }
-                        } catch (IOException e) {
+                        } catch (IOException | UncheckedIOException e) {
                             log.warn("Error checking directory: {}", jobDir, e);
                         }
                     });
+            usedBytes.set(used.get());
         } catch (IOException e) {
             log.error("Error listing temp directory", e);
         }
     }
+
+    private static long directorySize(Path dir) throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            return files.filter(Files::isRegularFile)
+                    .mapToLong(file -> file.toFile().length())
+                    .sum();
+        }
+    }
 }
@@ -0,0 +1,223 @@
+package com.fileconverter.storage;
+
+import com.fileconverter.config.AppConfig;
+import com.fileconverter.converter.Converter;
+import com.fileconverter.job.Job;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Content-addressed store of conversion outputs, keyed by the SHA-256 of the
+ * input together with the converter, target format and its output options.
+ * Results are hard-linked in and out of the cache directory where possible
+ * and copied otherwise. Least recently used entries are evicted once the
+ * directory exceeds its size budget. Recency is tracked in memory only: a
+ * cached file shares its inode with every output linked from it, so touching
+ * it would change their modification times too. After a restart, entries
+ * start out in the order they were stored.
+ */
+@Component
+public class ConversionCache {
+
+    private static final Logger log = LoggerFactory.getLogger(ConversionCache.class);
+
+    // Bump when converter output changes in ways the options do not capture
+    private static final String KEY_VERSION = "1";
+    private static final String PARTIAL_SUFFIX = ".partial";
+
+    private final boolean enabled;
+    private final Path dir;
+    private final long maxBytes;
+
+    // Key -> size in bytes, in access order
+    private final LinkedHashMap<String, Long> entries;
+    private long totalBytes;
+
+    private final AtomicLong hits;
+    private final AtomicLong misses;
+    private final AtomicLong stores;
+    private final AtomicLong evictions;
+
+    public ConversionCache(AppConfig config) {
+        AppConfig.Cache settings = config.getCache();
+        this.enabled = settings.isEnabled();
+        this.dir = Paths.get(settings.getDir());
+        this.maxBytes = settings.getMaxSizeMb() * 1024 * 1024;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true);
+        this.hits = new AtomicLong();
+        this.misses = new AtomicLong();
+        this.stores = new AtomicLong();
+        this.evictions = new AtomicLong();
+    }
+
+    @PostConstruct
+    public void init() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        Files.createDirectories(dir);
+        List<Path> files;
+        try (Stream<Path> stream = Files.list(dir)) {
+            files = stream.filter(Files::isRegularFile)
+                    .sorted(Comparator.comparing(ConversionCache::lastModified))
+                    .toList();
+        }
+        synchronized (this) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if (name.endsWith(PARTIAL_SUFFIX)) {
+                    Files.deleteIfExists(file);
+                    continue;
+                }
+                long size = Files.size(file);
+                entries.put(name, size);
+                totalBytes += size;
+            }
+            evict();
+        }
+        log.info("Conversion cache at {} holds {} results ({} bytes)", dir, entries.size(), totalBytes);
+    }
+
+    /**
+     * @return Cache key for running the job with the given converter, or null
+     *         if caching is disabled or the input hash is unknown
+     */
+    public String key(Job job, Converter converter) {
+        if (!enabled || job.getInputHash() == null) {
+            return null;
+        }
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            update(digest, KEY_VERSION);
+            update(digest, job.getInputHash());
+            update(digest, converter.getName());
+            update(digest, job.getTargetFormat().toLowerCase());
+            for (String option : converter.getOutputOptions(job.getTargetFormat())) {
+                update(digest, option);
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * Place the cached result for the key at the output path.
+     *
+     * @return true on a hit
+     */
+    public boolean restore(String key, Path output) {
+        synchronized (this) {
+            // Also moves the entry to the most recently used end
+            if (entries.get(key) == null) {
+                misses.incrementAndGet();
+                return false;
+            }
+        }
+        Path cached = dir.resolve(key);
+        try {
+            Files.deleteIfExists(output);
+            TempStorageService.linkOrCopy(cached, output);
+            hits.incrementAndGet();
+            return true;
+        } catch (IOException e) {
+            // Evicted or removed underneath us
+            log.debug("Cached result {} unavailable: {}", key, e.getMessage());
+            synchronized (this) {
+                Long size = entries.remove(key);
+                if (size != null) {
+                    totalBytes -= size;
+                }
+            }
+            misses.incrementAndGet();
+            return false;
+        }
+    }
+
+    /**
+     * Add a finished output under the key, evicting older results if needed.
+     */
+    public void store(String key, Path output) {
+        try {
+            long size = Files.size(output);
+            if (size > maxBytes) {
+                return;
+            }
+            Path partial = dir.resolve(key + "." + UUID.randomUUID() + PARTIAL_SUFFIX);
+            TempStorageService.linkOrCopy(output, partial);
+            Files.move(partial, dir.resolve(key),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            synchronized (this) {
+                Long previous = entries.put(key, size);
+                totalBytes += size - (previous != null ? previous : 0);
+                evict();
+            }
+            stores.incrementAndGet();
+        } catch (IOException e) {
+            log.warn("Failed to cache result {}: {}", key, e.getMessage());
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        synchronized (this) {
+            return Map.of(
+                    "enabled", enabled,
+                    "hits", hits.get(),
+                    "misses", misses.get(),
+                    "stores", stores.get(),
+                    "evictions", evictions.get(),
+                    "entries", entries.size(),
+                    "sizeBytes", totalBytes,
+                    "maxSizeBytes", maxBytes);
+        }
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<String, Long>> it = entries.entrySet().iterator();
+        while (totalBytes > maxBytes && it.hasNext()) {
+            Map.Entry<String, Long> eldest = it.next();
+            it.remove();
+            totalBytes -= eldest.getValue();
+            evictions.incrementAndGet();
+            try {
+                Files.deleteIfExists(dir.resolve(eldest.getKey()));
+            } catch (IOException e) {
+                log.warn("Failed to evict cached result {}: {}", eldest.getKey(), e.getMessage());
+            }
+        }
+    }
+
+    private static void update(MessageDigest digest, String value) {
+        digest.update(value.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+    }
+
+    private static FileTime lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package com.fileconverter.storage;
+
+import com.fileconverter.config.AppConfig;
+import com.fileconverter.security.FileValidator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Uploads sent in pieces that can be resumed after a dropped connection.
+ * Each upload gets a file of its declared length in its own job directory;
+ * pieces are written at their offset with positional writes and validated
+ * in order, so a completed upload is ready for a job without another pass.
+ * Sessions live in memory and are discarded after being idle for the
+ * session TTL.
+ */
+@Service
+public class ResumableUploadService {
+
+    private static final Logger log = LoggerFactory.getLogger(ResumableUploadService.class);
+
+    private final TempStorageService storageService;
+    private final FileValidator fileValidator;
+    private final long maxFileSize;
+    private final Duration sessionTtl;
+    private final Map<String, UploadSession> sessions;
+
+    public ResumableUploadService(TempStorageService storageService, FileValidator fileValidator,
+            AppConfig config) {
+        this.storageService = storageService;
+        this.fileValidator = fileValidator;
+        this.maxFileSize = config.getStorage().getMaxFileSize();
+        this.sessionTtl = Duration.ofMinutes(config.getUpload().getSessionTtlMinutes());
+        this.sessions = new ConcurrentHashMap<>();
+    }
+
+    public Mono<UploadSession> create(String fileName, String targetFormat, long length) {
+        return Mono.fromCallable(() -> {
+            if (length <= 0) {
+                throw new IllegalArgumentException("Empty file");
+            }
+            if (length > maxFileSize) {
+                throw new FileValidator.UploadRejectedException(HttpStatus.PAYLOAD_TOO_LARGE,
+                        "File too large. Maximum size is " + (maxFileSize / 1024 / 1024) + "MB");
+            }
+
+            String id = UUID.randomUUID().toString();
+            UploadSession session = new UploadSession(id, fileName, targetFormat, length,
+                    storageService.allocateUpload(id, fileName, length), fileValidator.inspect());
+            sessions.put(id, session);
+            log.debug("Created upload {} for {} ({} bytes)", id, fileName, length);
+            return session;
+        }).subscribeOn(Schedulers.boundedElastic());
+    }
+
+    public Optional<UploadSession> get(String id) {
+        return Optional.ofNullable(sessions.get(id));
+    }
+
+    public boolean isActive(String id) {
+        return sessions.containsKey(id);
+    }
+
+    /**
+     * Write the next piece of an upload, which must start at its current offset.
+     * If the connection drops, the bytes received so far are kept.
+     *
+     * @return The offset after this piece
+     */
+    public Mono<Long> append(UploadSession session, long offset, Flux<DataBuffer> content) {
+        return Mono.defer(() -> {
+            if (!session.tryStartWrite()) {
+                return Mono.error(new IllegalStateException("Upload is already being written"));
+            }
+            return Mono.defer(() -> {
+                if (offset != session.getOffset()) {
+                    return Mono.error(new IllegalStateException(
+                            "Upload-Offset " + offset + " does not match current offset " + session.getOffset()));
+                }
+                return Mono.using(
+                        () -> FileChannel.open(session.getPath(), StandardOpenOption.WRITE),
+                        channel -> session.getInspection()
+                                .check(content.publishOn(Schedulers.boundedElastic())
+                                        .map(buffer -> write(session, channel, buffer)))
+                                .doOnNext(DataBufferUtils::release)
+                                .doOnDiscard(DataBuffer.class, DataBufferUtils::release)
+                                .then(Mono.fromSupplier(session::getOffset)),
+                        channel -> {
+                            try {
+                                channel.close();
+                            } catch (IOException ignored) {
+                            }
+                        });
+            }).doFinally(signal -> session.endWrite());
+        }).doOnError(FileValidator.UploadRejectedException.class, e -> discard(session));
+    }
+
+    /**
+     * Finish a fully received upload. The session ends and its file is left
+     * for the job created from it.
+     */
+    public FileValidator.ValidationResult complete(UploadSession session) {
+        if (!session.isComplete()) {
+            throw new IllegalStateException(
+                    "Upload incomplete: " + session.getOffset() + " of " + session.getLength() + " bytes received");
+        }
+        if (!session.tryStartWrite() || !sessions.remove(session.getId(), session)) {
+            throw new IllegalStateException("Upload is already being completed");
+        }
+        try {
+            // The directory was created at the start of the upload
+            storageService.touchJob(session.getId());
+        } catch (IOException e) {
+            log.warn("Failed to touch upload {}: {}", session.getId(), e.getMessage());
+        }
+        return session.result();
+    }
+
+    /**
+     * Take back an upload that was completed but whose job was not admitted,
+     * so it can be finalized again without sending the file again.
+     */
+    public void reopen(UploadSession session) {
+        session.endWrite();
+        sessions.putIfAbsent(session.getId(), session);
+    }
+
+    public Mono<Void> discard(UploadSession session) {
+        sessions.remove(session.getId(), session);
+        return storageService.deleteJob(session.getId());
+    }
+
+    /**
+     * Drop sessions that have not received data within the session TTL.
+     */
+    public void expireIdle() {
+        Instant cutoff = Instant.now().minus(sessionTtl);
+        sessions.values().forEach(session -> {
+            if (!session.isWriting() && session.getLastActivity().isBefore(cutoff)) {
+                log.info("Discarding idle upload {}", session.getId());
+                discard(session).subscribe();
+            }
+        });
+    }
+
+    private DataBuffer write(UploadSession session, FileChannel channel, DataBuffer buffer) {
+        long position = session.getOffset();
+        int length = buffer.readableByteCount();
+        if (position + length > session.getLength()) {
+            DataBufferUtils.release(buffer);
+            throw new IllegalArgumentException("Upload exceeds its declared length of " + session.getLength() + " bytes");
+        }
+        try (DataBuffer.ByteBufferIterator it = buffer.readableByteBuffers()) {
+            while (it.hasNext()) {
+                ByteBuffer bytes = it.next();
+                while (bytes.hasRemaining()) {
+                    position += channel.write(bytes, position);
+                }
+            }
+        } catch (IOException e) {
+            DataBufferUtils.release(buffer);
+            throw new UncheckedIOException(e);
+        }
+        session.advance(length);
+        return buffer;
+    }
+}
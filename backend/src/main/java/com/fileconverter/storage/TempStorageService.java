@@ -5,25 +5,38 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.core.io.buffer.DataBuffer;
 import org.springframework.core.io.buffer.DataBufferUtils;
-import org.springframework.http.codec.multipart.FilePart;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
 import jakarta.annotation.PostConstruct;
 import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
 import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
 
 @Service
 public class TempStorageService {
 
     private static final Logger log = LoggerFactory.getLogger(TempStorageService.class);
 
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+    private static final long TAIL_POLL_MILLIS = 50;
+
     private final Path tempDir;
 
     public TempStorageService(AppConfig config) {
@@ -36,14 +49,6 @@ public class TempStorageService {
         log.info("Temp storage initialized at: {}", tempDir);
     }
 
-    public Mono<Path> saveUpload(FilePart filePart, String jobId) {
-        return Mono.fromCallable(() -> {
-            Path jobDir = tempDir.resolve(jobId);
-            Files.createDirectories(jobDir);
-            return jobDir.resolve(sanitizeFileName(filePart.filename()));
-        }).flatMap(destPath -> filePart.transferTo(destPath).thenReturn(destPath));
-    }
-
     public Mono<Path> saveStream(Flux<DataBuffer> dataStream, String jobId, String fileName) {
         return Mono.fromCallable(() -> {
             Path jobDir = tempDir.resolve(jobId);
@@ -59,11 +64,79 @@ public class TempStorageService {
         return jobDir.resolve(sanitizeFileName(fileName));
     }
 
+    /**
+     * Create a file of the given length in the job directory for an upload
+     * that will be written piece by piece at known offsets.
+     */
+    public Path allocateUpload(String jobId, String fileName, long length) throws IOException {
+        Path path = createOutputPath(jobId, fileName);
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+            file.setLength(length);
+        }
+        return path;
+    }
+
+    /**
+     * Mark a job directory as in use, deferring its cleanup for another TTL.
+     */
+    public void touchJob(String jobId) throws IOException {
+        Path jobDir = tempDir.resolve(jobId);
+        if (Files.exists(jobDir)) {
+            Files.setLastModifiedTime(jobDir, FileTime.from(Instant.now()));
+        }
+    }
+
     public Flux<DataBuffer> readFile(Path filePath) {
-        return DataBufferUtils.read(
-                filePath,
-                new org.springframework.core.io.buffer.DefaultDataBufferFactory(),
-                8192);
+        return DataBufferUtils.read(filePath, DefaultDataBufferFactory.sharedInstance, READ_BUFFER_SIZE);
+    }
+
+    /**
+     * Read a file that is still being written, following it until the writer
+     * is done and everything has been read. Between polls no thread is held;
+     * each tick reads whatever has been appended since the last one.
+     */
+    public Flux<DataBuffer> tailFile(Path filePath, BooleanSupplier writerDone) {
+        return Flux.using(
+                () -> FileChannel.open(filePath, StandardOpenOption.READ),
+                channel -> {
+                    AtomicBoolean finished = new AtomicBoolean();
+                    return Flux.interval(Duration.ZERO, Duration.ofMillis(TAIL_POLL_MILLIS))
+                            .onBackpressureDrop()
+                            .takeWhile(tick -> !finished.get())
+                            .concatMap(tick -> readAvailable(channel, writerDone, finished)
+                                    .subscribeOn(Schedulers.boundedElastic()), 1);
+                },
+                channel -> {
+                    try {
+                        channel.close();
+                    } catch (IOException ignored) {
+                    }
+                })
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    /**
+     * Read from the channel until it has nothing more for now, marking the
+     * tail finished if the writer was already done when it ran dry.
+     */
+    private static Flux<DataBuffer> readAvailable(FileChannel channel, BooleanSupplier writerDone,
+            AtomicBoolean finished) {
+        return Flux.generate(sink -> {
+            // Checked before reading so bytes written just before the end are not missed
+            boolean done = writerDone.getAsBoolean();
+            ByteBuffer bytes = ByteBuffer.allocate(READ_BUFFER_SIZE);
+            try {
+                if (channel.read(bytes) > 0) {
+                    sink.next(DefaultDataBufferFactory.sharedInstance.wrap(bytes.flip()));
+                    return;
+                }
+            } catch (IOException e) {
+                sink.error(e);
+                return;
+            }
+            finished.set(done);
+            sink.complete();
+        });
     }
 
     public Mono<Void> deleteJob(String jobId) {
@@ -87,11 +160,23 @@ public class TempStorageService {
         });
     }
 
+    /**
+     * Hard-link the source to the target, copying when links are unsupported
+     * or cross file systems.
+     */
+    public static void linkOrCopy(Path source, Path target) throws IOException {
+        try {
+            Files.createLink(target, source);
+        } catch (UnsupportedOperationException | IOException e) {
+            Files.copy(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
     public Path getTempDir() {
         return tempDir;
     }
 
-    private String sanitizeFileName(String fileName) {
+    static String sanitizeFileName(String fileName) {
         // Remove path traversal attempts and invalid characters
         String sanitized = fileName
                 .replaceAll("[\\\\/:*?\"<>|]", "_")
@@ -0,0 +1,104 @@
+package com.fileconverter.storage;
+
+import com.fileconverter.security.FileValidator;
+
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A resumable upload in progress. Bytes are accepted strictly in order, so
+ * the offset is also the number of bytes the inspection has seen.
+ */
+public class UploadSession {
+
+    private final String id;
+    private final String fileName;
+    private final String targetFormat;
+    private final long length;
+    private final Path path;
+    private final FileValidator.Inspection inspection;
+    private final AtomicBoolean writing;
+    private volatile long offset;
+    private volatile Instant lastActivity;
+    private FileValidator.ValidationResult result;
+
+    UploadSession(String id, String fileName, String targetFormat, long length, Path path,
+            FileValidator.Inspection inspection) {
+        this.id = id;
+        this.fileName = fileName;
+        this.targetFormat = targetFormat;
+        this.length = length;
+        this.path = path;
+        this.inspection = inspection;
+        this.writing = new AtomicBoolean();
+        this.lastActivity = Instant.now();
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public String getTargetFormat() {
+        return targetFormat;
+    }
+
+    public long getLength() {
+        return length;
+    }
+
+    public long getOffset() {
+        return offset;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public Instant getLastActivity() {
+        return lastActivity;
+    }
+
+    public boolean isComplete() {
+        return offset == length;
+    }
+
+    FileValidator.Inspection getInspection() {
+        return inspection;
+    }
+
+    /**
+     * The inspection's verdict, taken once since it finishes the content hash.
+     */
+    synchronized FileValidator.ValidationResult result() {
+        if (result == null) {
+            result = inspection.result();
+        }
+        return result;
+    }
+
+    void advance(long bytes) {
+        offset += bytes;
+    }
+
+    boolean tryStartWrite() {
+        if (!writing.compareAndSet(false, true)) {
+            return false;
+        }
+        lastActivity = Instant.now();
+        return true;
+    }
+
+    void endWrite() {
+        lastActivity = Instant.now();
+        writing.set(false);
+    }
+
+    boolean isWriting() {
+        return writing.get();
+    }
+}
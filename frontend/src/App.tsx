@@ -3,7 +3,7 @@ import { FileUpload } from './components/FileUpload';
 import { ProgressBar } from './components/ProgressBar';
 import { ConversionStatus } from './components/ConversionStatus';
 import { uploadFile, UploadProgress } from './services/uploadService';
-import { pollJobStatus } from './services/jobService';
+import { watchJobStatus } from './services/jobService';
 import { ConversionJob, INPUT_FORMATS, getOutputFormats } from './types';
 import './App.css';
 
@@ -63,7 +63,7 @@ function App() {
             setCurrentJob(job);
             setState('processing');
 
-            await pollJobStatus(
+            await watchJobStatus(
                 job.id,
                 job.token,
                 (status) => {
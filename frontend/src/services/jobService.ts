@@ -2,6 +2,8 @@ import { JobStatusResponse, ErrorResponse } from '../types';
 
 const API_BASE = '/api';
 
+const TERMINAL_STATUSES: JobStatusResponse['status'][] = ['COMPLETED', 'FAILED', 'EXPIRED'];
+
 export async function getJobStatus(jobId: string, token: string): Promise<JobStatusResponse> {
     const response = await fetch(`${API_BASE}/jobs/${jobId}`, {
         headers: {
@@ -29,10 +31,10 @@ export async function pollJobStatus(
                 const status = await getJobStatus(jobId, token);
                 onUpdate(status);
 
-                if (status.status === 'COMPLETED' || status.status === 'FAILED' || status.status === 'EXPIRED') {
+                if (TERMINAL_STATUSES.includes(status.status)) {
                     resolve(status);
                 } else {
-                    setTimeout(poll, intervalMs);
+                    setTimeout(poll, nextPollDelay(status, intervalMs));
                 }
             } catch (error) {
                 reject(error);
@@ -43,6 +45,50 @@ export async function pollJobStatus(
     });
 }
 
+/**
+ * Follow a job over Server-Sent Events, falling back to polling when the
+ * stream cannot be opened or drops before the job finishes.
+ */
+export function watchJobStatus(
+    jobId: string,
+    token: string,
+    onUpdate: (status: JobStatusResponse) => void,
+    pollIntervalMs: number = 1000
+): Promise<JobStatusResponse> {
+    if (typeof EventSource === 'undefined') {
+        return pollJobStatus(jobId, token, onUpdate, pollIntervalMs);
+    }
+
+    return new Promise((resolve, reject) => {
+        const url = `${API_BASE}/jobs/${jobId}/events?token=${encodeURIComponent(token)}`;
+        const source = new EventSource(url);
+
+        source.addEventListener('status', (event) => {
+            const status = JSON.parse((event as MessageEvent).data) as JobStatusResponse;
+            onUpdate(status);
+            if (TERMINAL_STATUSES.includes(status.status)) {
+                source.close();
+                resolve(status);
+            }
+        });
+
+        source.onerror = () => {
+            source.close();
+            pollJobStatus(jobId, token, onUpdate, pollIntervalMs).then(resolve, reject);
+        };
+    });
+}
+
+const MAX_POLL_INTERVAL_MS = 10000;
+
+// With a known ETA, check back after about a quarter of the remaining time
+function nextPollDelay(status: JobStatusResponse, intervalMs: number): number {
+    if (status.etaSeconds == null) {
+        return intervalMs;
+    }
+    return Math.min(MAX_POLL_INTERVAL_MS, Math.max(intervalMs, status.etaSeconds * 250));
+}
+
 export async function deleteJob(jobId: string, token: string): Promise<void> {
     const response = await fetch(`${API_BASE}/jobs/${jobId}`, {
         method: 'DELETE',
@@ -8,11 +8,24 @@ export interface UploadProgress {
     percentage: number;
 }
 
+// Files at least this large are sent in chunks that survive a dropped connection
+const RESUMABLE_THRESHOLD = 32 * 1024 * 1024;
+const CHUNK_SIZE = 8 * 1024 * 1024;
+const MAX_RETRIES = 5;
+const TUS_VERSION = '1.0.0';
+
+// A failure that retrying the same request will not fix
+class FatalUploadError extends Error {}
+
 export async function uploadFile(
     file: File,
     targetFormat: string,
     onProgress?: (progress: UploadProgress) => void
 ): Promise<UploadResponse> {
+    if (file.size >= RESUMABLE_THRESHOLD) {
+        return uploadFileResumable(file, targetFormat, onProgress);
+    }
+
     return new Promise((resolve, reject) => {
         const formData = new FormData();
         formData.append('file', file);
@@ -60,6 +73,133 @@ export async function uploadFile(
     });
 }
 
+async function uploadFileResumable(
+    file: File,
+    targetFormat: string,
+    onProgress?: (progress: UploadProgress) => void
+): Promise<UploadResponse> {
+    const metadata = [`filename ${toBase64(file.name)}`];
+    if (file.type) {
+        metadata.push(`filetype ${toBase64(file.type)}`);
+    }
+
+    const created = await fetch(`${API_BASE}/uploads?targetFormat=${encodeURIComponent(targetFormat)}`, {
+        method: 'POST',
+        headers: {
+            'Tus-Resumable': TUS_VERSION,
+            'Upload-Length': String(file.size),
+            'Upload-Metadata': metadata.join(',')
+        }
+    });
+    if (!created.ok) {
+        throw new Error(await errorMessage(created));
+    }
+    const { uploadId } = await created.json() as { uploadId: string };
+    const url = `${API_BASE}/uploads/${uploadId}`;
+
+    let offset = 0;
+    let retries = 0;
+    while (offset < file.size) {
+        try {
+            offset = await sendChunk(url, file, offset, onProgress);
+            retries = 0;
+        } catch (error) {
+            if (error instanceof FatalUploadError || ++retries > MAX_RETRIES) {
+                throw error;
+            }
+            await new Promise((resume) => setTimeout(resume, 1000 * 2 ** (retries - 1)));
+            offset = await currentOffset(url);
+        }
+    }
+
+    const response = await fetch(`${url}/finalize`, { method: 'POST' });
+    if (!response.ok) {
+        throw new Error(await errorMessage(response));
+    }
+    return response.json();
+}
+
+function sendChunk(
+    url: string,
+    file: File,
+    offset: number,
+    onProgress?: (progress: UploadProgress) => void
+): Promise<number> {
+    return new Promise((resolve, reject) => {
+        const xhr = new XMLHttpRequest();
+
+        xhr.upload.addEventListener('progress', (event) => {
+            if (onProgress) {
+                const loaded = offset + event.loaded;
+                onProgress({
+                    loaded,
+                    total: file.size,
+                    percentage: Math.round((loaded / file.size) * 100)
+                });
+            }
+        });
+
+        xhr.addEventListener('load', () => {
+            if (xhr.status === 204) {
+                resolve(Number(xhr.getResponseHeader('Upload-Offset')));
+            } else if (xhr.status >= 400 && xhr.status < 500 && xhr.status !== 409) {
+                // 409 means the offset moved; anything else 4xx will not succeed on retry
+                let message = `Upload failed with status ${xhr.status}`;
+                try {
+                    message = (JSON.parse(xhr.responseText) as ErrorResponse).message;
+                } catch {
+                    // Keep the status message
+                }
+                reject(new FatalUploadError(message));
+            } else {
+                reject(new Error(`Upload failed with status ${xhr.status}`));
+            }
+        });
+
+        xhr.addEventListener('error', () => {
+            reject(new Error('Network error during upload'));
+        });
+
+        xhr.addEventListener('abort', () => {
+            reject(new FatalUploadError('Upload cancelled'));
+        });
+
+        xhr.open('PATCH', url);
+        xhr.setRequestHeader('Tus-Resumable', TUS_VERSION);
+        xhr.setRequestHeader('Upload-Offset', String(offset));
+        xhr.setRequestHeader('Content-Type', 'application/offset+octet-stream');
+        xhr.send(file.slice(offset, offset + CHUNK_SIZE));
+    });
+}
+
+async function currentOffset(url: string): Promise<number> {
+    const response = await fetch(url, {
+        method: 'HEAD',
+        headers: { 'Tus-Resumable': TUS_VERSION }
+    });
+    if (!response.ok) {
+        throw new FatalUploadError('Upload expired. Please upload the file again.');
+    }
+    return Number(response.headers.get('Upload-Offset'));
+}
+
+async function errorMessage(response: Response): Promise<string> {
+    try {
+        return (await response.json() as ErrorResponse).message;
+    } catch {
+        return `Upload failed with status ${response.status}`;
+    }
+}
+
+function toBase64(value: string): string {
+    const bytes = new TextEncoder().encode(value);
+    let binary = '';
+    bytes.forEach((b) => {
+        binary += String.fromCharCode(b);
+    });
+    return btoa(binary);
+}
+
 export function formatFileSize(bytes: number): string {
     if (bytes === 0) return '0 B';
     const k = 1024;
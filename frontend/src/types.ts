@@ -16,6 +16,8 @@ export interface JobStatusResponse {
     sourceFormat: string;
     targetFormat: string;
     progress: number;
+    speed: number | null;
+    etaSeconds: number | null;
     errorMessage: string | null;
     createdAt: string;
     completedAt: string | null;